@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.salesforce.cte.admin.JsonReporter;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of JsonReporter.saveToRegistry as the test result grows,
+ * in the configured result format and compression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class JsonReporterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int testCount;
+
+    @Param({"20"})
+    private int eventsPerTest;
+
+    private JsonReporter reporter;
+    private TestAdvisorResult testResult;
+
+    @Setup
+    public void setup() throws IOException {
+        Path testRun = Files.createTempDirectory("JsonReporterBenchmark").resolve("TestRun-benchmark");
+        testRun.resolve("Screenshots").toFile().mkdirs();
+        reporter = new JsonReporter(testRun);
+        testResult = new TestAdvisorResult();
+        testResult.setVersion("benchmark");
+        testResult.setBuildStartTime(Instant.now());
+        for (int i = 0; i < testCount; i++) {
+            TestCaseExecution test = new TestCaseExecution();
+            test.setTestName("com.salesforce.cte.benchmark.SyntheticTest.test" + i);
+            for (int j = 0; j < eventsPerTest; j++)
+                test.appendEvent(new TestEvent(TestEventType.AUTOMATION, "event " + j + " of test " + i, Level.INFO.toString(),
+                                    "findElement", "By.id: element" + j, "By.id: element" + j, 0, null));
+            test.saveEndTime();
+            testResult.getTestCaseExecutionList().add(test);
+        }
+        testResult.setBuildEndTime(Instant.now());
+    }
+
+    @Benchmark
+    public File saveToRegistry() throws IOException {
+        return reporter.saveToRegistry(testResult);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.salesforce.cte.admin.TestAdvisorAdministrator;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.listener.GenericTestListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of GenericTestListener.onTestCaseEvent with 1, 4 and one thread per CPU.
+ * 
+ * Every benchmark thread runs its own test case. The event list of the test case is
+ * recycled every 1024 events, so the measurement is not dominated by heap growth.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ListenerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TestRun {
+        GenericTestListener listener;
+
+        @Setup
+        public void setup() {
+            listener = new GenericTestListener();
+            listener.onTestRunStart();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TestCase {
+        private GenericTestListener listener;
+
+        @Setup
+        public void start(TestRun testRun) {
+            listener = testRun.listener;
+            listener.onTestCaseStart("ListenerBenchmark");
+            TestAdvisorAdministrator.getInstance().getTestCaseExecution().setEventList(new RecyclingEventList());
+        }
+
+        @TearDown
+        public void end() {
+            listener.onTestCaseEnd();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void onTestCaseEvent1Thread(TestRun testRun, TestCase testCase) {
+        testRun.listener.onTestCaseEvent("benchmark event", Level.INFO);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void onTestCaseEvent4Threads(TestRun testRun, TestCase testCase) {
+        testRun.listener.onTestCaseEvent("benchmark event", Level.INFO);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void onTestCaseEventMaxThreads(TestRun testRun, TestCase testCase) {
+        testRun.listener.onTestCaseEvent("benchmark event", Level.INFO);
+    }
+
+    /**
+     * Event list which drops its events when it reaches 1024 events
+     */
+    static final class RecyclingEventList extends ArrayList<TestEvent> {
+        private static final long serialVersionUID = 1L;
+        private static final int CAPACITY = 1024;
+
+        RecyclingEventList() {
+            super(CAPACITY);
+        }
+
+        @Override
+        public boolean add(TestEvent event) {
+            if (size() == CAPACITY) clear();
+            return super.add(event);
+        }
+    }
+}
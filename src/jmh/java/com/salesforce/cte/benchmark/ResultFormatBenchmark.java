@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.salesforce.cte.admin.JsonReporter;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+import com.salesforce.cte.common.TestStatus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write and read time of each result format for a synthetic test result,
+ * the size of the result file is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ResultFormatBenchmark {
+
+    @Param({"JSON", "JSON_PRETTY", "SMILE", "CBOR"})
+    private JsonReporter.ResultFormat format;
+
+    @Param({"100000"})
+    private int eventCount;
+
+    @Param({"100"})
+    private int eventsPerTest;
+
+    private Path root;
+    private JsonReporter reporter;
+    private TestAdvisorResult testResult;
+    private File resultFile;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("TestRun-" + format);
+        reporter = new JsonReporter(root, format);
+        testResult = createTestResult(eventCount, eventsPerTest);
+        resultFile = reporter.writeTestResult(testResult);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println(String.format("%n%s result file: %d bytes", format, resultFile.length()));
+        Files.deleteIfExists(resultFile.toPath());
+        Files.deleteIfExists(root);
+    }
+
+    @Benchmark
+    public File write() throws IOException {
+        return reporter.writeTestResult(testResult);
+    }
+
+    @Benchmark
+    public TestAdvisorResult read() throws IOException {
+        return JsonReporter.readTestResult(resultFile);
+    }
+
+    static TestAdvisorResult createTestResult(int eventCount, int eventsPerTest) {
+        Instant start = Instant.parse("2022-01-01T00:00:00Z");
+        TestAdvisorResult testResult = new TestAdvisorResult();
+        testResult.setVersion("benchmark");
+        testResult.setBuildStartTime(start);
+        TestCaseExecution testCaseExecution = null;
+        for (int i = 0; i < eventCount; i++) {
+            if (i % eventsPerTest == 0) {
+                testCaseExecution = new TestCaseExecution();
+                testCaseExecution.setTestName("com.salesforce.cte.benchmark.SyntheticTest.test" + i / eventsPerTest);
+                testCaseExecution.setBrowser("chrome");
+                testCaseExecution.setBrowserVersion("100.0.4896.60");
+                testCaseExecution.setScreenResolution("1920x1080");
+                testCaseExecution.setStartTime(start.plusMillis(i));
+                testCaseExecution.setEndTime(start.plusMillis(i + eventsPerTest));
+                testCaseExecution.setTestStatus(i % 7 == 0 ? TestStatus.FAILED : TestStatus.PASSED);
+                testResult.getTestCaseExecutionList().add(testCaseExecution);
+            }
+            TestEvent event = new TestEvent(TestEventType.AUTOMATION, "findElement By.xpath: //div[@id='item-" + i % 50 + "']",
+                                        Level.INFO.toString(), "findElement", "By.xpath", "//div[@id='item-" + i % 50 + "']", 0, null);
+            event.setEventTime(start.plusMillis(i));
+            testCaseExecution.getEventList().add(event);
+        }
+        testResult.setBuildEndTime(start.plusMillis(eventCount));
+        return testResult;
+    }
+}
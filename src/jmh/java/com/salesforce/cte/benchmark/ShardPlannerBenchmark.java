@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+import com.salesforce.cte.history.ShardPlanner;
+import com.salesforce.cte.history.TestDurationEstimator;
+import com.salesforce.cte.history.TestHistoryIndex;
+import com.salesforce.cte.history.TestShard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to split a large suite into shards, from known durations and from the history index.
+ *
+ * Tests belong to 100 classes and take from 10ms to a minute, mostly short.
+ * The history index holds two runs of every test.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ShardPlannerBenchmark {
+
+    @Param({"50000"})
+    private int testCount;
+
+    @Param({"16"})
+    private int shardCount;
+
+    private ShardPlanner planner;
+    private Map<String, Long> estimates;
+    private TestHistoryIndex index;
+    private Set<String> testNames;
+
+    @Setup
+    public void setup() throws IOException {
+        planner = new ShardPlanner(shardCount);
+        estimates = new HashMap<>();
+        Random random = new Random(42);
+        Instant start = Instant.parse("2022-01-01T00:00:00Z");
+        for (int i = 0; i < testCount; i++)
+            estimates.put("com.test.Class" + i % 100 + ".test" + i, 10 + (long) (Math.pow(random.nextDouble(), 3) * 60_000));
+
+        Path registry = Files.createTempDirectory("ShardPlannerBenchmark");
+        index = TestHistoryIndex.open(registry);
+        for (int run = 0; run < 2; run++) {
+            TestAdvisorResult testResult = new TestAdvisorResult();
+            for (Map.Entry<String, Long> estimate : estimates.entrySet()) {
+                TestCaseExecution test = new TestCaseExecution();
+                test.setTestName(estimate.getKey());
+                test.setStartTime(start);
+                test.setEndTime(start.plusMillis(estimate.getValue()));
+                test.setTestStatus(TestStatus.PASSED);
+                testResult.getTestCaseExecutionList().add(test);
+            }
+            index.add("TestRun-" + run, testResult);
+        }
+        testNames = index.getTestNames();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Benchmark
+    public List<TestShard> plan() {
+        return planner.plan(estimates);
+    }
+
+    @Benchmark
+    public List<TestShard> planFromHistory() {
+        return planner.plan(new TestDurationEstimator(index, 5), testNames);
+    }
+}
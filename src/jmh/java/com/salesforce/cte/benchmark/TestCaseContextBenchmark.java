@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.salesforce.cte.admin.TestAdvisorAdministrator;
+import com.salesforce.cte.common.TestStatus;
+import com.salesforce.cte.listener.GenericTestListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contention of creating, updating and ending test cases with 1, 8, 32, 128 and one thread per CPU.
+ * 32 and 128 threads are the thread counts of large parallel suites, most CI machines have fewer CPUs.
+ * 
+ * Every benchmark thread runs test cases through GenericTestListener as fast as it can:
+ * start, a few events, status and end. Finished test cases are dropped after every iteration,
+ * the benchmark doesn't save results.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class TestCaseContextBenchmark {
+    private static final int EVENTS_PER_TEST = 5;
+
+    private GenericTestListener listener;
+
+    @Setup
+    public void setup() {
+        listener = new GenericTestListener();
+        listener.onTestRunStart();
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void releaseTestCases() {
+        TestAdvisorAdministrator.getInstance().getTestResult().getTestCaseExecutionList().clear();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testCase1Thread() {
+        runTestCase();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void testCase8Threads() {
+        runTestCase();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void testCase32Threads() {
+        runTestCase();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public void testCase128Threads() {
+        runTestCase();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void testCaseMaxThreads() {
+        runTestCase();
+    }
+
+    private void runTestCase() {
+        listener.onTestCaseStart("benchmarkTest");
+        for (int i = 0; i < EVENTS_PER_TEST; i++)
+            listener.onTestCaseEvent("benchmark event", Level.INFO);
+        listener.onTestCaseStatus(TestStatus.PASSED);
+        listener.onTestCaseEnd();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.salesforce.cte.common.TestCaseExecution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of generating a trace id. Contention of creating and ending test cases
+ * is measured by {@link TestCaseContextBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TestCaseExecutionBenchmark {
+
+    /**
+     * Baseline of {@link #generateTraceId()}, a trace id is generated once per test case execution
+     */
+    @Benchmark
+    public TestCaseExecution newTestCaseExecution() {
+        return new TestCaseExecution();
+    }
+
+    @Benchmark
+    public String generateTraceId() {
+        return new TestCaseExecution().generateTraceId();
+    }
+}
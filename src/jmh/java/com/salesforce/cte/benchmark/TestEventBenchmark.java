@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction cost of a test event, with general attributes only and with all Selenium attributes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class TestEventBenchmark {
+    // fields, so the values are not constant folded
+    private String content = "benchmark event";
+    private String level = Level.INFO.toString();
+    private String command = "click";
+    private String param = "[[ChromeDriver: chrome on LINUX] -> id: submit]";
+    private String locator = "By.id: submit";
+    private int recordNumber = 1;
+
+    @Benchmark
+    public TestEvent newTestEvent() {
+        return new TestEvent(TestEventType.AUTOMATION, content, level);
+    }
+
+    @Benchmark
+    public TestEvent newSeleniumTestEvent() {
+        return new TestEvent(TestEventType.AUTOMATION, content, level, command, param, locator, recordNumber, null);
+    }
+}
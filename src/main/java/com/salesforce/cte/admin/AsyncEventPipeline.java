@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.Closeable;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves updates of the test result model off the test threads.
+ *
+ * Test threads capture each update as a task in a bounded lock-free ring buffer,
+ * a single consumer thread applies the tasks in order. When the ring buffer is full,
+ * droppable tasks (test events) are handled according to {@link BackpressurePolicy},
+ * other tasks (test case start, status and end) always wait for a free slot.
+ * With DROP_OLDEST, a task which must not be dropped is applied by the test thread
+ * which takes it out of the ring buffer, so the order of updates is kept.
+ * The consumer thread parks while the ring buffer is empty and is unparked by the next task.
+ */
+public class AsyncEventPipeline implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Defines what happens to a test event when the ring buffer is full
+     * BLOCK: test thread waits until there is a free slot
+     * DROP_OLDEST: the oldest queued test event is dropped to make room
+     * DROP_NEWEST: the new test event is dropped
+     */
+    public enum BackpressurePolicy {
+        BLOCK,
+        DROP_OLDEST,
+        DROP_NEWEST;
+
+        /**
+         * Parse backpressure policy from a case insensitive name, '-' is accepted for '_'
+         * @param name policy name
+         * @param defaultPolicy policy to use when name is empty or unknown
+         * @return backpressure policy
+         */
+        public static BackpressurePolicy fromString(String name, BackpressurePolicy defaultPolicy) {
+            if (name == null || name.trim().isEmpty()) return defaultPolicy;
+            try {
+                return BackpressurePolicy.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(Level.WARNING, "Unknown backpressure policy {0}, use {1}", new Object[] {name, defaultPolicy});
+                return defaultPolicy;
+            }
+        }
+    }
+
+    private static final class Task {
+        final Runnable action;
+        final boolean droppable;
+
+        Task(Runnable action, boolean droppable) {
+            this.action = action;
+            this.droppable = droppable;
+        }
+    }
+
+    private final BoundedRingBuffer<Task> ringBuffer;
+    private final BackpressurePolicy policy;
+    // tasks are only applied or dropped from the ring buffer while holding this lock
+    // it is uncontended unless DROP_OLDEST has to take tasks away from the consumer
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder droppedNewest = new LongAdder();
+    private final Thread consumerThread;
+    private volatile long completedCount = 0;
+    // only written by the consumer thread
+    private volatile int maxQueueDepth = 0;
+    private volatile boolean closed = false;
+    // set by the consumer thread before it parks on an empty ring buffer
+    private volatile boolean consumerWaiting = false;
+
+    /**
+     * Create a pipeline and start its consumer thread
+     *
+     * @param capacity ring buffer capacity
+     * @param policy backpressure policy for test events
+     */
+    public AsyncEventPipeline(int capacity, BackpressurePolicy policy) {
+        this(capacity, policy, true);
+    }
+
+    AsyncEventPipeline(int capacity, BackpressurePolicy policy, boolean startConsumer) {
+        this.ringBuffer = new BoundedRingBuffer<>(capacity);
+        this.policy = policy;
+        consumerThread = new Thread(this::consume, "TestAdvisor-pipeline");
+        consumerThread.setDaemon(true);
+        if (startConsumer)
+            consumerThread.start();
+    }
+
+    /**
+     * Queue a task to be applied by the consumer thread.
+     * Once the pipeline is closed, tasks are applied on the calling thread
+     *
+     * @param action update to apply
+     * @param droppable true if the task may be dropped according to backpressure policy
+     */
+    public void submit(Runnable action, boolean droppable) {
+        if (closed) {
+            applyNow(action);
+            return;
+        }
+        Task task = new Task(action, droppable);
+        if (ringBuffer.offer(task)) {
+            wakeConsumer();
+            return;
+        }
+
+        if (!droppable || policy == BackpressurePolicy.BLOCK) {
+            while (!ringBuffer.offer(task)) {
+                LockSupport.unpark(consumerThread);
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            }
+        } else if (policy == BackpressurePolicy.DROP_NEWEST) {
+            droppedNewest.increment();
+        } else {
+            while (!ringBuffer.offer(task)) {
+                // consumer is applying a task, wait for it to make room
+                if (!applyLock.tryLock()) {
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                    continue;
+                }
+                try {
+                    Task oldest = ringBuffer.poll();
+                    if (oldest != null) {
+                        // keep order, a task which must not be dropped is applied right away
+                        if (oldest.droppable)
+                            droppedOldest.increment();
+                        else
+                            apply(oldest);
+                        completedCount++;
+                    }
+                } finally {
+                    applyLock.unlock();
+                }
+            }
+        }
+        wakeConsumer();
+    }
+
+    /**
+     * Wait until all tasks queued before this call are applied or dropped
+     */
+    public void drain() {
+        long target = ringBuffer.getOfferedCount();
+        while (completedCount < target) {
+            if (!consumerThread.isAlive()) {
+                applyPending();
+                return;
+            }
+            LockSupport.unpark(consumerThread);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+    }
+
+    /**
+     * @return number of tasks waiting in the ring buffer
+     */
+    public int getQueueDepth() {
+        return ringBuffer.size();
+    }
+
+    /**
+     * @return largest number of waiting tasks seen by the consumer thread
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return state of the consumer thread, WAITING while it is parked on an empty ring buffer
+     */
+    Thread.State getConsumerState() {
+        return consumerThread.getState();
+    }
+
+    /**
+     * @return number of test events dropped by DROP_OLDEST policy
+     */
+    public long getDroppedOldestCount() {
+        return droppedOldest.sum();
+    }
+
+    /**
+     * @return number of test events dropped by DROP_NEWEST policy
+     */
+    public long getDroppedNewestCount() {
+        return droppedNewest.sum();
+    }
+
+    /**
+     * @return total number of dropped test events
+     */
+    public long getDroppedEventCount() {
+        return getDroppedOldestCount() + getDroppedNewestCount();
+    }
+
+    /**
+     * Apply all queued tasks and stop the consumer thread
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        drain();
+        closed = true;
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        applyPending();
+    }
+
+    private void consume() {
+        while (!closed) {
+            int depth = ringBuffer.size();
+            if (depth > maxQueueDepth)
+                maxQueueDepth = depth;
+            int count = applyPending(MAX_BATCH_SIZE);
+            if (count == 0) {
+                consumerWaiting = true;
+                // a task offered before the flag was set is seen here, one offered after unparks
+                if (ringBuffer.size() == 0 && !closed)
+                    LockSupport.park(this);
+                consumerWaiting = false;
+            }
+        }
+    }
+
+    /**
+     * Unpark the consumer thread if it waits for tasks, the common case of a busy consumer costs a volatile read
+     */
+    private void wakeConsumer() {
+        if (consumerWaiting)
+            LockSupport.unpark(consumerThread);
+    }
+
+    private void applyPending() {
+        while (applyPending(MAX_BATCH_SIZE) > 0) {
+            // keep applying until ring buffer is empty
+        }
+    }
+
+    private int applyPending(int maxCount) {
+        int count = 0;
+        while (count < maxCount) {
+            // lock per task, so DROP_OLDEST producers can get in between two tasks
+            applyLock.lock();
+            try {
+                Task task = ringBuffer.poll();
+                if (task == null) break;
+                apply(task);
+                completedCount++;
+                count++;
+            } finally {
+                applyLock.unlock();
+            }
+        }
+        return count;
+    }
+
+    private static void apply(Task task) {
+        applyNow(task.action);
+    }
+
+    private static void applyNow(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Fail to apply test event: {0}", ex.toString());
+        }
+    }
+}
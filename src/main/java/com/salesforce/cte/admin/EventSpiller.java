@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.salesforce.cte.common.TestEvent;
+
+/**
+ * Keeps test event memory of a test run within budget by spilling events to disk.
+ *
+ * Each test case gets a {@link SpillableEventList} from {@link #createEventList()}.
+ * Estimated event memory is tracked per test case and for the whole run,
+ * when a budget is exceeded the events held in memory by the test case which
+ * adds an event are handed to a single spill thread and written to a file
+ * in the spill folder of the test run. When the run is over budget, the events of
+ * completed test cases which are still kept in memory are spilled as well, so the
+ * run budget holds without streaming results. Spill files are deleted when the JVM exits.
+ */
+public class EventSpiller implements Closeable {
+    static final String SPILL_FOLDER_NAME = "spill";
+    // a test case spills for the run budget only when it holds at least this much,
+    // so many small test cases don't spill one event at a time
+    private static final long MIN_RUN_SPILL_SIZE = 64 * 1024;
+
+    private final Path spillPath;
+    private final long testCaseBudget;
+    private final long runBudget;
+    private final Supplier<List<TestEvent>> memoryListFactory;
+    private final Consumer<TestEvent> beforeSpill;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService spillThread;
+    private final AtomicLong runMemory = new AtomicLong();
+    private final AtomicLong nextFileId = new AtomicLong();
+    private final LongAdder spilledEvents = new LongAdder();
+    // completed test cases which keep events in memory
+    private final Set<SpillableEventList> completed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param testRunRoot test run folder
+     * @param testCaseBudget estimated bytes of events a test case may keep in memory, 0 for no limit
+     * @param runBudget estimated bytes of events all test cases may keep in memory, 0 for no limit
+     * @param memoryListFactory creates the list holding events in memory
+     * @param beforeSpill called on the spill thread for every event before it is written, such as to move its screenshot
+     */
+    public EventSpiller(Path testRunRoot, long testCaseBudget, long runBudget,
+                        Supplier<List<TestEvent>> memoryListFactory, Consumer<TestEvent> beforeSpill) {
+        this.spillPath = testRunRoot.resolve(SPILL_FOLDER_NAME);
+        this.testCaseBudget = testCaseBudget <= 0 ? Long.MAX_VALUE : testCaseBudget;
+        this.runBudget = runBudget <= 0 ? Long.MAX_VALUE : runBudget;
+        this.memoryListFactory = memoryListFactory;
+        this.beforeSpill = beforeSpill;
+        this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        spillThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TestAdvisor-spill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return a new event list of a test case, spilling within the budgets of this spiller
+     */
+    public SpillableEventList createEventList() {
+        File spillFile = spillPath.resolve(String.format("events-%06d.ndjson", nextFileId.incrementAndGet())).toFile();
+        return new SpillableEventList(this, spillFile, memoryListFactory);
+    }
+
+    /**
+     * @return estimated bytes of events held in memory by all test cases
+     */
+    public long getRunMemory() {
+        return runMemory.get();
+    }
+
+    /**
+     * @return number of events written to spill files
+     */
+    public long getSpilledEventCount() {
+        return spilledEvents.sum();
+    }
+
+    /**
+     * Stop the spill thread after queued spills are written
+     */
+    @Override
+    public void close() {
+        spillThread.shutdown();
+    }
+
+    /**
+     * Account memory of an added event
+     * @return true if the test case or the run is over budget
+     */
+    boolean reserve(long testCaseMemory, long eventSize) {
+        long total = runMemory.addAndGet(eventSize);
+        return testCaseMemory > testCaseBudget
+                || (total > runBudget && testCaseMemory >= Math.min(MIN_RUN_SPILL_SIZE, testCaseBudget));
+    }
+
+    void release(long size) {
+        runMemory.addAndGet(-size);
+    }
+
+    boolean isOverRunBudget() {
+        return runMemory.get() > runBudget;
+    }
+
+    void complete(SpillableEventList list) {
+        completed.add(list);
+    }
+
+    void forget(SpillableEventList list) {
+        completed.remove(list);
+    }
+
+    /**
+     * Hand events of completed test cases to the spill thread until the run is within budget,
+     * their memory is released once they are written
+     */
+    void spillCompleted() {
+        if (completed.isEmpty()) return;
+        long excess = runMemory.get() - runBudget;
+        Iterator<SpillableEventList> lists = completed.iterator();
+        while (excess > 0 && lists.hasNext()) {
+            SpillableEventList list = lists.next();
+            lists.remove();
+            excess -= list.spill();
+        }
+    }
+
+    void submit(Runnable spill) {
+        spillThread.execute(spill);
+    }
+
+    void spilled(int count) {
+        spilledEvents.add(count);
+    }
+
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    Consumer<TestEvent> getBeforeSpill() {
+        return beforeSpill;
+    }
+
+    /**
+     * Rough heap size of an event: object and column overhead plus the characters of its unique strings,
+     * level, command and locator are pooled and not counted
+     */
+    static long estimateSize(TestEvent event) {
+        return 64 + 2L * (length(event.getEventContent()) + length(event.getSeleniumCmdParam())
+                        + length(event.getScreenshotPath()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits Java Flight Recorder events for test cases and TestAdvisor's own work.
+ *
+ * A duration event is recorded for every test case with its name, status and trace id,
+ * so a recording can be sliced per test case. Saving the result, moving a screenshot
+ * and flushing to disk are recorded as well. Events are defined in the TestAdvisor
+ * category and only cost an enabled check when no recording is running. On a JVM
+ * without Flight Recorder nothing is recorded.
+ */
+public final class FlightRecorder {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    /**
+     * Records events, begin methods return a handle to pass to the matching end method
+     */
+    interface Recorder {
+        Object begin(String eventName);
+        void endTestCase(Object handle, String testName, String status, String traceId, boolean configuration);
+        void endSave(Object handle, String resultFile, int testCount);
+        void endScreenshotMove(Object handle, String source, String target);
+        void endFlush(Object handle, String kind, int count);
+    }
+
+    static final String TEST_CASE = "TestCase";
+    static final String SAVE = "Save";
+    static final String SCREENSHOT_MOVE = "ScreenshotMove";
+    static final String FLUSH = "Flush";
+
+    private static final String JFR_RECORDER_CLASS = "com.salesforce.cte.admin.JfrRecorder";
+    private static final Recorder RECORDER = createRecorder();
+
+    //private constructor to prevent instance
+    private FlightRecorder() {}
+
+    private static Recorder createRecorder() {
+        try {
+            // event classes extend jdk.jfr.Event, they are only loaded when it exists
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName(JFR_RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | SecurityException ex) {
+            LOGGER.log(Level.FINE, "Java Flight Recorder is not available: {0}", ex.toString());
+            return new NoopRecorder();
+        }
+    }
+
+    /**
+     * @return true if events are emitted to Java Flight Recorder
+     */
+    public static boolean isAvailable() {
+        return !(RECORDER instanceof NoopRecorder);
+    }
+
+    /**
+     * Start the duration event of a test case
+     * @param context context of the test case which starts
+     */
+    public static void testCaseStarted(TestCaseContext context) {
+        if (context != null)
+            context.setFlightRecording(RECORDER.begin(TEST_CASE));
+    }
+
+    /**
+     * End the duration event of a test case, a test case is only recorded once
+     * @param context context of the test case which ends
+     */
+    public static void testCaseEnded(TestCaseContext context) {
+        if (context == null) return;
+        Object handle = context.takeFlightRecording();
+        if (handle == null) return;
+        RECORDER.endTestCase(handle, context.getTestCaseExecution().getTestName(),
+                            String.valueOf(context.getTestCaseExecution().getTestStatus()),
+                            context.getTestCaseExecution().getTraceId(),
+                            context.getTestCaseExecution().isConfiguration());
+    }
+
+    static Object begin(String eventName) {
+        return RECORDER.begin(eventName);
+    }
+
+    static void endSave(Object handle, File resultFile, int testCount) {
+        if (handle != null)
+            RECORDER.endSave(handle, resultFile == null ? null : resultFile.toString(), testCount);
+    }
+
+    static void endScreenshotMove(Object handle, Path source, Path target) {
+        if (handle != null)
+            RECORDER.endScreenshotMove(handle, source.toString(), target.toString());
+    }
+
+    static void endFlush(Object handle, String kind, int count) {
+        if (handle != null)
+            RECORDER.endFlush(handle, kind, count);
+    }
+
+    private static final class NoopRecorder implements Recorder {
+        @Override
+        public Object begin(String eventName) {
+            return null;
+        }
+
+        @Override
+        public void endTestCase(Object handle, String testName, String status, String traceId, boolean configuration) {
+            // nothing to record
+        }
+
+        @Override
+        public void endSave(Object handle, String resultFile, int testCount) {
+            // nothing to record
+        }
+
+        @Override
+        public void endScreenshotMove(Object handle, String source, String target) {
+            // nothing to record
+        }
+
+        @Override
+        public void endFlush(Object handle, String kind, int count) {
+            // nothing to record
+        }
+    }
+}
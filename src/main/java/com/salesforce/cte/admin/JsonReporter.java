@@ -7,20 +7,55 @@
 
 package com.salesforce.cte.admin;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.DataFormatReaders;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.salesforce.cte.common.TestAdvisorResult;
 import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestCaseSummary;
 import com.salesforce.cte.common.TestEvent;
 
 /**
@@ -33,11 +68,116 @@ import com.salesforce.cte.common.TestEvent;
  *
  */
 public class JsonReporter {
-
+	private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
 	
+	private static final String RESULT_FILE_NAME = "test-result";
+
+	/**
+	 * Encoding of the result file, all formats share the same data model
+	 * JSON_PRETTY: indented JSON, test-result.json
+	 * JSON: JSON without whitespace, test-result.json
+	 * SMILE: binary JSON, test-result.smile
+	 * CBOR: binary JSON, test-result.cbor
+	 */
+	public enum ResultFormat {
+		JSON_PRETTY("json"),
+		JSON("json"),
+		SMILE("smile"),
+		CBOR("cbor");
+
+		private final String extension;
+
+		ResultFormat(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * @return name of the result file in this format
+		 */
+		public String getFileName() {
+			return RESULT_FILE_NAME + "." + extension;
+		}
+
+		/**
+		 * Parse result format from a case insensitive name, '-' is accepted for '_'
+		 * @param name format name
+		 * @param defaultFormat format to use when name is empty or unknown
+		 * @return result format
+		 */
+		public static ResultFormat fromString(String name, ResultFormat defaultFormat) {
+			if (name == null || name.trim().isEmpty()) return defaultFormat;
+			try {
+				return ResultFormat.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException ex) {
+				LOGGER.log(Level.WARNING, "Unknown result format {0}, use {1}", new Object[] {name, defaultFormat});
+				return defaultFormat;
+			}
+		}
+	}
+
+	/**
+	 * Compression of the result file, applied on top of the result format
+	 * NONE: no compression
+	 * GZIP: gzip stream, .gz is appended to the file name
+	 * DEFLATE: zlib stream, .deflate is appended to the file name
+	 */
+	public enum Compression {
+		NONE(""),
+		GZIP(".gz"),
+		DEFLATE(".deflate");
+
+		private final String extension;
+
+		Compression(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * @return extension appended to the result file name
+		 */
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * Parse compression from a case insensitive name
+		 * @param name compression name
+		 * @param defaultCompression compression to use when name is empty or unknown
+		 * @return compression
+		 */
+		public static Compression fromString(String name, Compression defaultCompression) {
+			if (name == null || name.trim().isEmpty()) return defaultCompression;
+			try {
+				return Compression.valueOf(name.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException ex) {
+				LOGGER.log(Level.WARNING, "Unknown result compression {0}, use {1}", new Object[] {name, defaultCompression});
+				return defaultCompression;
+			}
+		}
+	}
+
+	private static final int GZIP_MAGIC_FIRST_BYTE = 0x1f;
+	private static final int GZIP_MAGIC_SECOND_BYTE = 0x8b;
+	private static final int ZLIB_DEFLATE_METHOD = 8;
+
+	private ResultFormat resultFormat;
+	private Compression compression;
+	private int compressionLevel;
+	private int compressionBufferSize;
 	private ObjectMapper objectMapper;
 	private ObjectWriter objectWriter;
 	private Path testRunRoot;
+	// generator of the result document while it is being streamed, null otherwise
+	private JsonGenerator streamGenerator;
+	// counts uncompressed bytes of the streamed document, for the offset of test case summaries
+	private CountingOutputStream streamOutput;
+	// single thread serializing and compressing streamed test cases, null when not streaming
+	private ExecutorService streamWriter;
+	private ScreenshotRelocator screenshotRelocator;
+	// read position of loaded test cases while the result file is streamed
+	private final Object recordLock = new Object();
+	private RecordCursor recordCursor;
+	private final LongAdder bytesWritten = new LongAdder();
 	
 	/**
 	 * A constructor for the JsonReporter class that takes in one argument
@@ -45,10 +185,39 @@ public class JsonReporter {
 	 * @param path represents the path of the folder that will contain the resulting JSON file
 	 */
 	public JsonReporter(Path path) {
-		objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
-							.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-		objectWriter = objectMapper.writer(new DefaultPrettyPrinter());
+		this(path, TestAdvisorConfiguration.getResultFormat());
+	}
+
+	/**
+	 * A constructor for the JsonReporter class writing result file in the given format
+	 * 
+	 * @param path represents the path of the folder that will contain the result file
+	 * @param resultFormat encoding of the result file
+	 */
+	public JsonReporter(Path path, ResultFormat resultFormat) {
+		this(path, resultFormat, TestAdvisorConfiguration.getResultCompression());
+	}
+
+	/**
+	 * A constructor for the JsonReporter class writing result file in the given format and compression,
+	 * compression level and buffer size are read from configuration
+	 * 
+	 * @param path represents the path of the folder that will contain the result file
+	 * @param resultFormat encoding of the result file
+	 * @param compression compression of the result file
+	 */
+	public JsonReporter(Path path, ResultFormat resultFormat, Compression compression) {
+		this.resultFormat = resultFormat;
+		this.compression = compression;
+		this.compressionLevel = TestAdvisorConfiguration.getResultCompressionLevel();
+		this.compressionBufferSize = TestAdvisorConfiguration.getResultCompressionBufferSize();
+		objectMapper = createObjectMapper(resultFormat);
+		objectWriter = resultFormat == ResultFormat.JSON_PRETTY ? objectMapper.writer(new DefaultPrettyPrinter())
+																: objectMapper.writer();
         testRunRoot = path;
+		screenshotRelocator = new ScreenshotRelocator(path.resolve("Screenshots"),
+										TestAdvisorConfiguration.getScreenshotThreadCount(),
+										TestAdvisorConfiguration.getScreenshotDedupEnabled());
 	}
 	
     
@@ -61,26 +230,534 @@ public class JsonReporter {
 	 * 
      */
 	public File saveToRegistry(TestAdvisorResult testResult) throws IOException {
-			//process screenshot files
-			Path screenshotPath = testRunRoot.resolve("Screenshots");
-			if (!screenshotPath.toFile().exists())
-				screenshotPath.toFile().mkdirs();
+			//process screenshot files, most of them are moved when test case ends
 			for (TestCaseExecution test : testResult.getTestCaseExecutionList()) {
-				for(TestEvent event : test.getEventList()){
-					if (event.getScreenshotPath() == null || event.getScreenshotPath().trim().isEmpty()) continue;
-					String newName = String.format("%05d.png", event.getScreenshotRecordNumber());
-					Files.move(Paths.get(event.getScreenshotPath()), screenshotPath.resolve(newName), StandardCopyOption.REPLACE_EXISTING);
-					event.setScreenshotPath(screenshotPath.resolve(newName).toString());
-				}
+				relocateScreenshots(test);
+				awaitSpills(test);
 			}
+			screenshotRelocator.awaitAll();
+			reportScreenshotDeduplication();
 
 			//save json file
-			Path outputFilePath = testRunRoot.resolve("test-result.json");
+			return writeTestResult(testResult);
+	}
+
+	/**
+	 * Writes the test result to the JSON result file as it is,
+	 * screenshot files are not touched
+	 * 
+	 * @param testResult represents test result object
+	 * @return a File object representing the JSON result file
+	 * @throws IOException throws IOException when fail to write result file
+	 */
+	public File writeTestResult(TestAdvisorResult testResult) throws IOException {
+			File outputFile = getResultFile();
 			// Decide whether the program should stop if it hits an error or continue running
 	
-			objectWriter.withDefaultPrettyPrinter().writeValue(outputFilePath.toFile(), testResult);
+			objectWriter.writeValue(openResultOutput(outputFile), testResult);
 			
-			return outputFilePath.toFile();
+			return outputFile;
+	}
+
+	/**
+	 * @return result file of the test run in the configured format and compression
+	 */
+	public File getResultFile() {
+		return testRunRoot.resolve(resultFormat.getFileName() + compression.getExtension()).toFile();
+	}
+
+	/**
+	 * Open result file for writing through the configured compressor
+	 */
+	private OutputStream openResultOutput(File outputFile) throws IOException {
+		OutputStream output = new CountingOutputStream(new FileOutputStream(outputFile), bytesWritten);
+		try {
+			switch (compression) {
+				case GZIP:
+					// sync flush, so streamed test cases can be read back before the file is closed
+					return new GZIPOutputStream(output, compressionBufferSize, true) {
+						{
+							def.setLevel(compressionLevel);
+						}
+					};
+				case DEFLATE:
+					Deflater deflater = new Deflater(compressionLevel);
+					return new DeflaterOutputStream(output, deflater, compressionBufferSize, true) {
+						@Override
+						public void close() throws IOException {
+							try {
+								super.close();
+							} finally {
+								// a deflater passed in is not released by DeflaterOutputStream
+								deflater.end();
+							}
+						}
+					};
+				default:
+					return output;
+			}
+		} catch (IllegalArgumentException ex) {
+			output.close();
+			throw new IOException("Invalid compression setting: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Open result file for reading, gzip and deflate compression is detected
+	 * from the file content and removed
+	 */
+	private static InputStream openResultInput(File resultFile) throws IOException {
+		InputStream input = new BufferedInputStream(Files.newInputStream(resultFile.toPath()));
+		input.mark(2);
+		int first = input.read();
+		int second = input.read();
+		input.reset();
+		if (first == GZIP_MAGIC_FIRST_BYTE && second == GZIP_MAGIC_SECOND_BYTE)
+			return new GZIPInputStream(input);
+		// zlib header: deflate method in the low bits, header is a multiple of 31
+		if (first >= 0 && second >= 0 && (first & 0x0f) == ZLIB_DEFLATE_METHOD && (first >> 4) <= 7
+				&& ((first << 8) | second) % 31 == 0)
+			return new InflaterInputStream(input);
+		return input;
+	}
+
+	/**
+	 * Reads a result file written in any of the result formats and compressions,
+	 * the format and compression are detected from the file content
+	 * 
+	 * @param resultFile result file
+	 * @return test result
+	 * @throws IOException throws IOException when fail to read or detect the format of the result file
+	 */
+	public static TestAdvisorResult readTestResult(File resultFile) throws IOException {
+		ObjectReader jsonReader = createObjectMapper(ResultFormat.JSON).readerFor(TestAdvisorResult.class);
+		ObjectReader smileReader = createObjectMapper(ResultFormat.SMILE).readerFor(TestAdvisorResult.class);
+		ObjectReader cborReader = createObjectMapper(ResultFormat.CBOR).readerFor(TestAdvisorResult.class);
+		try (InputStream input = openResultInput(resultFile)) {
+			return jsonReader.withFormatDetection(jsonReader, smileReader, cborReader).readValue(input);
+		}
+	}
+
+	/**
+	 * Opens a streaming parser over a result file written in any of the result formats
+	 * and compressions, values are read with the codec of the detected format
+	 * 
+	 * @param resultFile result file
+	 * @return parser positioned before the result document, closing it closes the file
+	 * @throws IOException throws IOException when fail to open or detect the format of the result file
+	 */
+	static JsonParser openResultParser(File resultFile) throws IOException {
+		DataFormatReaders readers = new DataFormatReaders(
+						createObjectMapper(ResultFormat.JSON).readerFor(TestAdvisorResult.class),
+						createObjectMapper(ResultFormat.SMILE).readerFor(TestAdvisorResult.class),
+						createObjectMapper(ResultFormat.CBOR).readerFor(TestAdvisorResult.class));
+		InputStream input = openResultInput(resultFile);
+		try {
+			DataFormatReaders.Match match = readers.findFormat(input);
+			if (!match.hasMatch())
+				throw new IOException("Unknown result format of " + resultFile);
+			JsonParser parser = match.createParserWithMatch();
+			parser.setCodec(match.getReader());
+			return parser;
+		} catch (IOException | RuntimeException ex) {
+			input.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reader of a single test case cut from the result document,
+	 * Smile test cases are read without the header of the document
+	 */
+	private static ObjectReader createRecordReader(ResultFormat resultFormat) {
+		if (resultFormat == ResultFormat.SMILE) {
+			SmileFactory factory = new SmileFactory().disable(SmileParser.Feature.REQUIRE_HEADER);
+			return new ObjectMapper(factory).registerModule(new JavaTimeModule()).readerFor(TestCaseExecution.class);
+		}
+		return createObjectMapper(resultFormat).readerFor(TestCaseExecution.class);
+	}
+
+	private static ObjectMapper createObjectMapper(ResultFormat resultFormat) {
+		JsonFactory factory;
+		switch (resultFormat) {
+			case SMILE:
+				factory = new SmileFactory();
+				break;
+			case CBOR:
+				factory = new CBORFactory();
+				break;
+			default:
+				factory = new JsonFactory();
+		}
+		return new ObjectMapper(factory).registerModule(new JavaTimeModule())
+							.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+	}
+
+	/**
+	 * Opens the result file and writes the head of the result document,
+	 * test case executions can be appended afterwards one at a time.
+	 * Appended test case executions are serialized and compressed by a writer thread
+	 * 
+	 * @throws IOException throws IOException when fail to create result file
+	 */
+	public synchronized void openResultStream() throws IOException {
+		if (streamGenerator != null) return;
+		closeRecordCursor();
+		streamOutput = new CountingOutputStream(openResultOutput(getResultFile()), null);
+		JsonFactory factory = objectMapper.getFactory();
+		// every streamed test case has to be readable on its own, without back references to earlier names
+		if (resultFormat == ResultFormat.SMILE)
+			factory = ((SmileFactory) factory).copy().disable(SmileGenerator.Feature.CHECK_SHARED_NAMES);
+		streamGenerator = factory.createGenerator(streamOutput, JsonEncoding.UTF8);
+		// flushing the generator keeps the offset exact, the file is flushed on demand only
+		streamGenerator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+		if (resultFormat == ResultFormat.JSON_PRETTY)
+			streamGenerator.setPrettyPrinter(new DefaultPrettyPrinter());
+		streamGenerator.writeStartObject();
+		streamGenerator.writeFieldName("testCaseExecutionList");
+		streamGenerator.writeStartArray();
+		streamGenerator.flush();
+		streamWriter = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "TestAdvisor-result-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Check if the result document is currently open for streaming
+	 * 
+	 * @return true if result stream is open
+	 */
+	public synchronized boolean isResultStreamOpen() {
+		return streamGenerator != null;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Appends a finished test case execution to the open result document.
+	 * The test case execution is queued and written by the writer thread
+	 * once its screenshots are moved, it must not change afterwards
+	 * 
+	 * @param test test case execution to write
+	 * @return future which completes with the summary of the test case once it is written,
+	 * or with null when it fails to write
+	 * @throws IOException throws IOException when fail to write result file
+	 */
+	public synchronized CompletableFuture<TestCaseSummary> appendToResultStream(TestCaseExecution test) throws IOException {
+		if (streamGenerator == null)
+			throw new IllegalStateException("Result stream is not open");
+		CompletableFuture<Void> screenshots = relocateScreenshots(test);
+		JsonGenerator generator = streamGenerator;
+		CountingOutputStream output = streamOutput;
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				screenshots.join();
+			} catch (CompletionException ex) {
+				// failures are logged by screenshot relocator
+			}
+			awaitSpills(test);
+			TestCaseSummary summary = null;
+			try {
+				generator.flush();
+				long offset = output.getCount();
+				objectMapper.writeValue(generator, test);
+				generator.flush();
+				summary = new TestCaseSummary(test, offset, (int) (output.getCount() - offset), this::loadTestCase);
+			} catch (IOException ex) {
+				LOGGER.log(Level.WARNING, "Fail to write test case {0}: {1}", new Object[] {test.getTestName(), ex.toString()});
+			}
+			// the test case is no longer kept, its events don't count against the run budget
+			if (test.getEventList() instanceof SpillableEventList)
+				((SpillableEventList) test.getEventList()).release();
+			return summary;
+		}, streamWriter);
+	}
+
+	/**
+	 * Reads a test case execution written by {@link #appendToResultStream(TestCaseExecution)}
+	 * back from the result file, the result file may still be open for streaming.
+	 * While the result file is open, the read position is kept between calls, so loading
+	 * test cases in the order they were written decompresses the result file once
+	 * 
+	 * @param summary summary of the written test case
+	 * @return test case execution with all its events
+	 * @throws IOException throws IOException when fail to read result file
+	 */
+	public TestCaseExecution loadTestCase(TestCaseSummary summary) throws IOException {
+		flushResultStream();
+		// checked before taking the record lock, closeResultStream takes the locks in the other order
+		boolean streaming = isResultStreamOpen();
+		byte[] record;
+		synchronized (recordLock) {
+			if (recordCursor != null && recordCursor.position > summary.getOffset()) {
+				recordCursor.close();
+				recordCursor = null;
+			}
+			RecordCursor cursor = recordCursor != null ? recordCursor : new RecordCursor(openResultInput(getResultFile()));
+			recordCursor = null;
+			try {
+				record = cursor.read(summary.getOffset(), summary.getLength());
+			} catch (IOException | RuntimeException ex) {
+				cursor.close();
+				throw ex;
+			}
+			// the cursor is kept only while the result file is streamed, so the file is not left open
+			if (streaming)
+				recordCursor = cursor;
+			else
+				cursor.close();
+		}
+		return readRecord(record);
+	}
+
+	/**
+	 * Reads test case executions written by {@link #appendToResultStream(TestCaseExecution)}
+	 * back from the result file in one pass over the file
+	 * 
+	 * @param summaries summaries of written test cases
+	 * @return test case executions in the order of summaries
+	 * @throws IOException throws IOException when fail to read result file
+	 */
+	public List<TestCaseExecution> loadTestCases(List<TestCaseSummary> summaries) throws IOException {
+		flushResultStream();
+		Integer[] order = new Integer[summaries.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingLong(i -> summaries.get(i).getOffset()));
+		TestCaseExecution[] tests = new TestCaseExecution[order.length];
+		try (RecordCursor cursor = new RecordCursor(openResultInput(getResultFile()))) {
+			for (int i : order) {
+				TestCaseSummary summary = summaries.get(i);
+				tests[i] = readRecord(cursor.read(summary.getOffset(), summary.getLength()));
+			}
+		}
+		return Arrays.asList(tests);
+	}
+
+	private TestCaseExecution readRecord(byte[] record) throws IOException {
+		int start = 0;
+		if (resultFormat == ResultFormat.JSON || resultFormat == ResultFormat.JSON_PRETTY) {
+			// a JSON test case starts with the separator from the previous array element
+			while (start < record.length && record[start] != '{')
+				start++;
+		}
+		return createRecordReader(resultFormat).readValue(record, start, record.length - start);
+	}
+
+	/**
+	 * Push test cases written so far to the result file, so they can be read back
+	 */
+	private void flushResultStream() throws IOException {
+		Future<?> flush;
+		synchronized (this) {
+			if (streamGenerator == null) return;
+			JsonGenerator generator = streamGenerator;
+			CountingOutputStream output = streamOutput;
+			flush = streamWriter.submit(() -> {
+				generator.flush();
+				output.flush();
+				return null;
+			});
+		}
+		try {
+			flush.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while flushing result stream", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			throw new IOException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Writes the tail of the result document and closes the result file.
+	 * The resulting file follows the same schema as {@link #saveToRegistry(TestAdvisorResult)}
+	 * 
+	 * @param testResult test result providing version and build times
+	 * @return a File object representing the JSON result file
+	 * @throws IOException throws IOException when fail to write result file
+	 */
+	public synchronized File closeResultStream(TestAdvisorResult testResult) throws IOException {
+		File outputFile = getResultFile();
+		if (streamGenerator == null) return outputFile;
+		JsonGenerator generator = streamGenerator;
+		Future<?> tail = streamWriter.submit(() -> {
+			try {
+				generator.writeEndArray();
+				generator.writeFieldName("version");
+				objectMapper.writeValue(generator, testResult.getVersion());
+				generator.writeFieldName("buildStartTime");
+				objectMapper.writeValue(generator, testResult.getBuildStartTime());
+				generator.writeFieldName("buildEndTime");
+				objectMapper.writeValue(generator, testResult.getBuildEndTime());
+				if (testResult.getMetrics() != null) {
+					generator.writeFieldName("metrics");
+					objectMapper.writeValue(generator, testResult.getMetrics());
+				}
+				generator.writeEndObject();
+			} finally {
+				generator.close();
+			}
+			return null;
+		});
+		try {
+			tail.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing result stream", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			throw new IOException(ex.getCause());
+		} finally {
+			streamWriter.shutdown();
+			streamWriter = null;
+			streamGenerator = null;
+			streamOutput = null;
+			closeRecordCursor();
+		}
+		reportScreenshotDeduplication();
+		return outputFile;
+	}
+
+	private void closeRecordCursor() {
+		synchronized (recordLock) {
+			if (recordCursor == null) return;
+			try {
+				recordCursor.close();
+			} catch (IOException ex) {
+				LOGGER.log(Level.FINE, "Fail to close result file: {0}", ex.toString());
+			}
+			recordCursor = null;
+		}
+	}
+
+	/**
+	 * Get total size of duplicate screenshots which were not stored
+	 * 
+	 * @return bytes saved by screenshot deduplication
+	 */
+	public long getScreenshotBytesSaved() {
+		return screenshotRelocator.getBytesSaved();
+	}
+
+	/**
+	 * @return number of bytes written to result files, after compression
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	/**
+	 * @return number of screenshot files moved into the Screenshots folder
+	 */
+	public long getScreenshotsMoved() {
+		return screenshotRelocator.getMovedCount();
+	}
+
+	private void reportScreenshotDeduplication() {
+		if (screenshotRelocator.getDuplicateCount() == 0) return;
+		LOGGER.log(Level.INFO, "{0} duplicate screenshots stored once, {1} bytes saved",
+					new Object[] {screenshotRelocator.getDuplicateCount(), screenshotRelocator.getBytesSaved()});
+	}
+
+	/**
+	 * Starts moving screenshot files of a test case into the Screenshots folder of the test run
+	 * in background, the screenshot path of the events is updated once a file is moved
+	 * 
+	 * @param test test case execution
+	 * @return future which completes when all screenshot files of the test case are handled
+	 */
+	public CompletableFuture<Void> relocateScreenshots(TestCaseExecution test) {
+		return screenshotRelocator.relocate(test);
+	}
+
+	/**
+	 * Wait until spilled events of a test case are written, their screenshots are moved before
+	 */
+	private static void awaitSpills(TestCaseExecution test) {
+		if (test.getEventList() instanceof SpillableEventList)
+			((SpillableEventList) test.getEventList()).awaitSpills();
+	}
+
+	/**
+	 * Moves the screenshot file of one event into the Screenshots folder of the test run
+	 * on the calling thread, such as before the event is spilled to disk
+	 * 
+	 * @param event test event
+	 */
+	void relocateScreenshot(TestEvent event) {
+		screenshotRelocator.relocateNow(event);
+	}
+
+	/**
+	 * Output stream counting the bytes written through it, optionally adding them to a total
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private final LongAdder total;
+		private long count = 0;
+
+		CountingOutputStream(OutputStream output, LongAdder total) {
+			super(output);
+			this.total = total;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+			if (total != null) total.increment();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+			if (total != null) total.add(len);
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * Uncompressed input of the result file with its position in the result document,
+	 * records are read at increasing offsets
+	 */
+	private static final class RecordCursor implements Closeable {
+		private final InputStream input;
+		private long position = 0;
+
+		RecordCursor(InputStream input) {
+			this.input = input;
+		}
+
+		byte[] read(long offset, int length) throws IOException {
+			if (offset < position)
+				throw new IllegalArgumentException("Record at " + offset + " is before the read position " + position);
+			long remaining = offset - position;
+			while (remaining > 0) {
+				long skipped = input.skip(remaining);
+				if (skipped <= 0) {
+					if (input.read() < 0) throw new EOFException("Test case is beyond the end of result file");
+					skipped = 1;
+				}
+				remaining -= skipped;
+			}
+			position = offset;
+			byte[] record = new byte[length];
+			// read exactly the record, the file may still be written behind it
+			new DataInputStream(input).readFully(record);
+			position += length;
+			return record;
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Watches the old generation of the heap and reports memory pressure.
+ *
+ * A usage threshold and a collection usage threshold are set on every heap pool which
+ * supports them, in practice the old generation pool of the running collector.
+ * When a threshold is crossed the pressure handler is called on a monitor thread,
+ * notifications which arrive while the handler is running are coalesced into one call.
+ * Thresholds which were set before are restored when the monitor is closed.
+ */
+public class MemoryPressureMonitor implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private final Map<MemoryPoolMXBean, long[]> previousThresholds = new HashMap<>();
+    private final Consumer<MemoryNotificationInfo> handler;
+    private final ExecutorService monitorThread;
+    private final NotificationListener listener = this::handleNotification;
+    private final AtomicBoolean handling = new AtomicBoolean();
+    private final AtomicLong pressureCount = new AtomicLong();
+
+    /**
+     * @param thresholdPercent percent of the maximum size of the pool, 1 to 99
+     * @param handler called on the monitor thread when memory pressure is detected
+     */
+    public MemoryPressureMonitor(int thresholdPercent, Consumer<MemoryNotificationInfo> handler) {
+        if (thresholdPercent < 1 || thresholdPercent > 99)
+            throw new IllegalArgumentException("Memory threshold must be between 1 and 99 percent: " + thresholdPercent);
+        this.handler = handler;
+        monitorThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TestAdvisor-memory");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()) continue;
+            long max = pool.getUsage().getMax();
+            if (max <= 0) continue;
+            long threshold = max / 100 * thresholdPercent;
+            long previousCollectionThreshold = pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsageThreshold() : 0;
+            previousThresholds.put(pool, new long[] {pool.getUsageThreshold(), previousCollectionThreshold});
+            pool.setUsageThreshold(threshold);
+            if (pool.isCollectionUsageThresholdSupported())
+                pool.setCollectionUsageThreshold(threshold);
+            pools.add(pool);
+        }
+        if (pools.isEmpty())
+            LOGGER.log(Level.WARNING, "No heap memory pool supports usage threshold, memory pressure is not monitored");
+        else
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+    }
+
+    /**
+     * @return names of the memory pools watched by this monitor
+     */
+    public List<String> getPoolNames() {
+        List<String> names = new ArrayList<>();
+        for (MemoryPoolMXBean pool : pools)
+            names.add(pool.getName());
+        return names;
+    }
+
+    /**
+     * @return number of times the pressure handler was called
+     */
+    public long getPressureCount() {
+        return pressureCount.get();
+    }
+
+    /**
+     * Remove the notification listener, restore previous thresholds and stop the monitor thread
+     */
+    @Override
+    public void close() {
+        if (!pools.isEmpty()) {
+            try {
+                ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ex) {
+                // already removed
+            }
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            long[] previous = previousThresholds.get(pool);
+            pool.setUsageThreshold(previous[0]);
+            if (pool.isCollectionUsageThresholdSupported())
+                pool.setCollectionUsageThreshold(previous[1]);
+        }
+        pools.clear();
+        monitorThread.shutdown();
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type))
+            return;
+        onPressure(MemoryNotificationInfo.from((CompositeData) notification.getUserData()));
+    }
+
+    /**
+     * Hand memory pressure to the monitor thread, unless it is already handling pressure
+     */
+    void onPressure(MemoryNotificationInfo info) {
+        // runs on the JMX notification thread, which must not be held up
+        if (!handling.compareAndSet(false, true)) return;
+        monitorThread.execute(() -> {
+            try {
+                pressureCount.incrementAndGet();
+                handler.accept(info);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Fail to handle memory pressure: {0}", ex.toString());
+            } finally {
+                handling.set(false);
+            }
+        });
+    }
+}
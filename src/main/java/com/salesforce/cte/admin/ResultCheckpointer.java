@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+
+/**
+ * Writes checkpoints of completed test cases to the TestRun folder during a test run,
+ * so partial results can be read while the run is going and survive a crash.
+ *
+ * Test threads only add completed test cases to a lock-free queue. At every interval
+ * the checkpoint thread writes the test cases completed since the last checkpoint to a
+ * new segment file, one test case per JSON line, and then replaces the manifest which
+ * lists all segments. Segments and manifest are written to a temp file, forced to disk
+ * and renamed, so a checkpoint is either complete or not visible. The cost of a checkpoint
+ * is proportional to the test cases completed since the last one.
+ *
+ * A test case can be queued before its screenshots are moved, it is written by the first
+ * checkpoint after the move completes, so checkpoints hold the final screenshot paths.
+ * Test cases are written in the order they were queued.
+ */
+public class ResultCheckpointer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    public static final String CHECKPOINT_FOLDER_NAME = "checkpoint";
+    public static final String MANIFEST_FILE_NAME = "checkpoint.json";
+    private static final String SEGMENT_FILE_FORMAT = "segment-%05d.ndjson";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final ObjectMapper objectMapper = createObjectMapper();
+    private final Path checkpointPath;
+    private final Queue<CompletedTestCase> completed = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService checkpointThread;
+    // only used on the checkpoint thread, or by close once the thread is stopped
+    private final List<String> segments = new ArrayList<>();
+    // test cases taken from the queue but not written yet, kept in order after a failed checkpoint
+    private final List<CompletedTestCase> unwritten = new ArrayList<>();
+    private int testCount = 0;
+    private volatile String version = "";
+    private volatile Instant buildStartTime;
+    private volatile Instant buildEndTime;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a checkpointer and schedule checkpoints
+     *
+     * @param testRunRoot test run folder
+     * @param intervalMillis interval between two checkpoints, 0 to only checkpoint on demand
+     */
+    public ResultCheckpointer(Path testRunRoot, long intervalMillis) {
+        this.checkpointPath = testRunRoot.resolve(CHECKPOINT_FOLDER_NAME);
+        checkpointThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TestAdvisor-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMillis > 0)
+            checkpointThread.scheduleWithFixedDelay(this::checkpointQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record version and start time of the test run
+     */
+    public void recordTestRunStart(String version, Instant buildStartTime) {
+        this.version = version;
+        this.buildStartTime = buildStartTime;
+    }
+
+    /**
+     * Record end time of the test run
+     */
+    public void recordTestRunEnd(Instant buildEndTime) {
+        this.buildEndTime = buildEndTime;
+    }
+
+    /**
+     * Queue a completed test case for the next checkpoint, never blocks
+     * @param testCaseExecution test case execution which has ended
+     */
+    public void recordTestCaseEnd(TestCaseExecution testCaseExecution) {
+        recordTestCaseEnd(testCaseExecution, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Queue a completed test case for the first checkpoint after its screenshots are moved, never blocks
+     * @param testCaseExecution test case execution which has ended
+     * @param screenshots completes when the screenshots of the test case are moved
+     */
+    public void recordTestCaseEnd(TestCaseExecution testCaseExecution, CompletableFuture<?> screenshots) {
+        if (!closed)
+            completed.add(new CompletedTestCase(testCaseExecution, screenshots));
+    }
+
+    /**
+     * @return folder of segment and manifest files
+     */
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Write a checkpoint on the checkpoint thread and wait for it
+     * @return number of test cases in the checkpoint
+     * @throws IOException when fail to write the checkpoint
+     */
+    public int checkpoint() throws IOException {
+        return checkpoint(false);
+    }
+
+    private int checkpoint(boolean last) throws IOException {
+        try {
+            return checkpointThread.submit(() -> writeCheckpoint(last)).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing checkpoint", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Write a last checkpoint, which waits for screenshot moves of queued test cases,
+     * and stop the checkpoint thread
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            checkpoint(true);
+        } finally {
+            closed = true;
+            checkpointThread.shutdown();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            writeCheckpoint(false);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Fail to write result checkpoint: {0}", ex.toString());
+        }
+    }
+
+    // runs on the checkpoint thread, the last checkpoint waits for screenshot moves
+    private int writeCheckpoint(boolean last) throws IOException {
+        for (CompletedTestCase test = completed.poll(); test != null; test = completed.poll())
+            unwritten.add(test);
+        // test cases up to the first one whose screenshots are still moving
+        int ready = 0;
+        while (ready < unwritten.size() && (last || unwritten.get(ready).screenshots.isDone())) {
+            try {
+                unwritten.get(ready).screenshots.join();
+            } catch (CompletionException | CancellationException ex) {
+                // failures are logged by screenshot relocator
+            }
+            ready++;
+        }
+        checkpointPath.toFile().mkdirs();
+        if (ready > 0) {
+            List<CompletedTestCase> written = unwritten.subList(0, ready);
+            String segment = String.format(SEGMENT_FILE_FORMAT, segments.size() + 1);
+            writeAtomically(checkpointPath.resolve(segment), generator -> {
+                for (CompletedTestCase test : written) {
+                    objectMapper.writeValue(generator, test.testCaseExecution);
+                    generator.writeRaw('\n');
+                }
+            });
+            segments.add(segment);
+            testCount += ready;
+            written.clear();
+        }
+
+        ObjectNode manifest = objectMapper.createObjectNode();
+        manifest.put("version", version);
+        manifest.put("buildStartTime", buildStartTime == null ? null : buildStartTime.toString());
+        manifest.put("buildEndTime", buildEndTime == null ? null : buildEndTime.toString());
+        manifest.put("checkpointTime", Instant.now().toString());
+        manifest.put("testCount", testCount);
+        ArrayNode segmentNames = manifest.putArray("segments");
+        for (String segment : segments)
+            segmentNames.add(segment);
+        writeAtomically(checkpointPath.resolve(MANIFEST_FILE_NAME), generator -> objectMapper.writeTree(generator, manifest));
+        return testCount;
+    }
+
+    private static final class CompletedTestCase {
+        final TestCaseExecution testCaseExecution;
+        final CompletableFuture<?> screenshots;
+
+        CompletedTestCase(TestCaseExecution testCaseExecution, CompletableFuture<?> screenshots) {
+            this.testCaseExecution = testCaseExecution;
+            this.screenshots = screenshots;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Content {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Write to a temp file, force it to disk and rename it to target
+     */
+    private void writeAtomically(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_FILE_EXTENSION);
+        try (FileOutputStream output = new FileOutputStream(temp.toFile());
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            content.write(generator);
+            generator.flush();
+            output.getChannel().force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read the last checkpoint of a test run, segments which are not
+     * in the manifest are left over from an interrupted checkpoint and ignored
+     *
+     * @param testRunRoot test run folder
+     * @return test result with the test cases of the last checkpoint
+     * @throws IOException when no checkpoint is found or fail to read it
+     */
+    public static TestAdvisorResult read(Path testRunRoot) throws IOException {
+        Path checkpointPath = testRunRoot.resolve(CHECKPOINT_FOLDER_NAME);
+        Path manifestFile = checkpointPath.resolve(MANIFEST_FILE_NAME);
+        if (!manifestFile.toFile().exists())
+            throw new IOException("No result checkpoint found in " + testRunRoot);
+        ObjectMapper objectMapper = createObjectMapper();
+        JsonNode manifest = objectMapper.readTree(manifestFile.toFile());
+
+        TestAdvisorResult testResult = new TestAdvisorResult();
+        testResult.setVersion(manifest.path("version").asText(""));
+        if (manifest.hasNonNull("buildStartTime"))
+            testResult.setBuildStartTime(Instant.parse(manifest.get("buildStartTime").asText()));
+        if (manifest.hasNonNull("buildEndTime"))
+            testResult.setBuildEndTime(Instant.parse(manifest.get("buildEndTime").asText()));
+        for (JsonNode segment : manifest.path("segments")) {
+            try (BufferedReader reader = Files.newBufferedReader(checkpointPath.resolve(segment.asText()), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty())
+                        testResult.getTestCaseExecutionList().add(objectMapper.readValue(line, TestCaseExecution.class));
+                }
+            }
+        }
+        if (testResult.getBuildEndTime() == null)
+            testResult.setBuildEndTime(Instant.parse(manifest.get("checkpointTime").asText()));
+        return testResult;
+    }
+
+    /**
+     * Rebuild test-result.json of an interrupted test run from its last checkpoint
+     *
+     * @param testRunRoot test run folder which contains the checkpoint folder
+     * @return a File object representing the rebuilt result file
+     * @throws IOException throws IOException when checkpoint is missing or fail to write result file
+     */
+    public static File recover(Path testRunRoot) throws IOException {
+        TestAdvisorResult testResult = read(testRunRoot);
+        LOGGER.log(Level.INFO, "Recovered {0} test cases from checkpoint of {1}",
+                    new Object[] {testResult.getTestCaseExecutionList().size(), testRunRoot});
+        return new JsonReporter(testRunRoot).writeTestResult(testResult);
+    }
+
+    private static ObjectMapper createObjectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule())
+                    .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+                    .configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+
+/**
+ * Moves screenshot files of test cases into the Screenshots folder of a test run
+ * on a small pool of I/O threads.
+ *
+ * Each screenshot is moved by its own task. A move is a rename when source and
+ * target are on the same file system, otherwise the file is copied and the source deleted.
+ * A screenshot which fails to move is logged and keeps its original path.
+ *
+ * With deduplication on, screenshots are stored by content: the file name is the CRC32
+ * and size of the file content, a screenshot whose content is already stored is deleted
+ * and its event points at the stored file. Since CRC32 is not collision free, a screenshot
+ * is only deleted after a byte compare with the stored file.
+ */
+public class ScreenshotRelocator implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    static final String SCREENSHOT_FILE_FORMAT = "%05d.png";
+    private static final String BLOB_FILE_EXTENSION = ".png";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final Path screenshotPath;
+    private final ThreadPoolExecutor executor;
+    // relocations in flight, removed when complete
+    private final Map<TestCaseExecution, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final boolean deduplicate;
+    // content key to stored file, completes with false when the file could not be stored
+    private final Map<String, CompletableFuture<Boolean>> blobs = new ConcurrentHashMap<>();
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder movedCount = new LongAdder();
+
+    /**
+     * @param screenshotPath Screenshots folder of the test run
+     * @param threadCount number of I/O threads
+     */
+    public ScreenshotRelocator(Path screenshotPath, int threadCount) {
+        this(screenshotPath, threadCount, false);
+    }
+
+    /**
+     * @param screenshotPath Screenshots folder of the test run
+     * @param threadCount number of I/O threads
+     * @param deduplicate true to store screenshots with identical content once
+     */
+    public ScreenshotRelocator(Path screenshotPath, int threadCount, boolean deduplicate) {
+        this.screenshotPath = screenshotPath;
+        this.deduplicate = deduplicate;
+        AtomicInteger threadNumber = new AtomicInteger();
+        int poolSize = Math.max(1, threadCount);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "TestAdvisor-screenshot-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // no idle threads between test runs
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start moving screenshot files of a test case, screenshots already
+     * in the Screenshots folder are skipped
+     *
+     * @param test test case execution
+     * @return future which completes when all screenshots of the test case are handled
+     */
+    public CompletableFuture<Void> relocate(TestCaseExecution test) {
+        CompletableFuture<Void> inFlight = pending.get(test);
+        if (inFlight != null) return inFlight;
+
+        List<CompletableFuture<Void>> moves = new ArrayList<>();
+        // spilled events are moved by the spill thread, the spill file is not read
+        List<TestEvent> events = test.getEventList() instanceof SpillableEventList
+                                ? ((SpillableEventList) test.getEventList()).getEventsToRelocate()
+                                : test.getEventList();
+        for (TestEvent event : events) {
+            if (event.getScreenshotPath() == null || event.getScreenshotPath().trim().isEmpty()) continue;
+            Path source = Paths.get(event.getScreenshotPath());
+            if (screenshotPath.equals(source.getParent())) continue;
+            moves.add(CompletableFuture.runAsync(() -> relocate(event, source), executor));
+        }
+        if (moves.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> future = CompletableFuture.allOf(moves.toArray(new CompletableFuture<?>[0]));
+        pending.put(test, future);
+        future.whenComplete((result, ex) -> pending.remove(test, future));
+        return future;
+    }
+
+    /**
+     * Move the screenshot file of one event on the calling thread,
+     * a screenshot already in the Screenshots folder is skipped
+     *
+     * @param event test event
+     */
+    void relocateNow(TestEvent event) {
+        if (event.getScreenshotPath() == null || event.getScreenshotPath().trim().isEmpty()) return;
+        Path source = Paths.get(event.getScreenshotPath());
+        if (screenshotPath.equals(source.getParent())) return;
+        relocate(event, source);
+    }
+
+    /**
+     * Wait until all relocations started before this call are complete
+     */
+    public void awaitAll() {
+        for (CompletableFuture<Void> future : new ArrayList<>(pending.values())) {
+            try {
+                future.join();
+            } catch (CompletionException ex) {
+                // failures are logged by the move task
+            }
+        }
+    }
+
+    /**
+     * @return number of test cases whose screenshots are being moved
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return number of screenshots moved into the Screenshots folder, including duplicates
+     */
+    public long getMovedCount() {
+        return movedCount.sum();
+    }
+
+    /**
+     * @return number of screenshots which were deleted because their content was already stored
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * @return total size of screenshots which were deleted because their content was already stored
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Wait for in-flight relocations and stop the I/O threads
+     */
+    @Override
+    public void close() {
+        awaitAll();
+        executor.shutdown();
+    }
+
+    private void relocate(TestEvent event, Path source) {
+        Object recording = FlightRecorder.begin(FlightRecorder.SCREENSHOT_MOVE);
+        try {
+            Path target;
+            if (deduplicate) {
+                target = store(source);
+            } else {
+                target = screenshotPath.resolve(String.format(SCREENSHOT_FILE_FORMAT, event.getScreenshotRecordNumber()));
+                move(source, target);
+            }
+            event.setScreenshotPath(target.toString());
+            movedCount.increment();
+            FlightRecorder.endScreenshotMove(recording, source, target);
+        } catch (IOException | UncheckedIOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to move screenshot {0}: {1}", new Object[] {source, ex.toString()});
+        }
+    }
+
+    /**
+     * Store source by its content. When the content is already stored the source is deleted,
+     * otherwise the source is moved to the file named by its content key. Files with the same
+     * key are compared byte by byte, a different content with the same key gets a suffixed name
+     *
+     * @return stored file with the content of source
+     */
+    private Path store(Path source) throws IOException {
+        String key = contentKey(source);
+        CompletableFuture<Boolean> claim = new CompletableFuture<>();
+        for (int suffix = 0; ; ) {
+            String name = suffix == 0 ? key : key + "-" + suffix;
+            Path blob = screenshotPath.resolve(name + BLOB_FILE_EXTENSION);
+            CompletableFuture<Boolean> stored = blobs.putIfAbsent(name, claim);
+            if (stored == null) {
+                try {
+                    move(source, blob);
+                    claim.complete(true);
+                } catch (IOException | RuntimeException ex) {
+                    claim.complete(false);
+                    throw ex;
+                }
+                return blob;
+            }
+            // the task storing this name is already running, wait for it
+            if (!stored.join()) {
+                blobs.remove(name, stored);
+                continue;
+            }
+            if (sameContent(source, blob)) {
+                long size = Files.size(source);
+                Files.delete(source);
+                duplicateCount.increment();
+                bytesSaved.add(size);
+                return blob;
+            }
+            suffix++;
+        }
+    }
+
+    /**
+     * Content key of a file, the CRC32 of the content followed by the size.
+     * The key is only a hint, files with the same key are compared before they are shared
+     */
+    static String contentKey(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                crc.update(buffer, 0, count);
+                size += count;
+            }
+        }
+        return String.format("%08x-%x", crc.getValue(), size);
+    }
+
+    static boolean sameContent(Path file1, Path file2) throws IOException {
+        if (Files.size(file1) != Files.size(file2)) return false;
+        byte[] buffer1 = new byte[BUFFER_SIZE];
+        byte[] buffer2 = new byte[BUFFER_SIZE];
+        try (InputStream input1 = Files.newInputStream(file1);
+             InputStream input2 = Files.newInputStream(file2)) {
+            while (true) {
+                int count1 = readFully(input1, buffer1);
+                int count2 = readFully(input2, buffer2);
+                if (count1 != count2) return false;
+                if (count1 == 0) return true;
+                for (int i = 0; i < count1; i++)
+                    if (buffer1[i] != buffer2[i]) return false;
+            }
+        }
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int total = 0;
+        int count;
+        while (total < buffer.length && (count = input.read(buffer, total, buffer.length - total)) > 0)
+            total += count;
+        return total;
+    }
+
+    /**
+     * Rename source to target, copy and delete when they are on different file systems
+     */
+    static void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(source);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.salesforce.cte.common.TestEvent;
+
+/**
+ * Event list of a test case which moves older events to a spill file when over budget.
+ *
+ * Events are kept in order as: events in the spill file, events waiting to be spilled,
+ * events in memory. Neither adding an event nor reading the list waits for spill I/O,
+ * iterating reads the events already in the spill file followed by a snapshot of the
+ * events waiting and in memory. When a spill fails, events stay in memory and spilling
+ * stops for the list. Writers of the result file call {@link #awaitSpills()} first, so
+ * spilled events are written with the final path of their screenshot.
+ *
+ * The list is not RandomAccess, get(index) of an event in memory is a lookup,
+ * get(index) of a spilled event reads the spill file.
+ */
+final class SpillableEventList extends AbstractList<TestEvent> {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    private final EventSpiller spiller;
+    private final File spillFile;
+    private final Supplier<List<TestEvent>> memoryListFactory;
+
+    private List<TestEvent> memory;
+    private long memorySize = 0;
+    // chunks handed to the spill thread, or kept after a failed spill, oldest first
+    private final Deque<List<TestEvent>> pending = new ArrayDeque<>();
+    private int pendingCount = 0;
+    private int spilledCount = 0;
+    private int queuedSpills = 0;
+    private boolean spillFailed = false;
+
+    SpillableEventList(EventSpiller spiller, File spillFile, Supplier<List<TestEvent>> memoryListFactory) {
+        this.spiller = spiller;
+        this.spillFile = spillFile;
+        this.memoryListFactory = memoryListFactory;
+        this.memory = memoryListFactory.get();
+    }
+
+    @Override
+    public boolean add(TestEvent event) {
+        long eventSize = EventSpiller.estimateSize(event);
+        synchronized (this) {
+            memory.add(event);
+            memorySize += eventSize;
+            modCount++;
+            if (spiller.reserve(memorySize, eventSize) && !spillFailed)
+                spillMemory();
+        }
+        // outside the lock of this list, spilling takes the locks of completed lists
+        if (spiller.isOverRunBudget())
+            spiller.spillCompleted();
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return spilledCount + pendingCount + memory.size();
+    }
+
+    @Override
+    public TestEvent get(int index) {
+        synchronized (this) {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            if (index >= spilledCount) {
+                int offset = index - spilledCount;
+                for (List<TestEvent> chunk : pending) {
+                    if (offset < chunk.size()) return chunk.get(offset);
+                    offset -= chunk.size();
+                }
+                return memory.get(offset);
+            }
+        }
+        // events in the spill file stay there, the file is read up to the event
+        Iterator<TestEvent> inFile = new SpilledIterator(index + 1, Collections.emptyIterator());
+        TestEvent event = null;
+        while (inFile.hasNext())
+            event = inFile.next();
+        return event;
+    }
+
+    @Override
+    public Iterator<TestEvent> iterator() {
+        int fileCount;
+        List<TestEvent> inMemory = new ArrayList<>();
+        synchronized (this) {
+            // a chunk being written is read from memory, the file is only read up to the events already written
+            fileCount = spilledCount;
+            for (List<TestEvent> chunk : pending)
+                inMemory.addAll(chunk);
+            inMemory.addAll(memory);
+        }
+        if (fileCount == 0) return inMemory.iterator();
+        return new SpilledIterator(fileCount, inMemory.iterator());
+    }
+
+    /**
+     * Wait until the spills queued so far are written, after that the screenshots
+     * of spilled events are in their final place
+     */
+    synchronized void awaitSpills() {
+        while (queuedSpills > 0) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for event spill", ex);
+            }
+        }
+    }
+
+    /**
+     * Events whose screenshots are moved when the test case ends, events handed to the
+     * spill thread are excluded since their screenshots are moved before they are written
+     */
+    synchronized List<TestEvent> getEventsToRelocate() {
+        List<TestEvent> events = new ArrayList<>();
+        // chunks of a failed spill stay in memory for good
+        if (spillFailed) {
+            for (List<TestEvent> chunk : pending)
+                events.addAll(chunk);
+        }
+        events.addAll(memory);
+        return events;
+    }
+
+    /**
+     * Hand all events in memory to the spill thread, such as under memory pressure
+     * @return estimated bytes of the events handed to the spill thread
+     */
+    synchronized long spill() {
+        if (memory.isEmpty() || spillFailed) return 0;
+        long size = memorySize;
+        spillMemory();
+        return size;
+    }
+
+    /**
+     * Let the run budget spill the events of this list, once the test case has ended
+     * and its events are kept in test result
+     */
+    void complete() {
+        spiller.complete(this);
+    }
+
+    /**
+     * Stop accounting the events in memory against the run budget,
+     * once the test case is written and no longer kept
+     */
+    synchronized void release() {
+        spiller.forget(this);
+        spiller.release(memorySize);
+        memorySize = 0;
+    }
+
+    /**
+     * @return number of events written to the spill file
+     */
+    synchronized int getSpilledCount() {
+        return spilledCount;
+    }
+
+    private void spillMemory() {
+        List<TestEvent> chunk = memory;
+        long chunkSize = memorySize;
+        memory = memoryListFactory.get();
+        memorySize = 0;
+        pending.addLast(chunk);
+        pendingCount += chunk.size();
+        queuedSpills++;
+        spiller.submit(() -> writeChunk(chunk, chunkSize));
+    }
+
+    // runs on the spill thread
+    private void writeChunk(List<TestEvent> chunk, long chunkSize) {
+        boolean skip;
+        synchronized (this) {
+            // a previous chunk failed, keep this one in memory too to keep the order
+            skip = spillFailed;
+        }
+        boolean written = false;
+        if (!skip) {
+            try {
+                append(chunk);
+                written = true;
+            } catch (IOException | UncheckedIOException ex) {
+                LOGGER.log(Level.WARNING, "Fail to spill test events to {0}, keep them in memory: {1}",
+                            new Object[] {spillFile, ex.toString()});
+            }
+        }
+
+        synchronized (this) {
+            queuedSpills--;
+            if (written) {
+                pending.remove(chunk);
+                pendingCount -= chunk.size();
+                spilledCount += chunk.size();
+                spiller.release(chunkSize);
+                spiller.spilled(chunk.size());
+            } else {
+                spillFailed = true;
+            }
+            notifyAll();
+        }
+    }
+
+    private void append(List<TestEvent> chunk) throws IOException {
+        spillFile.getParentFile().mkdirs();
+        if (!spillFile.exists() && spillFile.createNewFile())
+            spillFile.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(spillFile, true);
+             JsonGenerator generator = spiller.getObjectMapper().getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            for (TestEvent event : chunk) {
+                spiller.getBeforeSpill().accept(event);
+                spiller.getObjectMapper().writeValue(generator, event);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Reads the first events from the spill file, then continues with events in memory
+     */
+    private final class SpilledIterator implements Iterator<TestEvent> {
+        private final Iterator<TestEvent> inMemory;
+        private MappingIterator<TestEvent> inFile;
+        private int remaining;
+
+        SpilledIterator(int fileCount, Iterator<TestEvent> inMemory) {
+            this.remaining = fileCount;
+            this.inMemory = inMemory;
+            try {
+                inFile = spiller.getObjectMapper().readerFor(TestEvent.class).readValues(spillFile);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 || inMemory.hasNext();
+        }
+
+        @Override
+        public TestEvent next() {
+            if (remaining > 0) {
+                remaining--;
+                try {
+                    TestEvent event = inFile.nextValue();
+                    if (remaining == 0) inFile.close();
+                    return event;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            if (!inMemory.hasNext()) throw new NoSuchElementException();
+            return inMemory.next();
+        }
+    }
+}
@@ -7,17 +7,34 @@
 
 package com.salesforce.cte.admin;
 
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.ref.WeakReference;
 import java.time.LocalDateTime;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.salesforce.cte.common.ColumnarEventList;
 import com.salesforce.cte.common.TestAdvisorResult;
 import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+import com.salesforce.cte.common.TestStatus;
+import com.salesforce.cte.history.TestHistoryIndex;
 
 import java.io.File;
 import java.io.IOException;
@@ -37,9 +54,30 @@ public class TestAdvisorAdministrator {
     private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
     
     private TestAdvisorResult testResult = new TestAdvisorResult();
-    private ConcurrentMap<Long,TestCaseExecution> threadTestCaseMap = new ConcurrentHashMap<>();
+    private ConcurrentMap<Long,TestCaseContext> threadTestCaseMap = new ConcurrentHashMap<>();
+    // new test case executions are appended to a buffer of the creating thread
+    // and merged into test result when test result is read or saved
+    private final Queue<TestCaseBuffer> testCaseBuffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<TestCaseBuffer> threadTestCaseBuffer = ThreadLocal.withInitial(this::createTestCaseBuffer);
 	private Path registryRoot;
     private JsonReporter jsonReporter;
+    // switched on under memory pressure
+    private volatile boolean streamingResult = TestAdvisorConfiguration.getResultStreamingEnabled();
+    // test cases register and complete under the read lock, streaming is switched on under the write lock
+    private final ReadWriteLock resultModeLock = new ReentrantReadWriteLock();
+    private final Set<TestCaseExecution> runningTestCases = ConcurrentHashMap.newKeySet();
+    private MemoryPressureMonitor memoryMonitor;
+    // set when the test run ends or is saved, memory pressure no longer rewrites the result file
+    private volatile boolean runEnded;
+    private boolean columnarEvents = TestAdvisorConfiguration.getColumnarEventsEnabled();
+    private TestRunJournal journal;
+    private EventSpiller eventSpiller;
+    private final TestAdvisorMetrics metrics;
+    private ResultCheckpointer checkpointer;
+    // manifest entry of current JVM in fork layout, null otherwise
+    private TestRunLayout.Fork fork;
+    private Path forkRoot;
+    private AsyncEventPipeline pipeline;
     private static TestAdvisorAdministrator taAdminInstance = null;
     
     private static final String VERSION_PROPERTY="testadvisor.lib.version";
@@ -52,13 +90,51 @@ public class TestAdvisorAdministrator {
      * A default constructor for the TestAdvisorAdministrator class
      */
     private TestAdvisorAdministrator() {
-        registryRoot = System.getenv("TEST_ADVISOR_REGISTRY") != null ?
-                            Paths.get(System.getenv("TEST_ADVISOR_REGISTRY")).normalize()
-                            :Paths.get(System.getProperty("user.dir"),retrieveRootDirectory()).normalize();   
+        registryRoot = TestAdvisorConfiguration.getRegistryRoot();
 
         Path testRun = createTestRun(registryRoot);
         LOGGER.log(Level.INFO, "Test Run created: {0}",testRun);
         jsonReporter = new JsonReporter(testRun);
+        long testCaseBudget = TestAdvisorConfiguration.getEventBudgetPerTest();
+        long runBudget = TestAdvisorConfiguration.getEventBudgetPerRun();
+        int memoryThreshold = TestAdvisorConfiguration.getMemoryThresholdPercent();
+        if (testCaseBudget > 0 || runBudget > 0 || memoryThreshold > 0) {
+            // screenshots of spilled events are moved first, so the spill file has their final path
+            eventSpiller = new EventSpiller(testRun, testCaseBudget, runBudget,
+                                columnarEvents ? ColumnarEventList::new : ArrayList::new,
+                                jsonReporter::relocateScreenshot);
+        }
+        if (TestAdvisorConfiguration.getJournalEnabled()) {
+            try {
+                journal = new TestRunJournal(testRun, TestAdvisorConfiguration.getJournalFsyncPolicy(),
+                                            TestAdvisorConfiguration.getJournalFsyncIntervalMillis());
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Fail to create test run journal: {0}", ex.toString());
+            }
+        }
+        
+        if (TestAdvisorConfiguration.getCheckpointIntervalMillis() > 0)
+            checkpointer = new ResultCheckpointer(testRun, TestAdvisorConfiguration.getCheckpointIntervalMillis());
+
+        if (memoryThreshold > 0) {
+            try {
+                memoryMonitor = new MemoryPressureMonitor(memoryThreshold, this::relieveMemoryPressure);
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(Level.WARNING, ex.getMessage());
+            }
+        }
+
+        if (TestAdvisorConfiguration.getAsyncEnabled()) {
+            pipeline = new AsyncEventPipeline(TestAdvisorConfiguration.getAsyncCapacity(),
+                                            TestAdvisorConfiguration.getAsyncBackpressurePolicy());
+        }
+
+        metrics = new TestAdvisorMetrics(TestAdvisorConfiguration.getMetricsEnabled(),
+                                        () -> pipeline == null ? 0 : pipeline.getQueueDepth(),
+                                        () -> pipeline == null ? 0 : pipeline.getMaxQueueDepth(),
+                                        jsonReporter::getBytesWritten, jsonReporter::getScreenshotsMoved);
+        if (metrics.isEnabled())
+            metrics.register();
         
         final Properties properties = new Properties();
         try {
@@ -92,6 +168,8 @@ public class TestAdvisorAdministrator {
      * @return current test result
      */
     public TestAdvisorResult getTestResult(){
+        drainPipeline();
+        mergeTestCaseBuffers();
         return this.testResult;
     }
 	/**
@@ -100,22 +178,7 @@ public class TestAdvisorAdministrator {
 	 * @return a String object containing the root directory of the registry
 	 */
     public String retrieveRootDirectory() {
-    	/*
-    	 * Order of Precedence
-    	 * 1) The environment variable's value has been set --> it can be entered via the CLI or read from a property's file
-    	 * 2) If the value for the environment variable hasn't been set, you use a default value (utilizes the current function)
-    	 */
-        String operatingSystem = TestAdvisorConfiguration.getOS();
-        String rootDirectory;
-
-        if (operatingSystem.toLowerCase().contains("mac") || operatingSystem.toLowerCase().contains("linux")) {
-        	rootDirectory = ".testadvisor";
-        }
-        else { // Windows
-        	rootDirectory = "testadvisor";
-        }
-
-        return rootDirectory;
+        return TestAdvisorConfiguration.getRegistryFolderName();
     }
     
     /**
@@ -124,6 +187,8 @@ public class TestAdvisorAdministrator {
      * @return a String object containing the root directory of the Test Run folder
      */
     public String retrieveTestRunDirectory() {
+        if (TestAdvisorConfiguration.getRunId() != null)
+            return "TestRun-" + TestAdvisorConfiguration.getRunId();
     	LocalDateTime localDateTime = LocalDateTime.now();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
         String formattedDate = localDateTime.format(formatter);
@@ -133,14 +198,60 @@ public class TestAdvisorAdministrator {
     /**
      * Creates a hierarchy of empty folders within the Registry for each test run.
      * 
-     * @return root_file represents the TestRun-yyyyMMdd-HHmmss folder that will contain the Screenshots sub-directory
+     * A folder which another JVM already uses is never reused, in fork layout the
+     * TestRun folder is shared by the forks of a run and each JVM gets a fork folder in it.
+     * 
+     * @return root_file represents the TestRun-yyyyMMdd-HHmmss folder, or the fork folder in it,
+     * that will contain the Screenshots sub-directory
      */
     private Path createTestRun(Path root) {
-        Path testRunPath = root.resolve(retrieveTestRunDirectory());
+        // named once, a second call may fall into the next second
+        String testRunDirectory = retrieveTestRunDirectory();
+        Path testRunPath;
+        try {
+            if (TestAdvisorConfiguration.getForkLayoutEnabled() && TestAdvisorConfiguration.getRunId() == null) {
+                // forks only find a shared folder through a shared run id, start times differ between forks
+                LOGGER.log(Level.WARNING, "Fork layout needs testadvisor.run.id, each JVM uses its own TestRun folder");
+                testRunPath = TestRunLayout.claimFolder(root, testRunDirectory);
+            } else if (TestAdvisorConfiguration.getForkLayoutEnabled()) {
+                // forks of a run share the TestRun folder and each writes to its own fork folder
+                String forkId = TestAdvisorConfiguration.getForkId();
+                testRunPath = TestRunLayout.claimForkFolder(root.resolve(testRunDirectory), forkId);
+                forkRoot = testRunPath;
+                fork = TestRunLayout.createFork(testRunPath, forkId);
+                writeFork();
+            } else {
+                testRunPath = TestRunLayout.claimFolder(root, testRunDirectory);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to claim test run folder: {0}", ex.toString());
+            testRunPath = root.resolve(testRunDirectory);
+        }
         testRunPath.resolve("Screenshots").toFile().mkdirs();
         
         return testRunPath;
     }
+
+    /**
+     * Add the saved test run to the history index in the registry root,
+     * a test run saved more than once is indexed the first time
+     */
+    private void indexTestRun(File resultFile) {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registryRoot)) {
+            index.add(index.toRunName(resultFile.getParentFile().toPath()), testResult);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Fail to update test history index: {0}", ex.toString());
+        }
+    }
+
+    private void writeFork() {
+        if (fork == null) return;
+        try {
+            TestRunLayout.writeFork(forkRoot, fork);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to write fork manifest: {0}", ex.toString());
+        }
+    }
     
     /**
      * Creates an instance of the TestCaseExecution class and appends it to test result
@@ -149,22 +260,112 @@ public class TestAdvisorAdministrator {
      * @param testName test case name
      * @return TestCaseExecution object that represents the current test case
      */
-    public synchronized TestCaseExecution createTestCaseExecution(String testName) {
-        LOGGER.log(Level.INFO, "create test case execution object {0}",testName);
+    public TestCaseExecution createTestCaseExecution(String testName) {
+        return createTestCaseContext(testName).getTestCaseExecution();
+    }
+
+    /**
+     * Creates a TestCaseExecution instance and returns its context,
+     * the context is bound to the current thread until the test case ends.
+     * 
+     * @param testName test case name
+     * @return TestCaseContext of the new test case
+     */
+    public TestCaseContext createTestCaseContext(String testName) {
+        return createTestCaseContext(testName, false);
+    }
+
+    /**
+     * Creates a TestCaseExecution instance and returns its context,
+     * the context is bound to the current thread until the test case ends.
+     * 
+     * @param testName test case name
+     * @param configuration true for a configuration method, such as test setup/teardown
+     * @return TestCaseContext of the new test case
+     */
+    public TestCaseContext createTestCaseContext(String testName, boolean configuration) {
+        LOGGER.log(Level.FINE, "create test case execution object {0}",testName);
 
         if (testResult.getBuildStartTime() == null){
             //test run hasn't start yet
-            startTestRun();
+            startTestRunIfNeeded();
         }
 
     	TestCaseExecution testCaseExecution = new TestCaseExecution();
         testCaseExecution.setTestName(testName);
-    	testResult.getTestCaseExecutionList().add(testCaseExecution);
+        if (eventSpiller != null)
+            testCaseExecution.setEventList(eventSpiller.createEventList());
+        else if (columnarEvents)
+            testCaseExecution.setEventList(new ColumnarEventList());
+        // the flag is set by the same update which registers the test case, so the two are seen together
+        apply(() -> {
+            testCaseExecution.setConfiguration(configuration);
+            registerTestCaseExecution(testCaseExecution);
+        }, false);
 
         //only track the current test case executioni object for the running thread
         //every thread contains its own test case execution object
-    	threadTestCaseMap.put(Thread.currentThread().getId(), testCaseExecution);
-    	return testCaseExecution; 
+        TestCaseContext context = new TestCaseContext(this, testCaseExecution);
+    	threadTestCaseMap.put(Thread.currentThread().getId(), context);
+        //binding is removed when the test case ends
+        context.bind();
+    	return context; 
+    }
+
+    private void registerTestCaseExecution(TestCaseExecution testCaseExecution) {
+        resultModeLock.readLock().lock();
+        try {
+            //in streaming mode test case is written to result file when it ends
+            //and only its summary is kept in test result
+            if (!streamingResult)
+                threadTestCaseBuffer.get().testCases.add(testCaseExecution);
+            runningTestCases.add(testCaseExecution);
+        } finally {
+            resultModeLock.readLock().unlock();
+        }
+        if (journal != null) {
+            journal.recordTestCaseStart(testCaseExecution);
+            testCaseExecution.setObserver(journal);
+        }
+    }
+
+    private TestCaseBuffer createTestCaseBuffer() {
+        TestCaseBuffer buffer = new TestCaseBuffer(Thread.currentThread());
+        testCaseBuffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Move test case executions from all thread buffers to test result,
+     * test cases merged at the same time are ordered by start time
+     */
+    private synchronized void mergeTestCaseBuffers() {
+        List<TestCaseExecution> merged = new ArrayList<>();
+        Iterator<TestCaseBuffer> iterator = testCaseBuffers.iterator();
+        while (iterator.hasNext()) {
+            TestCaseBuffer buffer = iterator.next();
+            TestCaseExecution testCaseExecution;
+            while ((testCaseExecution = buffer.testCases.poll()) != null) {
+                merged.add(testCaseExecution);
+            }
+            // the buffer of a finished thread won't receive new test cases
+            if (buffer.owner.get() == null || !buffer.owner.get().isAlive())
+                iterator.remove();
+        }
+        merged.sort(Comparator.comparing(TestCaseExecution::getStartTime));
+        testResult.getTestCaseExecutionList().addAll(merged);
+    }
+
+    /**
+     * Append-only buffer of test case executions created by one thread
+     */
+    private static final class TestCaseBuffer {
+        final WeakReference<Thread> owner;
+        final Queue<TestCaseExecution> testCases = new ConcurrentLinkedQueue<>();
+
+        TestCaseBuffer(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
     }
     
     /**
@@ -175,25 +376,319 @@ public class TestAdvisorAdministrator {
      * TestCaseExecution object 
      * null if no test case exists
      */
-    public synchronized TestCaseExecution getTestCaseExecution() {
+    public TestCaseExecution getTestCaseExecution() {
+        TestCaseContext context = getTestCaseContext();
+        return context == null ? null : context.getTestCaseExecution();
+    }
+
+    /**
+     * Returns the context of the current test case,
+     * the context bound to current thread is used before the test case started by current thread
+     * 
+     * @return 
+     * TestCaseContext object 
+     * null if no test case exists
+     */
+    public TestCaseContext getTestCaseContext() {
+        TestCaseContext context = TestCaseContext.current();
+        if (context != null && context.belongsTo(this))
+            return context;
         return threadTestCaseMap.get(Thread.currentThread().getId());
     }
 
+    /**
+     * Appends a test event to the current test case of current thread.
+     * In async mode the event is queued and may be dropped according to backpressure policy
+     * 
+     * @param event test event
+     * @return true if there is a current test case to append to
+     */
+    public boolean appendTestCaseEvent(TestEvent event) {
+        TestCaseContext context = getTestCaseContext();
+        if (context == null) return false;
+        appendTestCaseEvent(context, event);
+        return true;
+    }
+
+    void appendTestCaseEvent(TestCaseContext context, TestEvent event) {
+        // events which arrive after the test case ends are ignored
+        apply(() -> {
+            if (!context.isEnded()) {
+                context.getTestCaseExecution().appendEvent(event);
+                metrics.eventAppended();
+            }
+        }, true);
+    }
+
+    /**
+     * Updates test status of the current test case of current thread
+     * 
+     * @param status test status
+     * @return true if there is a current test case to update
+     */
+    public boolean setTestCaseStatus(TestStatus status) {
+        TestCaseContext context = getTestCaseContext();
+        if (context == null) return false;
+        setTestCaseStatus(context, status);
+        return true;
+    }
+
+    void setTestCaseStatus(TestCaseContext context, TestStatus status) {
+        apply(() -> {
+            if (!context.isEnded())
+                context.getTestCaseExecution().setTestStatus(status);
+        }, false);
+    }
+
+    /**
+     * Ends the current TestCaseExecution instance for current thread, save end time.
+     * The test case is no longer tracked for current thread,
+     * in streaming mode it is written to result file
+     * 
+     * @return
+     * TestCaseExecution object which ended
+     * null if no test case exists
+     */
+    public TestCaseExecution endTestCaseExecution() {
+        TestCaseContext context = threadTestCaseMap.get(Thread.currentThread().getId());
+        if (context == null) return null;
+        Instant endTime = Instant.now();
+        context.unbind();
+        if (threadTestCaseMap.remove(Thread.currentThread().getId(), context))
+            apply(() -> completeTestCaseExecution(context, endTime), false);
+        return context.getTestCaseExecution();
+    }
+
+    private void completeTestCaseExecution(TestCaseContext context, Instant endTime) {
+        // applied in order with events, so every event reported before the end is kept
+        context.markEnded();
+        TestCaseExecution testCaseExecution = context.getTestCaseExecution();
+        testCaseExecution.setEndTime(endTime);
+        CompletableFuture<Void> screenshots = jsonReporter.relocateScreenshots(testCaseExecution);
+        if (journal != null)
+            journal.recordTestCaseEnd(testCaseExecution);
+        // checkpointed once its screenshots are in place
+        ResultCheckpointer testRunCheckpointer = checkpointer;
+        if (testRunCheckpointer != null)
+            testRunCheckpointer.recordTestCaseEnd(testCaseExecution, screenshots);
+
+        resultModeLock.readLock().lock();
+        try {
+            runningTestCases.remove(testCaseExecution);
+            if (streamingResult) {
+                // waits for screenshots of this test case only
+                appendToResultStream(testCaseExecution);
+            } else if (testCaseExecution.getEventList() instanceof SpillableEventList) {
+                // kept in test result, its events are spilled first when the run is over budget
+                ((SpillableEventList) testCaseExecution.getEventList()).complete();
+            }
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, ex.toString());
+        } finally {
+            resultModeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Handle memory pressure reported by the memory monitor:
+     * write completed test cases to result file and drop them from heap,
+     * spill events of running test cases and record the pressure as a test event
+     */
+    void relieveMemoryPressure(MemoryNotificationInfo info) {
+        // a notification can still be handled after the monitor is closed
+        if (runEnded) return;
+        String message = String.format("Memory pressure on %s: %d of %d bytes used",
+                                info.getPoolName(), info.getUsage().getUsed(), info.getUsage().getMax());
+        int flushed = flushCompletedTestCases();
+        if (eventSpiller != null) {
+            for (TestCaseExecution testCaseExecution : runningTestCases) {
+                if (testCaseExecution.getEventList() instanceof SpillableEventList)
+                    ((SpillableEventList) testCaseExecution.getEventList()).spill();
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.flush();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        message += String.format(", %d completed test cases written to disk", flushed);
+        LOGGER.log(Level.WARNING, message);
+        for (TestCaseContext context : threadTestCaseMap.values())
+            appendTestCaseEvent(context, new TestEvent(TestEventType.AUTOMATION, message, Level.WARNING.toString()));
+    }
+
+    /**
+     * Switch to streaming mode, completed test cases are written to result file
+     * and only their summaries are kept in test result
+     * @return number of completed test cases written
+     */
+    private synchronized int flushCompletedTestCases() {
+        // in streaming mode completed test cases are already on disk,
+        // once the run is over the result file is written by endTestRun or saveTestResult
+        if (streamingResult || runEnded) return 0;
+        Object recording = FlightRecorder.begin(FlightRecorder.FLUSH);
+        int flushed = 0;
+        resultModeLock.writeLock().lock();
+        try {
+            if (streamingResult) return 0;
+            // a test run which hasn't started opens the result stream when it starts
+            if (testResult.getBuildStartTime() != null)
+                jsonReporter.openResultStream();
+            streamingResult = true;
+            mergeTestCaseBuffers();
+            for (TestCaseExecution testCaseExecution : testResult.getTestCaseExecutionList()) {
+                // running test cases are written when they end
+                if (runningTestCases.contains(testCaseExecution)) continue;
+                appendToResultStream(testCaseExecution);
+                flushed++;
+            }
+            testResult.getTestCaseExecutionList().clear();
+            return flushed;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to write completed test cases under memory pressure: {0}", ex.toString());
+            return 0;
+        } finally {
+            resultModeLock.writeLock().unlock();
+            FlightRecorder.endFlush(recording, "memory pressure", flushed);
+        }
+    }
+
+    /**
+     * Write a test case to the result file, once written it is kept
+     * in test result as a summary and its events are read back on demand
+     */
+    private void appendToResultStream(TestCaseExecution testCaseExecution) throws IOException {
+        jsonReporter.appendToResultStream(testCaseExecution).thenAccept(summary -> {
+            if (summary != null)
+                threadTestCaseBuffer.get().testCases.add(summary);
+        });
+    }
+
+    /**
+     * Apply an update to the test result model, 
+     * in async mode the update is queued and applied by the pipeline consumer thread
+     */
+    private void apply(Runnable update, boolean droppable) {
+        if (pipeline != null)
+            pipeline.submit(update, droppable);
+        else
+            update.run();
+    }
+
+    /**
+     * Wait until all queued updates are applied to the test result model
+     */
+    private void drainPipeline() {
+        if (pipeline != null)
+            pipeline.drain();
+    }
+
+    /**
+     * Get the number of test events dropped by async pipeline because of backpressure
+     * @return number of dropped test events, 0 if async mode is off
+     */
+    public long getDroppedEventCount() {
+        return pipeline == null ? 0 : pipeline.getDroppedEventCount();
+    }
+
+    /**
+     * Get the number of test events written to spill files because of memory budget
+     * @return number of spilled test events, 0 if no budget is set
+     */
+    public long getSpilledEventCount() {
+        return eventSpiller == null ? 0 : eventSpiller.getSpilledEventCount();
+    }
+
+    /**
+     * Get self instrumentation metrics, they record nothing unless metrics are enabled
+     * @return metrics of this test run
+     */
+    public TestAdvisorMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void summarizeMetrics() {
+        if (metrics.isEnabled())
+            testResult.setMetrics(metrics.toSummary());
+    }
+
+    private synchronized void startTestRunIfNeeded(){
+        if (testResult.getBuildStartTime() == null)
+            startTestRun();
+    }
+
     /**
      * Start a test run, save start time
      */
     public synchronized void startTestRun(){
         this.testResult.setBuildStartTime(Instant.now());
         this.testResult.setVersion(TestAdvisorAdministrator.getInstance().version);
+        if (journal != null)
+            journal.recordTestRunStart(testResult);
+        if (checkpointer != null)
+            checkpointer.recordTestRunStart(testResult.getVersion(), testResult.getBuildStartTime());
+        if (fork != null) {
+            fork.setBuildStartTime(testResult.getBuildStartTime());
+            writeFork();
+        }
+
+        if (streamingResult){
+            try {
+                jsonReporter.openResultStream();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, ex.toString());
+            }
+        }
     }
 
     /**
      * End a test run, save end time
+     * In streaming mode, test cases which haven't ended are written 
+     * and result file is closed
      */
     public synchronized void endTestRun(){
+        closeMemoryMonitor();
+        drainPipeline();
         this.testResult.setBuildEndTime(Instant.now());
+        if (journal != null)
+            journal.recordTestRunEnd(testResult.getBuildEndTime());
+        if (checkpointer != null)
+            checkpointer.recordTestRunEnd(testResult.getBuildEndTime());
+
+        for (TestCaseContext context : threadTestCaseMap.values())
+            context.markEnded();
+        threadTestCaseMap.clear();
+        // includes test cases replaced on their thread by a later test case, such as nested containers
+        List<TestCaseExecution> unfinished = new ArrayList<>(runningTestCases);
+        runningTestCases.clear();
+
+        if (streamingResult){
+            try {
+                unfinished.sort(Comparator.comparing(TestCaseExecution::getStartTime));
+                for (TestCaseExecution testCaseExecution : unfinished)
+                    appendToResultStream(testCaseExecution);
+                summarizeMetrics();
+                jsonReporter.closeResultStream(testResult);
+            } catch (IOException | IllegalStateException ex) {
+                LOGGER.log(Level.WARNING, ex.toString());
+            }
+        }
     }
     
+    /**
+     * Stop watching memory pressure and restore the memory thresholds of the JVM,
+     * completed test cases are no longer flushed to the result file
+     */
+    private synchronized void closeMemoryMonitor() {
+        runEnded = true;
+        if (memoryMonitor != null) {
+            memoryMonitor.close();
+            memoryMonitor = null;
+        }
+    }
+
     /**
      * Saves test result to the TestAdvisor Registry in JSON format
      * by calling on the JsonReporter's saveToRegistry() function
@@ -203,7 +698,47 @@ public class TestAdvisorAdministrator {
      * throws IOException when fail to write result file
      */
     public synchronized File saveTestResult() throws IOException {
-    	return jsonReporter.saveToRegistry(testResult);
+        long startNanos = System.nanoTime();
+        Object recording = FlightRecorder.begin(FlightRecorder.SAVE);
+        closeMemoryMonitor();
+        drainPipeline();
+        mergeTestCaseBuffers();
+        if (getDroppedEventCount() > 0)
+            LOGGER.log(Level.WARNING, "{0} test events dropped by async pipeline", getDroppedEventCount());
+        if (getSpilledEventCount() > 0)
+            LOGGER.log(Level.INFO, "{0} test events spilled to disk", getSpilledEventCount());
+        if (journal != null) {
+            // write, force and close the last batch, the test run is over
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Fail to close test run journal: {0}", ex.toString());
+            }
+            journal = null;
+        }
+        if (checkpointer != null) {
+            // write the last checkpoint and stop the checkpoint thread, the test run is over
+            try {
+                checkpointer.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Fail to write result checkpoint: {0}", ex.toString());
+            }
+            checkpointer = null;
+        }
+        // the summary covers saves completed before this one
+        summarizeMetrics();
+        File resultFile = streamingResult ? jsonReporter.closeResultStream(testResult)
+                                          : jsonReporter.saveToRegistry(testResult);
+        metrics.recordSave(System.nanoTime() - startNanos);
+        FlightRecorder.endSave(recording, resultFile, testResult.getTestCaseExecutionList().size());
+        if (TestAdvisorConfiguration.getHistoryIndexEnabled())
+            indexTestRun(resultFile);
+        if (fork != null) {
+            fork.setBuildEndTime(testResult.getBuildEndTime());
+            fork.setResultFile(resultFile.getName());
+            writeFork();
+        }
+        return resultFile;
     }
     
 }
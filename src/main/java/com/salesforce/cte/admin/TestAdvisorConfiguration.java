@@ -7,9 +7,43 @@
 
  package com.salesforce.cte.admin;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
 public class TestAdvisorConfiguration {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
 
     private static final String CAPTURE_SCREENHSOT_PROPERTY = "testadvisor.capturescreenshot";
+    private static final String RESULT_STREAMING_PROPERTY = "testadvisor.result.streaming";
+    private static final String RESULT_FORMAT_PROPERTY = "testadvisor.result.format";
+    private static final String RESULT_COMPRESSION_PROPERTY = "testadvisor.result.compression";
+    private static final String RESULT_COMPRESSION_LEVEL_PROPERTY = "testadvisor.result.compression.level";
+    private static final String RESULT_COMPRESSION_BUFFER_PROPERTY = "testadvisor.result.compression.buffer";
+    private static final String JOURNAL_PROPERTY = "testadvisor.journal";
+    private static final String JOURNAL_FSYNC_PROPERTY = "testadvisor.journal.fsync";
+    private static final String JOURNAL_FSYNC_INTERVAL_PROPERTY = "testadvisor.journal.fsync.interval";
+    private static final String ASYNC_PROPERTY = "testadvisor.async";
+    private static final String ASYNC_CAPACITY_PROPERTY = "testadvisor.async.capacity";
+    private static final String ASYNC_BACKPRESSURE_PROPERTY = "testadvisor.async.backpressure";
+    private static final String SCREENSHOT_THREADS_PROPERTY = "testadvisor.screenshot.threads";
+    private static final String SCREENSHOT_DEDUP_PROPERTY = "testadvisor.screenshot.dedup";
+    private static final String COLUMNAR_EVENTS_PROPERTY = "testadvisor.events.columnar";
+    private static final String EVENT_BUDGET_TEST_PROPERTY = "testadvisor.events.budget.test";
+    private static final String EVENT_BUDGET_RUN_PROPERTY = "testadvisor.events.budget.run";
+    private static final String MEMORY_THRESHOLD_PROPERTY = "testadvisor.memory.threshold";
+    private static final String METRICS_PROPERTY = "testadvisor.metrics";
+    private static final String CHECKPOINT_INTERVAL_PROPERTY = "testadvisor.checkpoint.interval";
+    private static final String FORK_LAYOUT_PROPERTY = "testadvisor.registry.forks";
+    private static final String RUN_ID_PROPERTY = "testadvisor.run.id";
+    private static final String FORK_ID_PROPERTY = "testadvisor.fork.id";
+    private static final String SUREFIRE_FORK_NUMBER_PROPERTY = "surefire.forkNumber";
+    private static final String HISTORY_INDEX_PROPERTY = "testadvisor.history.index";
+    private static final String HISTORY_DEPTH_PROPERTY = "testadvisor.history.depth";
+    private static final String JUNIT5_METHOD_NAMES_PROPERTY = "testadvisor.junit5.methodnames";
+    private static final String REGISTRY_ENV = "TEST_ADVISOR_REGISTRY";
 
     //private constructor to prevent instance
     private TestAdvisorConfiguration() {}
@@ -22,8 +56,167 @@ public class TestAdvisorConfiguration {
         return System.getProperty("user.dir");
     }
 
+    /**
+     * Order of precedence
+     * 1) TEST_ADVISOR_REGISTRY environment variable
+     * 2) registry folder in user directory
+     * 
+     * @return root directory of the registry
+     */
+    public static Path getRegistryRoot() {
+        return System.getenv(REGISTRY_ENV) != null ?
+                    Paths.get(System.getenv(REGISTRY_ENV)).normalize()
+                    :Paths.get(getUserDirectory(), getRegistryFolderName()).normalize();
+    }
+
+    /**
+     * @return registry folder name based off of the OS, hidden on Mac OS and Linux
+     */
+    public static String getRegistryFolderName() {
+        String operatingSystem = getOS();
+        if (operatingSystem.toLowerCase().contains("mac") || operatingSystem.toLowerCase().contains("linux"))
+            return ".testadvisor";
+        // Windows
+        return "testadvisor";
+    }
+
     public static boolean getScreenshotCaptureEnabled(){
         return Boolean.parseBoolean(System.getProperty(CAPTURE_SCREENHSOT_PROPERTY,"false"));
     }
-    
+
+    public static boolean getResultStreamingEnabled(){
+        return Boolean.parseBoolean(System.getProperty(RESULT_STREAMING_PROPERTY,"false"));
+    }
+
+    public static JsonReporter.ResultFormat getResultFormat(){
+        return JsonReporter.ResultFormat.fromString(System.getProperty(RESULT_FORMAT_PROPERTY), JsonReporter.ResultFormat.JSON_PRETTY);
+    }
+
+    public static JsonReporter.Compression getResultCompression(){
+        return JsonReporter.Compression.fromString(System.getProperty(RESULT_COMPRESSION_PROPERTY), JsonReporter.Compression.NONE);
+    }
+
+    public static int getResultCompressionLevel(){
+        return (int) getLongProperty(RESULT_COMPRESSION_LEVEL_PROPERTY, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public static int getResultCompressionBufferSize(){
+        return (int) getLongProperty(RESULT_COMPRESSION_BUFFER_PROPERTY, 65536);
+    }
+
+    public static boolean getJournalEnabled(){
+        return Boolean.parseBoolean(System.getProperty(JOURNAL_PROPERTY,"false"));
+    }
+
+    public static TestRunJournal.FsyncPolicy getJournalFsyncPolicy(){
+        return TestRunJournal.FsyncPolicy.fromString(System.getProperty(JOURNAL_FSYNC_PROPERTY), TestRunJournal.FsyncPolicy.BATCH);
+    }
+
+    public static long getJournalFsyncIntervalMillis(){
+        return getLongProperty(JOURNAL_FSYNC_INTERVAL_PROPERTY, 1000);
+    }
+
+    public static boolean getAsyncEnabled(){
+        return Boolean.parseBoolean(System.getProperty(ASYNC_PROPERTY,"false"));
+    }
+
+    public static int getAsyncCapacity(){
+        return (int) getLongProperty(ASYNC_CAPACITY_PROPERTY, 65536);
+    }
+
+    public static AsyncEventPipeline.BackpressurePolicy getAsyncBackpressurePolicy(){
+        return AsyncEventPipeline.BackpressurePolicy.fromString(System.getProperty(ASYNC_BACKPRESSURE_PROPERTY),
+                                                            AsyncEventPipeline.BackpressurePolicy.BLOCK);
+    }
+
+    public static int getScreenshotThreadCount(){
+        return (int) getLongProperty(SCREENSHOT_THREADS_PROPERTY, 4);
+    }
+
+    public static boolean getScreenshotDedupEnabled(){
+        return Boolean.parseBoolean(System.getProperty(SCREENSHOT_DEDUP_PROPERTY,"false"));
+    }
+
+    public static boolean getColumnarEventsEnabled(){
+        return Boolean.parseBoolean(System.getProperty(COLUMNAR_EVENTS_PROPERTY,"false"));
+    }
+
+    public static long getEventBudgetPerTest(){
+        return getLongProperty(EVENT_BUDGET_TEST_PROPERTY, 0);
+    }
+
+    public static long getEventBudgetPerRun(){
+        return getLongProperty(EVENT_BUDGET_RUN_PROPERTY, 0);
+    }
+
+    public static int getMemoryThresholdPercent(){
+        return (int) getLongProperty(MEMORY_THRESHOLD_PROPERTY, 0);
+    }
+
+    public static boolean getMetricsEnabled(){
+        return Boolean.parseBoolean(System.getProperty(METRICS_PROPERTY,"false"));
+    }
+
+    public static long getCheckpointIntervalMillis(){
+        return getLongProperty(CHECKPOINT_INTERVAL_PROPERTY, 0);
+    }
+
+    public static boolean getForkLayoutEnabled(){
+        return Boolean.parseBoolean(System.getProperty(FORK_LAYOUT_PROPERTY,"false"));
+    }
+
+    /**
+     * @return id shared by all forks of a test run, null to name the test run by its start time.
+     * An id which is not a plain folder name is ignored
+     */
+    public static String getRunId(){
+        String runId = System.getProperty(RUN_ID_PROPERTY);
+        if (runId == null || runId.trim().isEmpty()) return null;
+        return isFolderName(RUN_ID_PROPERTY, runId.trim()) ? runId.trim() : null;
+    }
+
+    /**
+     * @return fork id of current JVM, surefire fork number when it is passed on.
+     * An id which is not a plain folder name is ignored
+     */
+    public static String getForkId(){
+        String forkId = System.getProperty(FORK_ID_PROPERTY, System.getProperty(SUREFIRE_FORK_NUMBER_PROPERTY, "1")).trim();
+        return isFolderName(FORK_ID_PROPERTY, forkId) ? forkId : "1";
+    }
+
+    // run and fork ids become part of folder names in the registry and must not leave it
+    private static boolean isFolderName(String property, String value){
+        if (value.isEmpty() || value.contains("/") || value.contains("\\") || value.contains("..")) {
+            LOGGER.log(Level.WARNING, "Invalid {0} {1}, ids must not contain path separators or ..", new Object[] {property, value});
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean getHistoryIndexEnabled(){
+        return Boolean.parseBoolean(System.getProperty(HISTORY_INDEX_PROPERTY,"false"));
+    }
+
+    /**
+     * @return number of recent executions a test duration is estimated from when ordering or sharding tests
+     */
+    public static int getHistoryDepth(){
+        return (int) Math.max(1, getLongProperty(HISTORY_DEPTH_PROPERTY, 5));
+    }
+
+    /**
+     * @return true if the JUnit5 listener names test methods by class and method instead of display name
+     */
+    public static boolean getJUnit5MethodNamesEnabled(){
+        return Boolean.parseBoolean(System.getProperty(JUNIT5_METHOD_NAMES_PROPERTY,"false"));
+    }
+
+    private static long getLongProperty(String name, long defaultValue){
+        try {
+            return Long.parseLong(System.getProperty(name, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
 }
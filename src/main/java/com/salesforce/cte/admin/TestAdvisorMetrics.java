@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.salesforce.cte.common.TestAdvisorMetricsSummary;
+
+/**
+ * Self instrumentation metrics of TestAdvisor.
+ *
+ * Counters and histograms are striped, so listener threads recording at the same time
+ * don't contend. Queue depth, bytes written and screenshots moved are read from their
+ * owners when asked for. When metrics are disabled nothing is recorded and
+ * {@link #startCallback()} doesn't read the clock.
+ */
+public class TestAdvisorMetrics implements TestAdvisorMetricsMBean {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    public static final String OBJECT_NAME = "com.salesforce.cte:type=TestAdvisorMetrics";
+
+    private final boolean enabled;
+    private final long createdNanos = System.nanoTime();
+    private final LongAdder eventsAppended = new LongAdder();
+    private final LatencyHistogram callbacks = new LatencyHistogram();
+    private final LatencyHistogram saves = new LatencyHistogram();
+    private volatile long lastSaveNanos = 0;
+    private final LongSupplier queueDepth;
+    private final LongSupplier maxQueueDepth;
+    private final LongSupplier bytesWritten;
+    private final LongSupplier screenshotsMoved;
+    private ObjectName registeredName;
+
+    /**
+     * @param enabled false to record nothing
+     * @param queueDepth current number of tasks waiting in the async pipeline
+     * @param maxQueueDepth largest number of tasks seen waiting in the async pipeline
+     * @param bytesWritten bytes written to result files
+     * @param screenshotsMoved screenshot files moved into the test run
+     */
+    public TestAdvisorMetrics(boolean enabled, LongSupplier queueDepth, LongSupplier maxQueueDepth,
+                                LongSupplier bytesWritten, LongSupplier screenshotsMoved) {
+        this.enabled = enabled;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.bytesWritten = bytesWritten;
+        this.screenshotsMoved = screenshotsMoved;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Mark the start of a listener callback
+     *
+     * @return start time to pass to {@link #endCallback(long)}, 0 when disabled
+     */
+    public long startCallback() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time spent in a listener callback
+     *
+     * @param startNanos value returned by {@link #startCallback()}
+     */
+    public void endCallback(long startNanos) {
+        if (enabled)
+            callbacks.record(System.nanoTime() - startNanos);
+    }
+
+    void eventAppended() {
+        if (enabled)
+            eventsAppended.increment();
+    }
+
+    void recordSave(long nanos) {
+        if (!enabled) return;
+        saves.record(nanos);
+        lastSaveNanos = nanos;
+    }
+
+    /**
+     * Publish the metrics as a platform MBean, replacing an MBean registered before with the same name
+     */
+    public synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException ex) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+            registeredName = name;
+        } catch (JMException ex) {
+            LOGGER.log(Level.WARNING, "Fail to register metrics MBean: {0}", ex.toString());
+        }
+    }
+
+    /**
+     * Remove the platform MBean registered by {@link #register()}
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException ex) {
+            // already removed
+        }
+        registeredName = null;
+    }
+
+    /**
+     * @return metrics to store in the result file
+     */
+    public TestAdvisorMetricsSummary toSummary() {
+        TestAdvisorMetricsSummary summary = new TestAdvisorMetricsSummary();
+        summary.setEventsAppended(getEventsAppended());
+        summary.setEventsPerSecond(getEventsPerSecond());
+        summary.setListenerCallbackCount(getListenerCallbackCount());
+        summary.setListenerCallbackTotalNanos(getListenerCallbackTotalNanos());
+        summary.setListenerCallbackP50Nanos(getListenerCallbackP50Nanos());
+        summary.setListenerCallbackP99Nanos(getListenerCallbackP99Nanos());
+        summary.setListenerCallbackMaxNanos(getListenerCallbackMaxNanos());
+        summary.setMaxQueueDepth(getMaxQueueDepth());
+        summary.setBytesWritten(getBytesWritten());
+        summary.setScreenshotsMoved(getScreenshotsMoved());
+        summary.setSaveCount(getSaveCount());
+        summary.setLastSaveNanos(getLastSaveNanos());
+        return summary;
+    }
+
+    @Override
+    public long getEventsAppended() {
+        return eventsAppended.sum();
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        long elapsed = System.nanoTime() - createdNanos;
+        if (elapsed <= 0) return 0;
+        return getEventsAppended() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public long getListenerCallbackCount() {
+        return callbacks.getCount();
+    }
+
+    @Override
+    public long getListenerCallbackTotalNanos() {
+        return callbacks.getTotalNanos();
+    }
+
+    @Override
+    public long getListenerCallbackP50Nanos() {
+        return callbacks.getPercentileNanos(50);
+    }
+
+    @Override
+    public long getListenerCallbackP99Nanos() {
+        return callbacks.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getListenerCallbackMaxNanos() {
+        return callbacks.getMaxNanos();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    @Override
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.getAsLong();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.getAsLong();
+    }
+
+    @Override
+    public long getScreenshotsMoved() {
+        return screenshotsMoved.getAsLong();
+    }
+
+    @Override
+    public long getSaveCount() {
+        return saves.getCount();
+    }
+
+    @Override
+    public long getLastSaveNanos() {
+        return lastSaveNanos;
+    }
+
+    @Override
+    public long getMaxSaveNanos() {
+        return saves.getMaxNanos();
+    }
+}
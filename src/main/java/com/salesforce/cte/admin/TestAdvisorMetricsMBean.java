@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+/**
+ * Management interface of {@link TestAdvisorMetrics}
+ */
+public interface TestAdvisorMetricsMBean {
+
+    long getEventsAppended();
+
+    double getEventsPerSecond();
+
+    long getListenerCallbackCount();
+
+    long getListenerCallbackTotalNanos();
+
+    long getListenerCallbackP50Nanos();
+
+    long getListenerCallbackP99Nanos();
+
+    long getListenerCallbackMaxNanos();
+
+    long getQueueDepth();
+
+    long getMaxQueueDepth();
+
+    long getBytesWritten();
+
+    long getScreenshotsMoved();
+
+    long getSaveCount();
+
+    long getLastSaveNanos();
+
+    long getMaxSaveNanos();
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * Handle of a running test case.
+ *
+ * A context is created when a test case starts and is bound to the starting thread.
+ * Other threads don't inherit the binding, a pool thread created lazily by a test would
+ * otherwise keep the first test case reachable and report to it for its whole life.
+ * For other threads, thread pools and CompletableFuture stages the context is captured
+ * with {@link #current()} and propagated with {@link #bind()} or one of the wrap methods.
+ * Events reported through a context go straight to its test case execution,
+ * no matter which thread reports them. Once the test case ends, the context
+ * is no longer current on any thread and further events are ignored.
+ */
+public final class TestCaseContext {
+    private static final ThreadLocal<TestCaseContext> CURRENT = new ThreadLocal<>();
+
+    private final TestAdvisorAdministrator administrator;
+    private final TestCaseExecution testCaseExecution;
+    private volatile boolean ended = false;
+    // handle of the Flight Recorder event of the test case, null when not recorded
+    private Object flightRecording;
+
+    TestCaseContext(TestAdvisorAdministrator administrator, TestCaseExecution testCaseExecution) {
+        this.administrator = administrator;
+        this.testCaseExecution = testCaseExecution;
+    }
+
+    /**
+     * Get the test case context bound to current thread
+     * @return
+     * test case context
+     * null if no running test case is bound to current thread
+     */
+    public static TestCaseContext current() {
+        TestCaseContext context = CURRENT.get();
+        return context == null || context.ended ? null : context;
+    }
+
+    /**
+     * @return test case execution of this context
+     */
+    public TestCaseExecution getTestCaseExecution() {
+        return testCaseExecution;
+    }
+
+    /**
+     * @return true if the test case of this context has ended
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Append a test event to the test case of this context
+     * @param event test event
+     * @return false if the test case has ended
+     */
+    public boolean appendEvent(TestEvent event) {
+        if (ended) return false;
+        administrator.appendTestCaseEvent(this, event);
+        return true;
+    }
+
+    /**
+     * Update test status of the test case of this context
+     * @param status test status
+     * @return false if the test case has ended
+     */
+    public boolean setTestStatus(TestStatus status) {
+        if (ended) return false;
+        administrator.setTestCaseStatus(this, status);
+        return true;
+    }
+
+    /**
+     * Bind this context to current thread until the returned scope is closed
+     * <pre>
+     * try (TestCaseContext.Scope scope = context.bind()) {
+     *     ...
+     * }
+     * </pre>
+     * @return scope which restores previous binding when closed
+     */
+    public Scope bind() {
+        TestCaseContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * @param task task to run
+     * @return task which runs with this context bound to the running thread
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            try (Scope scope = bind()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * @param <V> result type
+     * @param task task to call
+     * @return task which is called with this context bound to the calling thread
+     */
+    public <V> Callable<V> wrap(Callable<V> task) {
+        return () -> {
+            try (Scope scope = bind()) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * @param executor executor to run tasks
+     * @return executor which runs every task with this context bound
+     */
+    public Executor wrap(Executor executor) {
+        return command -> executor.execute(wrap(command));
+    }
+
+    boolean belongsTo(TestAdvisorAdministrator administrator) {
+        return this.administrator == administrator;
+    }
+
+    synchronized void setFlightRecording(Object flightRecording) {
+        this.flightRecording = flightRecording;
+    }
+
+    synchronized Object takeFlightRecording() {
+        Object recording = flightRecording;
+        flightRecording = null;
+        return recording;
+    }
+
+    void markEnded() {
+        ended = true;
+    }
+
+    /**
+     * Remove the binding of current thread if it is this context
+     */
+    void unbind() {
+        if (CURRENT.get() == this)
+            CURRENT.remove();
+    }
+
+    /**
+     * Binding of a test case context to a thread
+     */
+    public static final class Scope implements AutoCloseable {
+        private final TestCaseContext previous;
+
+        private Scope(TestCaseContext previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Restore the binding which was in place when the scope was opened
+         */
+        @Override
+        public void close() {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+
+/**
+ * Merges result files of many test runs, such as parallel forks and CI nodes,
+ * into one result file.
+ *
+ * Result files are parsed in parallel, one test case at a time, and handed to the
+ * merging thread through small bounded queues, so only a few test cases per input are
+ * in memory no matter how large the inputs are. Test cases are written in input order
+ * to a result stream in the output test run folder. Screenshots are copied into its
+ * Screenshots folder and renumbered in the order they are written. The merged run starts
+ * at the earliest build start time and ends at the latest build end time of the inputs.
+ *
+ * <pre>
+ * java -cp ... com.salesforce.cte.admin.TestResultMerger &lt;output test run folder&gt; &lt;result file or folder&gt;...
+ * </pre>
+ */
+public class TestResultMerger {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    private static final String RESULT_FILE_PREFIX = "test-result.";
+    private static final String SCREENSHOT_FOLDER_NAME = "Screenshots";
+    private static final int QUEUE_CAPACITY = 64;
+    // test cases handed to the result stream and not written yet
+    private static final int MAX_PENDING_WRITES = 64;
+    private static final int MAX_SEARCH_DEPTH = 3;
+    private static final TestCaseExecution END_OF_INPUT = new TestCaseExecution();
+
+    private final Path outputRunRoot;
+    private final int parallelism;
+    private int testCaseCount = 0;
+    private int screenshotCount = 0;
+
+    /**
+     * @param outputRunRoot test run folder of the merged result
+     * @param parallelism number of result files parsed at the same time
+     */
+    public TestResultMerger(Path outputRunRoot, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        this.outputRunRoot = outputRunRoot;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Merge result files into one result file in the output test run folder,
+     * an input which can't be read is logged and merged as far as it was read
+     *
+     * @param resultFiles result files in any result format and compression
+     * @return merged result file
+     * @throws IOException when fail to write the merged result file
+     */
+    public File merge(List<Path> resultFiles) throws IOException {
+        outputRunRoot.toFile().mkdirs();
+        List<InputReader> inputs = new ArrayList<>();
+        for (Path resultFile : resultFiles)
+            inputs.add(new InputReader(resultFile));
+
+        ExecutorService parsers = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, inputs.size())), runnable -> {
+            Thread thread = new Thread(runnable, "TestAdvisor-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        JsonReporter reporter = new JsonReporter(outputRunRoot);
+        TestAdvisorResult merged = new TestAdvisorResult();
+        try {
+            // parsers start in input order, the input being merged is always parsed
+            for (InputReader input : inputs)
+                parsers.execute(input);
+
+            reporter.openResultStream();
+            Deque<CompletableFuture<?>> pendingWrites = new ArrayDeque<>();
+            for (InputReader input : inputs) {
+                Map<Path, Path> copiedScreenshots = new HashMap<>();
+                for (TestCaseExecution test = input.take(); test != END_OF_INPUT; test = input.take()) {
+                    renumberScreenshots(input, test, copiedScreenshots);
+                    pendingWrites.addLast(reporter.appendToResultStream(test));
+                    testCaseCount++;
+                    if (pendingWrites.size() > MAX_PENDING_WRITES)
+                        awaitWrite(pendingWrites.removeFirst());
+                }
+                if (input.failure != null)
+                    LOGGER.log(Level.WARNING, "Fail to read result file {0}: {1}",
+                                new Object[] {input.resultFile, input.failure.toString()});
+                mergeTestRun(merged, input);
+            }
+            while (!pendingWrites.isEmpty())
+                awaitWrite(pendingWrites.removeFirst());
+            File resultFile = reporter.closeResultStream(merged);
+            LOGGER.log(Level.INFO, "Merged {0} test cases and {1} screenshots from {2} result files into {3}",
+                        new Object[] {testCaseCount, screenshotCount, inputs.size(), resultFile});
+            return resultFile;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging result files", ex);
+        } finally {
+            for (InputReader input : inputs)
+                input.cancelled = true;
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return number of test cases merged
+     */
+    public int getTestCaseCount() {
+        return testCaseCount;
+    }
+
+    /**
+     * @return number of screenshots renumbered
+     */
+    public int getScreenshotCount() {
+        return screenshotCount;
+    }
+
+    private static void awaitWrite(CompletableFuture<?> write) throws IOException {
+        try {
+            write.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static void mergeTestRun(TestAdvisorResult merged, InputReader input) {
+        if (merged.getVersion().isEmpty() && input.version != null)
+            merged.setVersion(input.version);
+        if (input.buildStartTime != null
+                && (merged.getBuildStartTime() == null || input.buildStartTime.isBefore(merged.getBuildStartTime())))
+            merged.setBuildStartTime(input.buildStartTime);
+        if (input.buildEndTime != null
+                && (merged.getBuildEndTime() == null || input.buildEndTime.isAfter(merged.getBuildEndTime())))
+            merged.setBuildEndTime(input.buildEndTime);
+    }
+
+    /**
+     * Copy screenshots of a test case into the output Screenshots folder under new record numbers,
+     * a screenshot file shared by several events, such as a deduplicated one, is copied once
+     */
+    private void renumberScreenshots(InputReader input, TestCaseExecution test, Map<Path, Path> copiedScreenshots) {
+        for (TestEvent event : test.getEventList()) {
+            if (event.getScreenshotPath() == null || event.getScreenshotPath().trim().isEmpty()) continue;
+            int recordNumber = ++screenshotCount;
+            event.setScreenshotRecordNumber(recordNumber);
+            Path source = input.resolveScreenshot(Paths.get(event.getScreenshotPath()));
+            if (source == null) {
+                LOGGER.log(Level.FINE, "Screenshot {0} not found", event.getScreenshotPath());
+                continue;
+            }
+            Path target = copiedScreenshots.get(source);
+            if (target == null) {
+                target = outputRunRoot.resolve(SCREENSHOT_FOLDER_NAME)
+                                    .resolve(String.format(ScreenshotRelocator.SCREENSHOT_FILE_FORMAT, recordNumber));
+                try {
+                    target.getParent().toFile().mkdirs();
+                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Fail to copy screenshot {0}: {1}", new Object[] {source, ex.toString()});
+                    continue;
+                }
+                copiedScreenshots.put(source, target);
+            }
+            event.setScreenshotPath(target.toString());
+        }
+    }
+
+    /**
+     * Find result files: a result file is used as is, in a folder every test-result.* file
+     * up to three levels down is used, such as in a registry or a folder of CI node artifacts
+     *
+     * @param paths result files or folders
+     * @return result files in a stable order
+     * @throws IOException when fail to list a folder
+     */
+    public static List<Path> findResultFiles(List<Path> paths) throws IOException {
+        List<Path> resultFiles = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                resultFiles.add(path);
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(path, MAX_SEARCH_DEPTH)) {
+                resultFiles.addAll(files.filter(Files::isRegularFile)
+                                        .filter(file -> file.getFileName().toString().startsWith(RESULT_FILE_PREFIX))
+                                        .sorted()
+                                        .collect(Collectors.toList()));
+            }
+        }
+        return resultFiles;
+    }
+
+    /**
+     * Merge result files from the command line
+     * @param args output test run folder followed by result files or folders
+     * @throws IOException when fail to merge
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            LOGGER.log(Level.SEVERE, "Usage: TestResultMerger <output test run folder> <result file or folder>...");
+            return;
+        }
+        Path output = Paths.get(args[0]);
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+            inputs.add(Paths.get(args[i]));
+        // the output folder may be inside an input folder
+        List<Path> resultFiles = findResultFiles(inputs).stream()
+                                    .filter(file -> !file.toAbsolutePath().startsWith(output.toAbsolutePath()))
+                                    .collect(Collectors.toList());
+        new TestResultMerger(output, Runtime.getRuntime().availableProcessors()).merge(resultFiles);
+    }
+
+    /**
+     * Parses one result file on a parser thread and queues its test cases
+     */
+    private static final class InputReader implements Runnable {
+        private final Path resultFile;
+        private final BlockingQueue<TestCaseExecution> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // written by the parser thread before END_OF_INPUT is queued
+        private volatile String version;
+        private volatile Instant buildStartTime;
+        private volatile Instant buildEndTime;
+        private volatile Exception failure;
+        private volatile boolean cancelled = false;
+
+        InputReader(Path resultFile) {
+            this.resultFile = resultFile;
+        }
+
+        @Override
+        public void run() {
+            try (JsonParser parser = JsonReporter.openResultParser(resultFile.toFile())) {
+                if (parser.nextToken() != JsonToken.START_OBJECT)
+                    throw new IOException("Result file does not start with an object");
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    switch (name) {
+                        case "testCaseExecutionList":
+                            if (value != JsonToken.START_ARRAY) {
+                                parser.skipChildren();
+                                break;
+                            }
+                            while (parser.nextToken() == JsonToken.START_OBJECT)
+                                put(parser.readValueAs(TestCaseExecution.class));
+                            break;
+                        case "version":
+                            version = parser.getValueAsString();
+                            break;
+                        case "buildStartTime":
+                            buildStartTime = value == JsonToken.VALUE_NULL ? null : parser.readValueAs(Instant.class);
+                            break;
+                        case "buildEndTime":
+                            buildEndTime = value == JsonToken.VALUE_NULL ? null : parser.readValueAs(Instant.class);
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                failure = ex;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                put(END_OF_INPUT);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void put(TestCaseExecution test) throws InterruptedException {
+            while (!cancelled) {
+                if (queue.offer(test, 100, TimeUnit.MILLISECONDS)) return;
+            }
+            throw new InterruptedException("Merge cancelled");
+        }
+
+        TestCaseExecution take() throws InterruptedException {
+            return queue.take();
+        }
+
+        /**
+         * Screenshot path as recorded, or the file of the same name in the Screenshots folder
+         * next to the result file, such as when the test run folder was copied from a CI node
+         */
+        Path resolveScreenshot(Path screenshot) {
+            if (Files.isRegularFile(screenshot)) return screenshot;
+            Path parent = resultFile.toAbsolutePath().getParent();
+            if (parent == null || screenshot.getFileName() == null) return null;
+            Path local = parent.resolve(SCREENSHOT_FOLDER_NAME).resolve(screenshot.getFileName());
+            return Files.isRegularFile(local) ? local : null;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestCaseExecutionObserver;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * Append-only journal of a test run. Every test case start, test event,
+ * test status and test case end is recorded as one JSON line (NDJSON)
+ * in the TestRun folder, so the test result can be recovered when the test
+ * JVM dies before the test result is saved.
+ *
+ * Records are queued by the calling thread and written by a single journal
+ * thread in batches (group commit). How often written batches are forced to
+ * disk is controlled by {@link FsyncPolicy}.
+ */
+public class TestRunJournal implements TestCaseExecutionObserver, Closeable {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    public static final String JOURNAL_FILE_NAME = "test-run.journal";
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * Defines when journal records are forced to the storage device
+     * NONE: records are handed to the OS after each batch, never forced
+     * BATCH: each written batch is forced before the next batch is written
+     * INTERVAL: written batches are forced at most once per fsync interval, and at the latest
+     * one fsync interval after they are written, even if no record follows
+     */
+    public enum FsyncPolicy {
+        NONE,
+        BATCH,
+        INTERVAL;
+
+        /**
+         * Parse fsync policy from a case insensitive name
+         * @param name policy name
+         * @param defaultPolicy policy to use when name is empty or unknown
+         * @return fsync policy
+         */
+        public static FsyncPolicy fromString(String name, FsyncPolicy defaultPolicy) {
+            if (name == null || name.trim().isEmpty()) return defaultPolicy;
+            try {
+                return FsyncPolicy.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(Level.WARNING, "Unknown fsync policy {0}, use {1}", new Object[] {name, defaultPolicy});
+                return defaultPolicy;
+            }
+        }
+    }
+
+    enum RecordType {
+        RUN_START,
+        RUN_END,
+        TEST_START,
+        TEST_EVENT,
+        TEST_STATUS,
+        TEST_END,
+        // internal marker used by flush(), never written
+        SYNC
+    }
+
+    private static final class Record {
+        final RecordType type;
+        final long id;
+        final Object payload;
+        final CountDownLatch latch;
+
+        Record(RecordType type, long id, Object payload) {
+            this.type = type;
+            this.id = id;
+            this.payload = payload;
+            this.latch = type == RecordType.SYNC ? new CountDownLatch(1) : null;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Path journalPath;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<TestCaseExecution, Long> testCaseIdMap = new ConcurrentHashMap<>();
+    private final AtomicLong nextTestCaseId = new AtomicLong();
+    private final FileOutputStream outputStream;
+    private final JsonGenerator generator;
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+    // only used on the journal thread
+    private long lastFsyncMillis = System.currentTimeMillis();
+    private boolean unforced = false;
+
+    /**
+     * Create a journal in the test run folder and start the journal writer thread
+     *
+     * @param testRunRoot test run folder
+     * @param fsyncPolicy fsync policy
+     * @param fsyncIntervalMillis minimum interval between two fsync for {@link FsyncPolicy#INTERVAL}
+     * @throws IOException throws IOException when fail to create journal file
+     */
+    public TestRunJournal(Path testRunRoot, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this.objectMapper = createObjectMapper();
+        this.journalPath = testRunRoot.resolve(JOURNAL_FILE_NAME);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+
+        testRunRoot.toFile().mkdirs();
+        outputStream = new FileOutputStream(journalPath.toFile(), true);
+        generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+        // one record per line, line break is written after each record
+        generator.setRootValueSeparator(null);
+
+        writerThread = new Thread(this::writeRecords, "TestAdvisor-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return path of the journal file
+     */
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Record the start of a test run
+     * @param testResult test result with version and build start time
+     */
+    public void recordTestRunStart(TestAdvisorResult testResult) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("version", testResult.getVersion());
+        if (testResult.getBuildStartTime() != null)
+            node.put("buildStartTime", testResult.getBuildStartTime().toString());
+        enqueue(new Record(RecordType.RUN_START, -1, node));
+    }
+
+    /**
+     * Record the end of a test run
+     * @param buildEndTime build end time
+     */
+    public void recordTestRunEnd(Instant buildEndTime) {
+        enqueue(new Record(RecordType.RUN_END, -1, buildEndTime));
+    }
+
+    /**
+     * Record the start of a test case
+     * @param testCaseExecution test case execution which just started
+     */
+    public void recordTestCaseStart(TestCaseExecution testCaseExecution) {
+        long id = nextTestCaseId.getAndIncrement();
+        testCaseIdMap.put(testCaseExecution, id);
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("testName", testCaseExecution.getTestName());
+        node.put("configuration", testCaseExecution.isConfiguration());
+        node.put("threadId", testCaseExecution.getThreadId());
+        node.put("startTime", testCaseExecution.getStartTime().toString());
+        enqueue(new Record(RecordType.TEST_START, id, node));
+    }
+
+    /**
+     * Record the end of a test case
+     * @param testCaseExecution test case execution which just ended
+     */
+    public void recordTestCaseEnd(TestCaseExecution testCaseExecution) {
+        Long id = testCaseIdMap.remove(testCaseExecution);
+        if (id == null) return;
+        // take a snapshot now, test case may still be changed after it ends
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("endTime", testCaseExecution.getEndTime().toString());
+        node.put("testStatus", testCaseExecution.getTestStatus().name());
+        node.put("traceId", testCaseExecution.getTraceId());
+        node.put("browser", testCaseExecution.getBrowser());
+        node.put("browserVersion", testCaseExecution.getBrowserVersion());
+        node.put("screenResolution", testCaseExecution.getScreenResolution());
+        enqueue(new Record(RecordType.TEST_END, id, node));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTestEvent(TestCaseExecution testCaseExecution, TestEvent event) {
+        Long id = testCaseIdMap.get(testCaseExecution);
+        if (id == null || closed) return;
+        // take a snapshot now, screenshot path may be rewritten when the screenshot is moved
+        enqueue(new Record(RecordType.TEST_EVENT, id, objectMapper.valueToTree(event)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTestStatus(TestCaseExecution testCaseExecution, TestStatus status) {
+        Long id = testCaseIdMap.get(testCaseExecution);
+        if (id == null) return;
+        enqueue(new Record(RecordType.TEST_STATUS, id, status));
+    }
+
+    /**
+     * Wait until all records queued so far are written and forced to disk
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        if (closed) return;
+        Record sync = new Record(RecordType.SYNC, -1, null);
+        enqueue(sync);
+        sync.latch.await();
+    }
+
+    /**
+     * Write all pending records and close the journal file
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            flush();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        generator.close();
+    }
+
+    private void enqueue(Record rec) {
+        if (closed) return;
+        queue.add(rec);
+    }
+
+    private void writeRecords() {
+        List<Record> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                // a written batch which isn't forced yet is forced when the interval is over
+                Record first = unforced ? queue.poll(lastFsyncMillis + fsyncIntervalMillis - System.currentTimeMillis(),
+                                                    TimeUnit.MILLISECONDS)
+                                        : queue.take();
+                if (first == null) {
+                    forceQuietly();
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE);
+            Object recording = FlightRecorder.begin(FlightRecorder.FLUSH);
+            try {
+                for (Record rec : batch) {
+                    if (rec.type != RecordType.SYNC)
+                        writeRecord(rec);
+                }
+                generator.flush();
+                if (fsyncPolicy == FsyncPolicy.BATCH || needsSync(batch)
+                    || (fsyncPolicy == FsyncPolicy.INTERVAL && System.currentTimeMillis() - lastFsyncMillis >= fsyncIntervalMillis))
+                    force();
+                else if (fsyncPolicy == FsyncPolicy.INTERVAL)
+                    unforced = true;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Fail to write test run journal: {0}", ex.toString());
+            } finally {
+                for (Record rec : batch) {
+                    if (rec.latch != null) rec.latch.countDown();
+                }
+                FlightRecorder.endFlush(recording, "journal", batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        outputStream.getChannel().force(false);
+        lastFsyncMillis = System.currentTimeMillis();
+        unforced = false;
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (IOException ex) {
+            // forced again with the next batch
+            unforced = false;
+            LOGGER.log(Level.WARNING, "Fail to force test run journal: {0}", ex.toString());
+        }
+    }
+
+    private static boolean needsSync(List<Record> batch) {
+        for (Record rec : batch) {
+            if (rec.type == RecordType.SYNC) return true;
+        }
+        return false;
+    }
+
+    private void writeRecord(Record rec) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", rec.type.name());
+        if (rec.id >= 0)
+            generator.writeNumberField("id", rec.id);
+        generator.writeFieldName("data");
+        objectMapper.writeValue(generator, rec.payload);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Rebuild the test result of a test run from its journal.
+     * Test cases which never ended keep the end time of their last journaled change.
+     * Replay stops at the first corrupted record, such as a truncated last record left behind
+     * by a killed JVM, records after it are ignored.
+     *
+     * @param journalFile journal file
+     * @return test result rebuilt from journal
+     * @throws IOException throws IOException when fail to read journal file
+     */
+    public static TestAdvisorResult replay(Path journalFile) throws IOException {
+        ObjectMapper objectMapper = createObjectMapper();
+        TestAdvisorResult testResult = new TestAdvisorResult();
+        Map<Long, TestCaseExecution> testCaseMap = new HashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) continue;
+                try {
+                    applyRecord(objectMapper, objectMapper.readTree(line), testResult, testCaseMap);
+                } catch (IOException | RuntimeException ex) {
+                    // such as a truncated record, a record without type or with a type this version doesn't know
+                    LOGGER.log(Level.WARNING, "Corrupted journal record at line {0}, stop replay: {1}",
+                                new Object[] {lineNumber, ex.toString()});
+                    break;
+                }
+            }
+        }
+        if (testResult.getBuildEndTime() == null) {
+            Instant lastTime = testResult.getBuildStartTime();
+            for (TestCaseExecution test : testResult.getTestCaseExecutionList()) {
+                if (lastTime == null || test.getEndTime().isAfter(lastTime))
+                    lastTime = test.getEndTime();
+            }
+            testResult.setBuildEndTime(lastTime);
+        }
+        return testResult;
+    }
+
+    /**
+     * Apply one journal record to the test result being rebuilt
+     * @throws IllegalArgumentException when the record has no type or an unknown type
+     */
+    private static void applyRecord(ObjectMapper objectMapper, JsonNode node, TestAdvisorResult testResult,
+                                    Map<Long, TestCaseExecution> testCaseMap) throws IOException {
+        RecordType type = RecordType.valueOf(node.path("type").asText());
+        JsonNode data = node.get("data");
+        long id = node.path("id").asLong(-1);
+        switch (type) {
+            case RUN_START:
+                testResult.setVersion(data.path("version").asText(""));
+                if (data.hasNonNull("buildStartTime"))
+                    testResult.setBuildStartTime(Instant.parse(data.get("buildStartTime").asText()));
+                break;
+            case RUN_END:
+                testResult.setBuildEndTime(Instant.parse(data.asText()));
+                break;
+            case TEST_START:
+                TestCaseExecution test = objectMapper.treeToValue(data, TestCaseExecution.class);
+                test.setEndTime(test.getStartTime());
+                testCaseMap.put(id, test);
+                testResult.getTestCaseExecutionList().add(test);
+                break;
+            case TEST_EVENT:
+                if (testCaseMap.containsKey(id)) {
+                    TestEvent event = objectMapper.treeToValue(data, TestEvent.class);
+                    testCaseMap.get(id).appendEvent(event);
+                    testCaseMap.get(id).setEndTime(event.getEventTime());
+                }
+                break;
+            case TEST_STATUS:
+                if (testCaseMap.containsKey(id))
+                    testCaseMap.get(id).setTestStatus(TestStatus.valueOf(data.asText()));
+                break;
+            case TEST_END:
+                if (testCaseMap.containsKey(id))
+                    objectMapper.readerForUpdating(testCaseMap.get(id)).readValue(data);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Rebuild test-result.json of an interrupted test run from its journal
+     *
+     * @param testRunRoot test run folder which contains the journal file
+     * @return a File object representing the rebuilt result file
+     * @throws IOException throws IOException when journal is missing or fail to write result file
+     */
+    public static File recover(Path testRunRoot) throws IOException {
+        Path journalFile = testRunRoot.resolve(JOURNAL_FILE_NAME);
+        if (!journalFile.toFile().exists())
+            throw new IOException("No test run journal found in " + testRunRoot);
+        TestAdvisorResult testResult = replay(journalFile);
+        LOGGER.log(Level.INFO, "Recovered {0} test cases from {1}",
+                    new Object[] {testResult.getTestCaseExecutionList().size(), journalFile});
+        return new JsonReporter(testRunRoot).writeTestResult(testResult);
+    }
+
+    private static ObjectMapper createObjectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule())
+                    .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+                    .configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Folder layout of test runs in the registry when many JVMs write at the same time.
+ *
+ * Every JVM claims its own folder by creating it atomically, a name which is already
+ * taken gets a numeric suffix, so two JVMs never share a folder. In fork layout the
+ * forks of one run share a TestRun folder and each writes to its own
+ * fork-&lt;fork id&gt;-&lt;pid&gt; subfolder. Each fork describes itself in its own file in the
+ * forks folder of the run, written to a temp file and renamed, so forks need no shared
+ * lock and a reader never sees a partial entry.
+ *
+ * <pre>
+ * TestRun-20220101-000000/
+ *     forks/fork-1-4242.json
+ *     forks/fork-2-4243.json
+ *     fork-1-4242/test-result.json
+ *     fork-1-4242/Screenshots/00001.png
+ *     fork-2-4243/test-result.json
+ * </pre>
+ */
+public final class TestRunLayout {
+
+    public static final String FORK_MANIFEST_FOLDER_NAME = "forks";
+    private static final String FORK_FOLDER_PREFIX = "fork-";
+    private static final String MANIFEST_FILE_EXTENSION = ".json";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final int MAX_CLAIM_ATTEMPTS = 1000;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule())
+                                                        .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+    //private constructor to prevent instance
+    private TestRunLayout() {}
+
+    /**
+     * Entry of a fork in the manifest of a test run
+     */
+    public static class Fork {
+        private String forkId;
+        private String pid;
+        private String host;
+        private String folder;
+        private Instant buildStartTime;
+        private Instant buildEndTime;
+        private String resultFile;
+
+        public String getForkId() {
+            return forkId;
+        }
+        public void setForkId(String forkId) {
+            this.forkId = forkId;
+        }
+        public String getPid() {
+            return pid;
+        }
+        public void setPid(String pid) {
+            this.pid = pid;
+        }
+        public String getHost() {
+            return host;
+        }
+        public void setHost(String host) {
+            this.host = host;
+        }
+        /**
+         * @return name of the fork folder in the test run folder
+         */
+        public String getFolder() {
+            return folder;
+        }
+        public void setFolder(String folder) {
+            this.folder = folder;
+        }
+        public Instant getBuildStartTime() {
+            return buildStartTime;
+        }
+        public void setBuildStartTime(Instant buildStartTime) {
+            this.buildStartTime = buildStartTime;
+        }
+        public Instant getBuildEndTime() {
+            return buildEndTime;
+        }
+        public void setBuildEndTime(Instant buildEndTime) {
+            this.buildEndTime = buildEndTime;
+        }
+        /**
+         * @return result file name in the fork folder, null until the result is saved
+         */
+        public String getResultFile() {
+            return resultFile;
+        }
+        public void setResultFile(String resultFile) {
+            this.resultFile = resultFile;
+        }
+    }
+
+    /**
+     * Create a folder which no other JVM uses, name-2, name-3 and so on are tried when name is taken
+     *
+     * @param parent folder to create the folder in, created if missing
+     * @param name preferred folder name
+     * @return created folder
+     * @throws IOException when fail to create a folder
+     */
+    public static Path claimFolder(Path parent, String name) throws IOException {
+        Files.createDirectories(parent);
+        for (int i = 1; i <= MAX_CLAIM_ATTEMPTS; i++) {
+            Path folder = parent.resolve(i == 1 ? name : name + "-" + i);
+            try {
+                return Files.createDirectory(folder);
+            } catch (FileAlreadyExistsException ex) {
+                // taken by another JVM, try next suffix
+            }
+        }
+        throw new IOException("No free folder for " + parent.resolve(name));
+    }
+
+    /**
+     * Create the fork folder of current JVM in a test run folder shared by forks
+     *
+     * @param testRunRoot test run folder shared by the forks of a run, created if missing
+     * @param forkId fork id, such as the surefire fork number
+     * @return created fork folder
+     * @throws IOException when fail to create the folder
+     */
+    public static Path claimForkFolder(Path testRunRoot, String forkId) throws IOException {
+        return claimFolder(testRunRoot, FORK_FOLDER_PREFIX + forkId + "-" + getPid());
+    }
+
+    /**
+     * Write the manifest entry of a fork, replacing the entry written before
+     *
+     * @param forkRoot fork folder
+     * @param fork manifest entry
+     * @throws IOException when fail to write the entry
+     */
+    public static void writeFork(Path forkRoot, Fork fork) throws IOException {
+        Path manifest = forkRoot.getParent().resolve(FORK_MANIFEST_FOLDER_NAME);
+        Files.createDirectories(manifest);
+        Path entry = manifest.resolve(forkRoot.getFileName() + MANIFEST_FILE_EXTENSION);
+        Path temp = entry.resolveSibling(entry.getFileName() + TEMP_FILE_EXTENSION);
+        try (FileOutputStream output = new FileOutputStream(temp.toFile())) {
+            output.write(OBJECT_MAPPER.writeValueAsBytes(fork));
+            output.getChannel().force(true);
+        }
+        try {
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read the manifest entries of all forks of a test run
+     *
+     * @param testRunRoot test run folder shared by forks
+     * @return manifest entries ordered by fork folder name, empty if the run has no fork
+     * @throws IOException when fail to read an entry
+     */
+    public static List<Fork> readForks(Path testRunRoot) throws IOException {
+        Path manifest = testRunRoot.resolve(FORK_MANIFEST_FOLDER_NAME);
+        List<Fork> forks = new ArrayList<>();
+        if (!Files.isDirectory(manifest)) return forks;
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(manifest)) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(MANIFEST_FILE_EXTENSION))
+                            .sorted()
+                            .collect(Collectors.toList());
+        }
+        for (Path entry : entries)
+            forks.add(OBJECT_MAPPER.readValue(entry.toFile(), Fork.class));
+        return forks;
+    }
+
+    /**
+     * Create a manifest entry of current JVM
+     *
+     * @param forkRoot fork folder
+     * @param forkId fork id
+     * @return entry with fork id, pid, host and folder
+     */
+    public static Fork createFork(Path forkRoot, String forkId) {
+        Fork fork = new Fork();
+        fork.setForkId(forkId);
+        fork.setPid(getPid());
+        fork.setHost(getHost());
+        fork.setFolder(forkRoot.getFileName().toString());
+        return fork;
+    }
+
+    private static String getPid() {
+        // name of the runtime is pid@host on HotSpot and OpenJ9
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : name;
+    }
+
+    private static String getHost() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(at + 1) : "";
+    }
+}
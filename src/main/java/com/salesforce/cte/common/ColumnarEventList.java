@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Event list of a test case stored as columns instead of one object per event.
+ *
+ * Event time, type and screenshot number are kept in primitive arrays.
+ * Level, Selenium command and locator repeat a lot within a test case and are
+ * stored as indexes into a dictionary of the list. Event content, command parameter
+ * and screenshot path are mostly unique and are stored as references.
+ *
+ * A TestEvent added to the list is copied into the columns and is not referenced afterwards.
+ * The list is written to JSON straight from the columns, and the indexed accessors such as
+ * {@link #getScreenshotPath(int)} read and write the columns, neither creates an object per event.
+ * {@link #get(int)} is kept for the List contract and returns a view of the stored event,
+ * changes made through the view are written to the columns. A view is only valid until the
+ * list is cleared or an event is inserted or removed, since events after it shift, using it
+ * afterwards throws IllegalStateException.
+ *
+ * The list is thread safe like Vector: every method, view accessor and the serializer
+ * hold the lock of the list, so screenshot relocation threads can update events through
+ * their views while the test thread appends. Iteration is not atomic, an iterator fails
+ * fast when the list is changed structurally by another thread.
+ */
+@JsonSerialize(using = ColumnarEventList.Serializer.class)
+public class ColumnarEventList extends AbstractList<TestEvent> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_VALUE = -1;
+    private static final TestEventType[] EVENT_TYPES = TestEventType.values();
+
+    private int size = 0;
+    // changes when stored events are dropped, views of an older generation are invalid
+    private int generation = 0;
+    private long[] eventTimes = new long[0];
+    private byte[] eventTypes = new byte[0];
+    private int[] screenshotRecordNumbers = new int[0];
+    private int[] levels = new int[0];
+    private int[] seleniumCmds = new int[0];
+    private int[] seleniumLocators = new int[0];
+    private String[] eventContents = new String[0];
+    private String[] seleniumCmdParams = new String[0];
+    private String[] screenshotPaths = new String[0];
+
+    // dictionary shared by level, command and locator columns
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+
+    public ColumnarEventList() {
+        // empty list, columns are allocated on first add
+    }
+
+    @Override
+    public synchronized TestEvent get(int index) {
+        checkIndex(index);
+        return new EventView(index);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean add(TestEvent event) {
+        ensureCapacity(size + 1);
+        size++;
+        modCount++;
+        write(size - 1, event);
+        return true;
+    }
+
+    @Override
+    public synchronized void add(int index, TestEvent event) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        ensureCapacity(size + 1);
+        shift(index, index + 1, size - index);
+        size++;
+        modCount++;
+        // events after index moved, their views would read the wrong event
+        generation++;
+        write(index, event);
+    }
+
+    @Override
+    public synchronized TestEvent remove(int index) {
+        checkIndex(index);
+        TestEvent removed = copy(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        eventContents[size] = null;
+        seleniumCmdParams[size] = null;
+        screenshotPaths[size] = null;
+        modCount++;
+        generation++;
+        return removed;
+    }
+
+    @Override
+    public synchronized TestEvent set(int index, TestEvent event) {
+        checkIndex(index);
+        TestEvent previous = copy(index);
+        write(index, event);
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        modCount++;
+        Arrays.fill(eventContents, 0, size, null);
+        Arrays.fill(seleniumCmdParams, 0, size, null);
+        Arrays.fill(screenshotPaths, 0, size, null);
+        size = 0;
+        generation++;
+        dictionaryIndex.clear();
+        dictionary.clear();
+    }
+
+    /**
+     * @return number of distinct level, command and locator values
+     */
+    public synchronized int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * @param index index of the event
+     * @return event type of the event at index
+     */
+    public synchronized TestEventType getEventType(int index) {
+        checkIndex(index);
+        return eventTypes[index] == NO_VALUE ? null : EVENT_TYPES[eventTypes[index]];
+    }
+
+    /**
+     * @param index index of the event
+     * @return event time of the event at index
+     */
+    public synchronized Instant getEventTime(int index) {
+        checkIndex(index);
+        return EpochNanos.toInstant(eventTimes[index]);
+    }
+
+    /**
+     * @param index index of the event
+     * @return screenshot record number of the event at index
+     */
+    public synchronized int getScreenshotRecordNumber(int index) {
+        checkIndex(index);
+        return screenshotRecordNumbers[index];
+    }
+
+    /**
+     * @param index index of the event
+     * @return screenshot path of the event at index
+     */
+    public synchronized String getScreenshotPath(int index) {
+        checkIndex(index);
+        return screenshotPaths[index];
+    }
+
+    /**
+     * @param index index of the event
+     * @param screenshotPath new screenshot path of the event at index
+     */
+    public synchronized void setScreenshotPath(int index, String screenshotPath) {
+        checkIndex(index);
+        screenshotPaths[index] = screenshotPath;
+    }
+
+    private void write(int index, TestEvent event) {
+        eventTimes[index] = EpochNanos.of(event.getEventTime());
+        eventTypes[index] = event.getEventType() == null ? NO_VALUE : (byte) event.getEventType().ordinal();
+        screenshotRecordNumbers[index] = event.getScreenshotRecordNumber();
+        levels[index] = encode(event.getEventLevel());
+        seleniumCmds[index] = encode(event.getSeleniumCmd());
+        seleniumLocators[index] = encode(event.getSeleniumLocator());
+        eventContents[index] = event.getEventContent();
+        seleniumCmdParams[index] = event.getSeleniumCmdParam();
+        screenshotPaths[index] = event.getScreenshotPath();
+    }
+
+    // a detached TestEvent with the values stored at index
+    private TestEvent copy(int index) {
+        TestEvent event = new TestEvent();
+        event.setEventTime(EpochNanos.toInstant(eventTimes[index]));
+        event.setEventType(eventTypes[index] == NO_VALUE ? null : EVENT_TYPES[eventTypes[index]]);
+        event.setScreenshotRecordNumber(screenshotRecordNumbers[index]);
+        event.setEventLevel(decode(levels[index]));
+        event.setSeleniumCmd(decode(seleniumCmds[index]));
+        event.setSeleniumLocator(decode(seleniumLocators[index]));
+        event.setEventContent(eventContents[index]);
+        event.setSeleniumCmdParam(seleniumCmdParams[index]);
+        event.setScreenshotPath(screenshotPaths[index]);
+        return event;
+    }
+
+    private int encode(String value) {
+        if (value == null) return NO_VALUE;
+        Integer index = dictionaryIndex.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(StringPool.intern(value));
+            dictionaryIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private String decode(int index) {
+        return index == NO_VALUE ? null : dictionary.get(index);
+    }
+
+    // move count events of every column from one index to another
+    private void shift(int from, int to, int count) {
+        if (count == 0) return;
+        System.arraycopy(eventTimes, from, eventTimes, to, count);
+        System.arraycopy(eventTypes, from, eventTypes, to, count);
+        System.arraycopy(screenshotRecordNumbers, from, screenshotRecordNumbers, to, count);
+        System.arraycopy(levels, from, levels, to, count);
+        System.arraycopy(seleniumCmds, from, seleniumCmds, to, count);
+        System.arraycopy(seleniumLocators, from, seleniumLocators, to, count);
+        System.arraycopy(eventContents, from, eventContents, to, count);
+        System.arraycopy(seleniumCmdParams, from, seleniumCmdParams, to, count);
+        System.arraycopy(screenshotPaths, from, screenshotPaths, to, count);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= eventTimes.length) return;
+        int newCapacity = Math.max(INITIAL_CAPACITY, Math.max(capacity, eventTimes.length + (eventTimes.length >> 1)));
+        eventTimes = Arrays.copyOf(eventTimes, newCapacity);
+        eventTypes = Arrays.copyOf(eventTypes, newCapacity);
+        screenshotRecordNumbers = Arrays.copyOf(screenshotRecordNumbers, newCapacity);
+        levels = Arrays.copyOf(levels, newCapacity);
+        seleniumCmds = Arrays.copyOf(seleniumCmds, newCapacity);
+        seleniumLocators = Arrays.copyOf(seleniumLocators, newCapacity);
+        eventContents = Arrays.copyOf(eventContents, newCapacity);
+        seleniumCmdParams = Arrays.copyOf(seleniumCmdParams, newCapacity);
+        screenshotPaths = Arrays.copyOf(screenshotPaths, newCapacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    /**
+     * TestEvent reading and writing the columns of one event, the fields inherited
+     * from TestEvent are not used
+     */
+    private final class EventView extends TestEvent {
+        private final int index;
+        private final int viewGeneration;
+
+        EventView(int index) {
+            this.index = index;
+            this.viewGeneration = generation;
+        }
+
+        // index of the event in the columns, checked on every access under the lock of the list
+        private int column() {
+            if (viewGeneration != generation || index >= size)
+                throw new IllegalStateException("Event " + index + " is no longer in the list");
+            return index;
+        }
+
+        @Override
+        public String getScreenshotPath() {
+            synchronized (ColumnarEventList.this) {
+                return screenshotPaths[column()];
+            }
+        }
+
+        @Override
+        public void setScreenshotPath(String screenshotPath) {
+            synchronized (ColumnarEventList.this) {
+                screenshotPaths[column()] = screenshotPath;
+            }
+        }
+
+        @Override
+        public int getScreenshotRecordNumber() {
+            synchronized (ColumnarEventList.this) {
+                return screenshotRecordNumbers[column()];
+            }
+        }
+
+        @Override
+        public void setScreenshotRecordNumber(int screenshotRecordNumber) {
+            synchronized (ColumnarEventList.this) {
+                screenshotRecordNumbers[column()] = screenshotRecordNumber;
+            }
+        }
+
+        @Override
+        public String getSeleniumLocator() {
+            synchronized (ColumnarEventList.this) {
+                return decode(seleniumLocators[column()]);
+            }
+        }
+
+        @Override
+        public void setSeleniumLocator(String seleniumLocator) {
+            synchronized (ColumnarEventList.this) {
+                seleniumLocators[column()] = encode(seleniumLocator);
+            }
+        }
+
+        @Override
+        public String getSeleniumCmdParam() {
+            synchronized (ColumnarEventList.this) {
+                return seleniumCmdParams[column()];
+            }
+        }
+
+        @Override
+        public void setSeleniumCmdParam(String seleniumCmdParam) {
+            synchronized (ColumnarEventList.this) {
+                seleniumCmdParams[column()] = seleniumCmdParam;
+            }
+        }
+
+        @Override
+        public String getSeleniumCmd() {
+            synchronized (ColumnarEventList.this) {
+                return decode(seleniumCmds[column()]);
+            }
+        }
+
+        @Override
+        public void setSeleniumCmd(String seleniumCmd) {
+            synchronized (ColumnarEventList.this) {
+                seleniumCmds[column()] = encode(seleniumCmd);
+            }
+        }
+
+        @Override
+        public Instant getEventTime() {
+            synchronized (ColumnarEventList.this) {
+                return EpochNanos.toInstant(eventTimes[column()]);
+            }
+        }
+
+        @Override
+        public void setEventTime(Instant eventTime) {
+            synchronized (ColumnarEventList.this) {
+                eventTimes[column()] = EpochNanos.of(eventTime);
+            }
+        }
+
+        @Override
+        public String getEventContent() {
+            synchronized (ColumnarEventList.this) {
+                return eventContents[column()];
+            }
+        }
+
+        @Override
+        public void setEventContent(String eventContent) {
+            synchronized (ColumnarEventList.this) {
+                eventContents[column()] = eventContent;
+            }
+        }
+
+        @Override
+        public String getEventLevel() {
+            synchronized (ColumnarEventList.this) {
+                return decode(levels[column()]);
+            }
+        }
+
+        @Override
+        public void setEventLevel(String eventLevel) {
+            synchronized (ColumnarEventList.this) {
+                levels[column()] = encode(eventLevel);
+            }
+        }
+
+        @Override
+        public TestEventType getEventType() {
+            synchronized (ColumnarEventList.this) {
+                int column = column();
+                return eventTypes[column] == NO_VALUE ? null : EVENT_TYPES[eventTypes[column]];
+            }
+        }
+
+        @Override
+        public void setEventType(TestEventType eventType) {
+            synchronized (ColumnarEventList.this) {
+                eventTypes[column()] = eventType == null ? NO_VALUE : (byte) eventType.ordinal();
+            }
+        }
+    }
+
+    /**
+     * Writes the events straight from the columns, in the property order of TestEvent
+     */
+    static final class Serializer extends StdSerializer<ColumnarEventList> {
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(ColumnarEventList.class);
+        }
+
+        @Override
+        public void serialize(ColumnarEventList list, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            synchronized (list) {
+                serializeColumns(list, gen, provider);
+            }
+        }
+
+        private void serializeColumns(ColumnarEventList list, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(list, list.size);
+            for (int i = 0; i < list.size; i++) {
+                gen.writeStartObject();
+                provider.defaultSerializeField("eventType", list.getEventType(i), gen);
+                gen.writeStringField("eventLevel", list.decode(list.levels[i]));
+                gen.writeStringField("eventContent", list.eventContents[i]);
+                provider.defaultSerializeField("eventTime", list.getEventTime(i), gen);
+                gen.writeStringField("seleniumCmd", list.decode(list.seleniumCmds[i]));
+                gen.writeStringField("seleniumCmdParam", list.seleniumCmdParams[i]);
+                gen.writeStringField("seleniumLocator", list.decode(list.seleniumLocators[i]));
+                gen.writeNumberField("screenshotRecordNumber", list.screenshotRecordNumbers[i]);
+                gen.writeStringField("screenshotPath", list.screenshotPaths[i]);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+import java.time.Instant;
+
+/**
+ * Timestamps kept as nanoseconds since the epoch in a primitive long,
+ * Instant objects are created only when a timestamp is read.
+ */
+final class EpochNanos {
+    // stands for a null timestamp
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private EpochNanos() {}
+
+    static long now() {
+        return of(Instant.now());
+    }
+
+    static long of(Instant instant) {
+        if (instant == null) return NONE;
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    static Instant toInstant(long epochNanos) {
+        if (epochNanos == NONE) return null;
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND), Math.floorMod(epochNanos, NANOS_PER_SECOND));
+    }
+}
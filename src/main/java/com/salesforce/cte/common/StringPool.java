@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+/**
+ * Shares one instance of strings which repeat across test events,
+ * such as event levels, Selenium commands and locators.
+ * 
+ * The pool is bounded, once it is full new strings are returned as they are.
+ */
+final class StringPool {
+    private static final int MAX_SIZE = 16 * 1024;
+    private static final ConcurrentMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    static {
+        for (Level level : new Level[] {Level.OFF, Level.SEVERE, Level.WARNING, Level.INFO, Level.CONFIG,
+                                        Level.FINE, Level.FINER, Level.FINEST, Level.ALL}) {
+            POOL.put(level.getName(), level.getName());
+        }
+    }
+
+    private StringPool() {}
+
+    /**
+     * @param value string to share
+     * @return pooled instance equal to value, value itself if it is null or the pool is full
+     */
+    static String intern(String value) {
+        if (value == null) return null;
+        String pooled = POOL.get(value);
+        if (pooled != null) return pooled;
+        if (POOL.size() >= MAX_SIZE) return value;
+        pooled = POOL.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+/**
+ * Self instrumentation metrics of TestAdvisor for a test run, durations are in nanoseconds
+ */
+public class TestAdvisorMetricsSummary {
+
+    private long eventsAppended;
+    private double eventsPerSecond;
+    private long listenerCallbackCount;
+    private long listenerCallbackTotalNanos;
+    private long listenerCallbackP50Nanos;
+    private long listenerCallbackP99Nanos;
+    private long listenerCallbackMaxNanos;
+    private long maxQueueDepth;
+    private long bytesWritten;
+    private long screenshotsMoved;
+    private long saveCount;
+    private long lastSaveNanos;
+
+    public long getEventsAppended() {
+        return eventsAppended;
+    }
+    public void setEventsAppended(long eventsAppended) {
+        this.eventsAppended = eventsAppended;
+    }
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+    public void setEventsPerSecond(double eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+    public long getListenerCallbackCount() {
+        return listenerCallbackCount;
+    }
+    public void setListenerCallbackCount(long listenerCallbackCount) {
+        this.listenerCallbackCount = listenerCallbackCount;
+    }
+    public long getListenerCallbackTotalNanos() {
+        return listenerCallbackTotalNanos;
+    }
+    public void setListenerCallbackTotalNanos(long listenerCallbackTotalNanos) {
+        this.listenerCallbackTotalNanos = listenerCallbackTotalNanos;
+    }
+    public long getListenerCallbackP50Nanos() {
+        return listenerCallbackP50Nanos;
+    }
+    public void setListenerCallbackP50Nanos(long listenerCallbackP50Nanos) {
+        this.listenerCallbackP50Nanos = listenerCallbackP50Nanos;
+    }
+    public long getListenerCallbackP99Nanos() {
+        return listenerCallbackP99Nanos;
+    }
+    public void setListenerCallbackP99Nanos(long listenerCallbackP99Nanos) {
+        this.listenerCallbackP99Nanos = listenerCallbackP99Nanos;
+    }
+    public long getListenerCallbackMaxNanos() {
+        return listenerCallbackMaxNanos;
+    }
+    public void setListenerCallbackMaxNanos(long listenerCallbackMaxNanos) {
+        this.listenerCallbackMaxNanos = listenerCallbackMaxNanos;
+    }
+    public long getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+    public void setMaxQueueDepth(long maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+    }
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+    public long getScreenshotsMoved() {
+        return screenshotsMoved;
+    }
+    public void setScreenshotsMoved(long screenshotsMoved) {
+        this.screenshotsMoved = screenshotsMoved;
+    }
+    public long getSaveCount() {
+        return saveCount;
+    }
+    public void setSaveCount(long saveCount) {
+        this.saveCount = saveCount;
+    }
+    public long getLastSaveNanos() {
+        return lastSaveNanos;
+    }
+    public void setLastSaveNanos(long lastSaveNanos) {
+        this.lastSaveNanos = lastSaveNanos;
+    }
+}
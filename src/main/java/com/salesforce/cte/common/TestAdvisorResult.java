@@ -11,6 +11,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Defines test result for a test run
  * 
@@ -22,6 +24,7 @@ public class TestAdvisorResult {
     private String version = "";
     private Instant buildStartTime;
     private Instant buildEndTime;
+    private TestAdvisorMetricsSummary metrics;
     
     public List<TestCaseExecution> getTestCaseExecutionList() {
         return testCaseExecutionList;
@@ -47,5 +50,15 @@ public class TestAdvisorResult {
     public void setTestCaseExecutionList(List<TestCaseExecution> testCaseExecutionList) {
         this.testCaseExecutionList = testCaseExecutionList;
     }
+    /**
+     * @return self instrumentation metrics, null unless metrics are enabled
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public TestAdvisorMetricsSummary getMetrics() {
+        return metrics;
+    }
+    public void setMetrics(TestAdvisorMetricsSummary metrics) {
+        this.metrics = metrics;
+    }
     
 }
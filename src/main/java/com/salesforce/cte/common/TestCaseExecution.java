@@ -10,8 +10,13 @@ package com.salesforce.cte.common;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 /**
  * 
@@ -19,17 +24,22 @@ import java.util.Random;
  * An instance of this class will be created at the start of a test and all of the events
  * emanating/resulting from that test will be collected for that specific test
  * and then flushed to the registry once the test has finished running.
+ * Start and end time are kept as epoch nanoseconds, the screenshot file list
+ * is created when it is first used.
  * 
  * @author gpahuja
  *
  */
+@JsonPropertyOrder({"testName", "eventList", "testStatus", "startTime", "endTime", "browser", "browserVersion",
+                    "screenResolution", "threadId", "traceId", "screenShotFileList", "configuration"})
 public class TestCaseExecution {
     
 	private String testName;
     private List<TestEvent> eventList = new ArrayList<>();
     private TestStatus testStatus = TestStatus.PASSED;
-    private Instant startTime = Instant.now();
-    private Instant endTime = Instant.now();
+    private long startTimeNanos = EpochNanos.now();
+    // end time is the start time until the test case ends
+    private long endTimeNanos = startTimeNanos;
     private String browser = "";
     private String browserVersion = "";
     private String screenResolution = "";
@@ -37,8 +47,8 @@ public class TestCaseExecution {
     private long threadId = Thread.currentThread().getId();
     private String traceId = "";
 
-    private List<File> screenShotFileList = new ArrayList<>();
-    private Random rand = new Random();
+    private List<File> screenShotFileList;
+    private TestCaseExecutionObserver observer;
 
     public List<TestEvent> getEventList(){
         return eventList;
@@ -57,11 +67,11 @@ public class TestCaseExecution {
     }
 
     public void setStartTime(Instant startTime) {
-        this.startTime = startTime;
+        this.startTimeNanos = EpochNanos.of(startTime);
     }
 
     public Instant getStartTime() {
-        return startTime;
+        return EpochNanos.toInstant(startTimeNanos);
     }
 
     public String getScreenResolution() {
@@ -69,7 +79,7 @@ public class TestCaseExecution {
     }
 
     public void setScreenResolution(String screenResolution) {
-        this.screenResolution = screenResolution;
+        this.screenResolution = StringPool.intern(screenResolution);
     }
 
     public String getBrowserVersion() {
@@ -77,7 +87,7 @@ public class TestCaseExecution {
     }
 
     public void setBrowserVersion(String browserVersion) {
-        this.browserVersion = browserVersion;
+        this.browserVersion = StringPool.intern(browserVersion);
     }
 
     public String getBrowser() {
@@ -85,15 +95,15 @@ public class TestCaseExecution {
     }
 
     public void setBrowser(String browser) {
-        this.browser = browser;
+        this.browser = StringPool.intern(browser);
     }
 
     public Instant getEndTime() {
-        return endTime;
+        return EpochNanos.toInstant(endTimeNanos);
     }
 
     public void setEndTime(Instant endTime) {
-        this.endTime = endTime;
+        this.endTimeNanos = EpochNanos.of(endTime);
     }
 
     public String getTestName() {
@@ -110,6 +120,7 @@ public class TestCaseExecution {
 
     public void setTestStatus(TestStatus status) {
     	testStatus = status;
+        if (observer != null) observer.onTestStatus(this, status);
     }
     
     public String getTraceId(){
@@ -119,6 +130,12 @@ public class TestCaseExecution {
     public long getThreadId(){
         return threadId;
     }
+
+    // trace and thread of a test case copied from another instance, such as a summary
+    void copyTraceFrom(TestCaseExecution test) {
+        traceId = test.traceId;
+        threadId = test.threadId;
+    }
     
     /**
      * This function will append an Event instance 'event' to the 'eventList'
@@ -127,22 +144,47 @@ public class TestCaseExecution {
      * @param event represents an event that was captured by the Event Listener
      * @return event represents the current event being read in from the Event Listener
      */
-    public TestEvent appendEvent(TestEvent event) {
+    public synchronized TestEvent appendEvent(TestEvent event) {
         eventList.add(event);
+        if (observer != null) observer.onTestEvent(this, event);
         return event;
     }
 
+    /**
+     * Set the observer to be notified when test events are appended or test status changes
+     * 
+     * @param observer test case execution observer, null to remove the current observer
+     */
+    @JsonIgnore
+    public void setObserver(TestCaseExecutionObserver observer) {
+        this.observer = observer;
+    }
+
 	/**
 	 * Saves the current test case's end time of execution
 	 */
     public void saveEndTime() {
-    	setEndTime(Instant.now());
+    	endTimeNanos = EpochNanos.now();
     }
 
+    @JsonIgnore
     public List<File> getScreenShotFileList(){
+        if (screenShotFileList == null)
+            screenShotFileList = new ArrayList<>();
         return this.screenShotFileList;
     }
 
+    // JSON accessors of screenShotFileList, which don't create the list
+    @JsonProperty("screenShotFileList")
+    private List<File> getScreenShotFiles(){
+        return screenShotFileList == null ? Collections.emptyList() : screenShotFileList;
+    }
+
+    @JsonProperty("screenShotFileList")
+    private void setScreenShotFiles(List<File> files){
+        screenShotFileList = files == null || files.isEmpty() ? null : new ArrayList<>(files);
+    }
+
     /**
      * If trace id is emtpy, generate a random 16 character trace id 
      * @return trace id
@@ -150,6 +192,7 @@ public class TestCaseExecution {
     public String generateTraceId() {
         if (!traceId.isEmpty()) return traceId;
         StringBuilder sb = new StringBuilder();
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
         while (sb.length() < 16) {
             sb.append(Integer.toHexString(rand.nextInt()));
         }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+/**
+ * Receives notifications when a test case execution changes,
+ * such as a test event is appended or the test status is updated.
+ * 
+ * Notifications are delivered on the thread which made the change.
+ */
+public interface TestCaseExecutionObserver {
+
+    /**
+     * Callback when a test event is appended to a test case execution
+     * @param testCaseExecution test case execution
+     * @param event appended test event
+     */
+    void onTestEvent(TestCaseExecution testCaseExecution, TestEvent event);
+
+    /**
+     * Callback when the status of a test case execution is updated
+     * @param testCaseExecution test case execution
+     * @param status new test status
+     */
+    void onTestStatus(TestCaseExecution testCaseExecution, TestStatus status);
+}
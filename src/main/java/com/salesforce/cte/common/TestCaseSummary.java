@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Lightweight stand-in for a test case execution which is already written to the result file.
+ *
+ * A summary keeps all attributes of the test case, such as name, status, times, browser,
+ * thread and trace id, and where the test case is stored in the result file. It has no events, the full test case execution is read back
+ * from the result file with {@link #load()}.
+ */
+public class TestCaseSummary extends TestCaseExecution {
+
+    /**
+     * Reads the test case execution of a summary from where it is stored
+     */
+    @FunctionalInterface
+    public interface Loader {
+        TestCaseExecution load(TestCaseSummary summary) throws IOException;
+    }
+
+    private final long offset;
+    private final int length;
+    private final Loader loader;
+
+    /**
+     * @param test test case execution written to the result file
+     * @param offset position of the test case in the uncompressed result document
+     * @param length number of bytes of the test case in the uncompressed result document
+     * @param loader reads the test case back
+     */
+    public TestCaseSummary(TestCaseExecution test, long offset, int length, Loader loader) {
+        setTestName(test.getTestName());
+        setTestStatus(test.getTestStatus());
+        setStartTime(test.getStartTime());
+        setEndTime(test.getEndTime());
+        setConfiguration(test.isConfiguration());
+        setBrowser(test.getBrowser());
+        setBrowserVersion(test.getBrowserVersion());
+        setScreenResolution(test.getScreenResolution());
+        copyTraceFrom(test);
+        setEventList(Collections.emptyList());
+        this.offset = offset;
+        this.length = length;
+        this.loader = loader;
+    }
+
+    /**
+     * @return position of the test case in the uncompressed result document
+     */
+    @JsonIgnore
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return number of bytes of the test case in the uncompressed result document
+     */
+    @JsonIgnore
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Read the full test case execution from the result file, the result is not cached
+     *
+     * @return test case execution with all its events
+     * @throws IOException when fail to read the result file
+     */
+    public TestCaseExecution load() throws IOException {
+        return loader.load(this);
+    }
+}
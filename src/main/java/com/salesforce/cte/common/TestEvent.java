@@ -10,19 +10,25 @@ package com.salesforce.cte.common;
 import java.io.File;
 import java.time.Instant;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 /**
  * 
  * This class represents the Events emitted from a single test case.
+ * Event time is kept as epoch nanoseconds, event level, Selenium command
+ * and locator share one instance per distinct value.
  * 
  * @author gpahuja
  *
  */
+@JsonPropertyOrder({"eventType", "eventLevel", "eventContent", "eventTime", "seleniumCmd", "seleniumCmdParam",
+					"seleniumLocator", "screenshotRecordNumber", "screenshotPath"})
 public class TestEvent {
 	// General event attribute
 	private TestEventType eventType;
 	private String eventLevel;
 	private String eventContent;
-	private Instant eventTime;
+	private long eventTimeNanos = EpochNanos.NONE;
 
 	// Selenium event attribute
 	private String seleniumCmd;
@@ -54,7 +60,7 @@ public class TestEvent {
 	}
 
 	public void setSeleniumLocator(String seleniumLocator) {
-		this.seleniumLocator = seleniumLocator;
+		this.seleniumLocator = StringPool.intern(seleniumLocator);
 	}
 
 	public String getSeleniumCmdParam() {
@@ -70,15 +76,15 @@ public class TestEvent {
 	}
 
 	public void setSeleniumCmd(String seleniumCmd) {
-		this.seleniumCmd = seleniumCmd;
+		this.seleniumCmd = StringPool.intern(seleniumCmd);
 	}
 
 	public Instant getEventTime() {
-		return eventTime;
+		return EpochNanos.toInstant(eventTimeNanos);
 	}
 
 	public void setEventTime(Instant eventTime) {
-		this.eventTime = eventTime;
+		this.eventTimeNanos = EpochNanos.of(eventTime);
 	}
 
 	public String getEventContent() {
@@ -94,7 +100,7 @@ public class TestEvent {
 	}
 
 	public void setEventLevel(String eventLevel) {
-		this.eventLevel = eventLevel;
+		this.eventLevel = StringPool.intern(eventLevel);
 	}
 
 	public TestEventType getEventType() {
@@ -117,7 +123,7 @@ public class TestEvent {
 		this.setEventType(eventType);
 		this.setEventContent(eventContent);
 		this.setEventLevel(level);
-		this.setEventTime(Instant.now());
+		this.eventTimeNanos = EpochNanos.now();
 	}
 
 	/**
@@ -138,7 +144,7 @@ public class TestEvent {
 		this.setEventType(eventType);
 		this.setEventContent(eventContent);
 		this.setEventLevel(level);
-		this.setEventTime(Instant.now());
+		this.eventTimeNanos = EpochNanos.now();
 
 		this.setSeleniumCmd(seleniumCommand);
 		this.setSeleniumCmdParam(seleniumParam);
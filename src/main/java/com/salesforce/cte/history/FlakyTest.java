@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * Flakiness of a test over its recent executions
+ */
+public class FlakyTest {
+
+    private final String testName;
+    private final double score;
+    private final int flips;
+    private final int executions;
+    private final int failures;
+    private final TestStatus lastStatus;
+
+    /**
+     * @param testName test name
+     * @param score share of recent executions whose status differs from the one before, 0 to 1
+     * @param flips number of status changes between recent executions
+     * @param executions number of recent executions which passed or failed
+     * @param failures number of recent executions which failed
+     * @param lastStatus status of the last execution which passed or failed
+     */
+    public FlakyTest(String testName, double score, int flips, int executions, int failures, TestStatus lastStatus) {
+        this.testName = testName;
+        this.score = score;
+        this.flips = flips;
+        this.executions = executions;
+        this.failures = failures;
+        this.lastStatus = lastStatus;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getFlips() {
+        return flips;
+    }
+
+    public int getExecutions() {
+        return executions;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public TestStatus getLastStatus() {
+        return lastStatus;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * Scores how flaky tests are from their history in a {@link TestHistoryIndex}.
+ *
+ * The score of a test is the share of its recent executions whose status differs from the
+ * execution before, a test which alternates between PASSED and FAILED scores 1, a test
+ * which always passes or always fails scores 0. Skipped executions are ignored.
+ *
+ * The recent outcomes of a test are kept as bits of one long, so memory stays bounded by
+ * the number of tests no matter how many runs are indexed. The analyzer reads only results
+ * added to the index since its last update, and its state can be saved in the registry so
+ * the next process continues where the last one stopped.
+ */
+public class FlakyTestAnalyzer {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    public static final String STATE_FILE_NAME = "flaky.state";
+    public static final String REPORT_FILE_NAME = "flaky-report.json";
+    public static final int MAX_WINDOW = Long.SIZE;
+
+    private static final int STATE_MAGIC = 0x54414653;
+    private static final int STATE_VERSION = 2;
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private static final Comparator<FlakyTest> RANKING = Comparator.comparingDouble(FlakyTest::getScore)
+                                                    .thenComparingInt(FlakyTest::getFlips)
+                                                    .thenComparing(FlakyTest::getTestName, Comparator.reverseOrder());
+
+    /**
+     * Recent outcomes of a test, bit 0 is the latest, a set bit is a failure
+     */
+    private static final class Outcomes {
+        long failures;
+        int count;
+
+        void add(boolean failed) {
+            failures = failures << 1 | (failed ? 1 : 0);
+            if (count < MAX_WINDOW) count++;
+        }
+    }
+
+    private final TestHistoryIndex index;
+    private final int window;
+    private final Map<String, Outcomes> tests = new HashMap<>();
+    private long position = 0;
+
+    /**
+     * @param index history index to analyze
+     * @param window number of recent executions a score is based on, 2 to 64
+     */
+    public FlakyTestAnalyzer(TestHistoryIndex index, int window) {
+        if (window < 2 || window > MAX_WINDOW)
+            throw new IllegalArgumentException("Window must be between 2 and " + MAX_WINDOW + ": " + window);
+        this.index = index;
+        this.window = window;
+    }
+
+    /**
+     * Read results added to the index since the last update
+     *
+     * @return number of results read
+     * @throws IOException when fail to read the index
+     */
+    public synchronized int update() throws IOException {
+        index.refresh();
+        if (position > index.getPosition()) {
+            // index was rebuilt, start over
+            LOGGER.log(Level.INFO, "Test history index is shorter than analyzed, flakiness is computed again");
+            tests.clear();
+            position = 0;
+        }
+        int[] count = {0};
+        position = index.visitResults(position, (testName, entry) -> {
+            if (entry.getStatus() != TestStatus.PASSED && entry.getStatus() != TestStatus.FAILED) return;
+            tests.computeIfAbsent(testName, name -> new Outcomes()).add(entry.getStatus() == TestStatus.FAILED);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * @param testName test name
+     * @return flakiness of the test, null if it never passed or failed
+     */
+    public synchronized FlakyTest getFlakiness(String testName) {
+        Outcomes outcomes = tests.get(testName);
+        return outcomes == null ? null : toFlakyTest(testName, outcomes);
+    }
+
+    /**
+     * @param testName test name
+     * @param threshold minimum score of a flaky test
+     * @return true if the test scores at least threshold
+     */
+    public synchronized boolean isFlaky(String testName, double threshold) {
+        FlakyTest test = getFlakiness(testName);
+        return test != null && test.getScore() >= threshold;
+    }
+
+    /**
+     * @return number of tests analyzed
+     */
+    public synchronized int getTestCount() {
+        return tests.size();
+    }
+
+    /**
+     * Rank the flakiest tests, by score, then by flips, then by name
+     *
+     * @param limit maximum number of tests to return
+     * @param minExecutions minimum number of recent executions of a ranked test
+     * @return flaky tests, flakiest first, tests which never flipped are left out
+     */
+    public synchronized List<FlakyTest> getRanking(int limit, int minExecutions) {
+        // keeps the top tests only, the weakest on top
+        PriorityQueue<FlakyTest> top = new PriorityQueue<>(Math.max(1, limit), RANKING);
+        for (Map.Entry<String, Outcomes> entry : tests.entrySet()) {
+            FlakyTest test = toFlakyTest(entry.getKey(), entry.getValue());
+            if (test.getFlips() == 0 || test.getExecutions() < minExecutions) continue;
+            if (top.size() < limit) {
+                top.add(test);
+            } else if (limit > 0 && RANKING.compare(test, top.peek()) > 0) {
+                top.poll();
+                top.add(test);
+            }
+        }
+        List<FlakyTest> ranking = new ArrayList<>(top);
+        ranking.sort(Collections.reverseOrder(RANKING));
+        return ranking;
+    }
+
+    private FlakyTest toFlakyTest(String testName, Outcomes outcomes) {
+        int executions = Math.min(outcomes.count, window);
+        long mask = executions == Long.SIZE ? -1L : (1L << executions) - 1;
+        long failures = outcomes.failures & mask;
+        // a flip is a pair of neighbouring executions with different outcomes
+        long pairMask = executions <= 1 ? 0 : mask >>> 1;
+        int flips = Long.bitCount((failures ^ (failures >>> 1)) & pairMask);
+        double score = executions <= 1 ? 0 : (double) flips / (executions - 1);
+        TestStatus lastStatus = (failures & 1) == 1 ? TestStatus.FAILED : TestStatus.PASSED;
+        return new FlakyTest(testName, score, flips, executions, Long.bitCount(failures), lastStatus);
+    }
+
+    /**
+     * Save the analyzer state, written to a temp file and renamed
+     *
+     * @param stateFile state file, such as {@link #STATE_FILE_NAME} in the registry root
+     * @throws IOException when fail to write the state
+     */
+    public synchronized void save(Path stateFile) throws IOException {
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + TEMP_FILE_EXTENSION);
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(STATE_MAGIC);
+            output.writeInt(STATE_VERSION);
+            // positions are only meaningful in the index they were read from
+            output.writeLong(index.getIndexId());
+            output.writeLong(position);
+            output.writeInt(tests.size());
+            for (Map.Entry<String, Outcomes> entry : tests.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue().failures);
+                output.writeByte(entry.getValue().count);
+            }
+            output.flush();
+            file.getChannel().force(true);
+        }
+        try {
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Continue from a state saved before, a missing or unreadable state, or a state of
+     * another index, such as an index built again, is ignored and the next update reads
+     * the index from the start
+     *
+     * @param stateFile state file written by {@link #save(Path)}
+     * @return true if the state was loaded
+     */
+    public synchronized boolean load(Path stateFile) {
+        if (!Files.isRegularFile(stateFile)) return false;
+        Map<String, Outcomes> loaded = new HashMap<>();
+        long loadedPosition;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            if (input.readInt() != STATE_MAGIC || input.readInt() != STATE_VERSION)
+                throw new IOException("Unknown state format");
+            if (input.readLong() != index.getIndexId()) {
+                LOGGER.log(Level.INFO, "Flaky test state {0} belongs to another test history index, flakiness is computed again", stateFile);
+                return false;
+            }
+            loadedPosition = input.readLong();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                Outcomes outcomes = new Outcomes();
+                String testName = input.readUTF();
+                outcomes.failures = input.readLong();
+                outcomes.count = input.readUnsignedByte();
+                loaded.put(testName, outcomes);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to load flaky test state {0}: {1}", new Object[] {stateFile, ex.toString()});
+            return false;
+        }
+        tests.clear();
+        tests.putAll(loaded);
+        position = loadedPosition;
+        return true;
+    }
+
+    /**
+     * Write the ranking as a JSON report
+     *
+     * @param reportFile report file
+     * @param limit maximum number of tests in the report
+     * @param minExecutions minimum number of recent executions of a reported test
+     * @throws IOException when fail to write the report
+     */
+    public void writeReport(Path reportFile, int limit, int minExecutions) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                        .writeValue(reportFile.toFile(), getRanking(limit, minExecutions));
+    }
+
+    /**
+     * Update flakiness of a registry and write its report to the registry root
+     * @param args registry root, optionally followed by the number of tests in the report
+     * @throws IOException when fail to read the registry or write the report
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            LOGGER.log(Level.SEVERE, "Usage: FlakyTestAnalyzer <registry root> [limit]");
+            return;
+        }
+        Path registryRoot = Paths.get(args[0]);
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        try (TestHistoryIndex index = TestHistoryIndex.open(registryRoot)) {
+            index.indexRegistry();
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, MAX_WINDOW);
+            Path stateFile = registryRoot.resolve(STATE_FILE_NAME);
+            analyzer.load(stateFile);
+            analyzer.update();
+            analyzer.save(stateFile);
+            Path reportFile = registryRoot.resolve(REPORT_FILE_NAME);
+            analyzer.writeReport(reportFile, limit, 2);
+            LOGGER.log(Level.INFO, "Flaky test report of {0} tests written to {1}",
+                        new Object[] {analyzer.getTestCount(), reportFile});
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import com.salesforce.cte.admin.TestAdvisorConfiguration;
+
+/**
+ * Splits tests into shards of near equal expected runtime for multi-node CI.
+ *
+ * Tests are taken longest first and each goes to the shard with the least expected runtime
+ * so far, so the longest shard exceeds the average by at most the duration of one test.
+ * Durations are estimated from the history index, see {@link TestDurationEstimator}.
+ *
+ * Each shard can be written as a TestNG suite and as a JUnit Platform console launcher
+ * argument file selecting its methods. Test names are expected as class name, a dot,
+ * then method name, as recorded by the TestNG and JUnit4 listeners and by the JUnit5 listener
+ * with method names on. Invocations of a method, named method[index], are planned as their method.
+ */
+public class ShardPlanner {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    public static final String TESTNG_FILE_FORMAT = "shard-%d.xml";
+    public static final String JUNIT_FILE_FORMAT = "shard-%d.args";
+
+    private final int shardCount;
+
+    /**
+     * @param shardCount number of shards, at least 1
+     */
+    public ShardPlanner(int shardCount) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Plan shards for tests with estimated durations
+     *
+     * @param estimates estimated duration of each test in milliseconds
+     * @return shards, ordered by shard number, tests in each shard longest first
+     */
+    public List<TestShard> plan(Map<String, Long> estimates) {
+        // a method runs all of its invocations, so they go to one shard
+        Map<String, Long> methods = new TreeMap<>();
+        for (Map.Entry<String, Long> estimate : estimates.entrySet())
+            methods.merge(getMethodName(estimate.getKey()), Math.max(0, estimate.getValue()), Long::sum);
+        List<Map.Entry<String, Long>> tests = new ArrayList<>(methods.entrySet());
+        // longest first, then by name for a plan which doesn't depend on map order
+        tests.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        List<TestShard> shards = new ArrayList<>(shardCount);
+        PriorityQueue<TestShard> shortest = new PriorityQueue<>(shardCount,
+                    (first, second) -> first.getExpectedMillis() != second.getExpectedMillis()
+                                    ? Long.compare(first.getExpectedMillis(), second.getExpectedMillis())
+                                    : Integer.compare(first.getShardNumber(), second.getShardNumber()));
+        for (int i = 1; i <= shardCount; i++) {
+            TestShard shard = new TestShard(i);
+            shards.add(shard);
+            shortest.add(shard);
+        }
+        for (Map.Entry<String, Long> test : tests) {
+            TestShard shard = shortest.poll();
+            shard.add(test.getKey(), test.getValue());
+            shortest.add(shard);
+        }
+        return shards;
+    }
+
+    /**
+     * Plan shards for tests with durations estimated from the history index
+     *
+     * @param estimator duration estimator
+     * @param testNames tests to plan
+     * @return shards, ordered by shard number, tests in each shard longest first
+     */
+    public List<TestShard> plan(TestDurationEstimator estimator, Collection<String> testNames) {
+        return plan(estimator.estimateMillis(testNames));
+    }
+
+    /**
+     * Write a TestNG suite including the methods of a shard
+     *
+     * @param shard shard
+     * @param suiteFile TestNG suite file
+     * @throws IOException when fail to write the file
+     * @throws IllegalArgumentException when a test is not a class and method name
+     */
+    public static void writeTestNGSuite(TestShard shard, Path suiteFile) throws IOException {
+        String name = escape("Shard-" + shard.getShardNumber());
+        try (Writer writer = Files.newBufferedWriter(suiteFile, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<!DOCTYPE suite SYSTEM \"https://testng.org/testng-1.0.dtd\">\n");
+            writer.write("<suite name=\"" + name + "\">\n");
+            writer.write("  <test name=\"" + name + "\">\n");
+            writer.write("    <classes>\n");
+            for (Map.Entry<String, Set<String>> testClass : groupByClass(shard).entrySet()) {
+                writer.write("      <class name=\"" + escape(testClass.getKey()) + "\">\n");
+                writer.write("        <methods>\n");
+                for (String method : testClass.getValue())
+                    writer.write("          <include name=\"" + escape(method) + "\"/>\n");
+                writer.write("        </methods>\n");
+                writer.write("      </class>\n");
+            }
+            writer.write("    </classes>\n");
+            writer.write("  </test>\n");
+            writer.write("</suite>\n");
+        }
+    }
+
+    /**
+     * Write a JUnit Platform console launcher argument file selecting the methods of a shard,
+     * pass it to the launcher as {@literal @}file
+     *
+     * @param shard shard
+     * @param argumentFile argument file
+     * @throws IOException when fail to write the file
+     * @throws IllegalArgumentException when a test is not a class and method name
+     */
+    public static void writeJUnitSelectors(TestShard shard, Path argumentFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(argumentFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Set<String>> testClass : groupByClass(shard).entrySet()) {
+                for (String method : testClass.getValue()) {
+                    writer.write("--select-method=" + testClass.getKey() + "#" + method);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return method names of each class, both sorted
+     * @throws IllegalArgumentException when a test name is not a class and method name
+     */
+    private static Map<String, Set<String>> groupByClass(TestShard shard) {
+        checkTestNames(shard.getTestNames());
+        Map<String, Set<String>> classes = new TreeMap<>();
+        for (String testName : shard.getTestNames()) {
+            String methodName = getMethodName(testName);
+            int separator = methodName.lastIndexOf('.');
+            classes.computeIfAbsent(methodName.substring(0, separator), name -> new TreeSet<>())
+                    .add(methodName.substring(separator + 1));
+        }
+        return classes;
+    }
+
+    /**
+     * Check every test can be selected by class and method, a test left out of all shards would not run
+     *
+     * @param testNames test names
+     * @throws IllegalArgumentException when a test name is not a class and method name
+     */
+    static void checkTestNames(Collection<String> testNames) {
+        List<String> invalid = new ArrayList<>();
+        for (String testName : testNames) {
+            String methodName = getMethodName(testName);
+            int separator = methodName.lastIndexOf('.');
+            if (separator <= 0 || separator == methodName.length() - 1)
+                invalid.add(testName);
+        }
+        if (!invalid.isEmpty())
+            throw new IllegalArgumentException("Tests are not class and method names, they can not be sharded: " + invalid);
+    }
+
+    /**
+     * @return test name without the invocation indexes of a parameterized or repeated test,
+     *         com.test.LoginTest.login for com.test.LoginTest.login[2]
+     */
+    static String getMethodName(String testName) {
+        int end = testName.length();
+        while (end > 0 && testName.charAt(end - 1) == ']') {
+            int start = testName.lastIndexOf('[', end - 1);
+            if (start <= 0) break;
+            end = start;
+        }
+        return testName.substring(0, end);
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Plan shards from the history of a registry and write their TestNG suites and JUnit argument files
+     * @param args registry root, number of shards, output folder, optionally a file listing tests to plan
+     *             one per line, by default all tests in the history index
+     * @throws IOException when fail to read the registry or write the shards
+     * @throws IllegalArgumentException when a test is not a class and method name
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            LOGGER.log(Level.SEVERE, "Usage: ShardPlanner <registry root> <shards> <output folder> [test list file]");
+            return;
+        }
+        Path registryRoot = Paths.get(args[0]);
+        ShardPlanner planner = new ShardPlanner(Integer.parseInt(args[1]));
+        Path outputFolder = Paths.get(args[2]);
+        Files.createDirectories(outputFolder);
+
+        List<TestShard> shards;
+        try (TestHistoryIndex index = TestHistoryIndex.open(registryRoot)) {
+            index.indexRegistry();
+            Collection<String> testNames = args.length > 3
+                        ? Files.readAllLines(Paths.get(args[3]), StandardCharsets.UTF_8).stream()
+                                .map(String::trim).filter(name -> !name.isEmpty()).collect(Collectors.toList())
+                        : index.getTestNames();
+            // fail before any shard is written
+            checkTestNames(testNames);
+            shards = planner.plan(new TestDurationEstimator(index, TestAdvisorConfiguration.getHistoryDepth()), testNames);
+        }
+        for (TestShard shard : shards) {
+            writeTestNGSuite(shard, outputFolder.resolve(String.format(TESTNG_FILE_FORMAT, shard.getShardNumber())));
+            writeJUnitSelectors(shard, outputFolder.resolve(String.format(JUNIT_FILE_FORMAT, shard.getShardNumber())));
+            LOGGER.log(Level.INFO, "Shard {0}: {1} tests, expected {2} ms",
+                        new Object[] {shard.getShardNumber(), shard.getTestNames().size(), shard.getExpectedMillis()});
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * Estimates how long a test takes from its recent executions in a {@link TestHistoryIndex}
+ */
+public class TestDurationEstimator {
+
+    private final TestHistoryIndex index;
+    private final int historyDepth;
+
+    /**
+     * @param index history index
+     * @param historyDepth number of recent executions an estimate is averaged from
+     */
+    public TestDurationEstimator(TestHistoryIndex index, int historyDepth) {
+        this.index = index;
+        this.historyDepth = historyDepth;
+    }
+
+    /**
+     * @param testName test name
+     * @return average duration of recent passed or failed executions, -1 if there is none
+     */
+    public long estimateMillis(String testName) {
+        long total = 0;
+        int count = 0;
+        for (TestHistoryEntry entry : index.getHistory(testName, historyDepth)) {
+            if (entry.getStatus() != TestStatus.PASSED && entry.getStatus() != TestStatus.FAILED) continue;
+            total += entry.getDurationMillis();
+            count++;
+        }
+        return count == 0 ? -1 : total / count;
+    }
+
+    /**
+     * Estimate every test, tests without history are estimated at the median of the tests with history
+     *
+     * @param testNames test names
+     * @return estimate of each test in the order of testNames, 0 for all tests if none has history
+     */
+    public Map<String, Long> estimateMillis(Collection<String> testNames) {
+        Map<String, Long> estimates = new LinkedHashMap<>();
+        long[] known = new long[testNames.size()];
+        int knownCount = 0;
+        for (String testName : testNames) {
+            long estimate = estimateMillis(testName);
+            estimates.put(testName, estimate);
+            if (estimate >= 0) known[knownCount++] = estimate;
+        }
+        long fallback = median(known, knownCount);
+        estimates.replaceAll((testName, estimate) -> estimate >= 0 ? estimate : fallback);
+        return estimates;
+    }
+
+    /**
+     * @param values values, reordered
+     * @param count number of values to use from the start of values
+     * @return median of the values, 0 if there is none
+     */
+    public static long median(long[] values, int count) {
+        if (count == 0) return 0;
+        Arrays.sort(values, 0, count);
+        return values[count / 2];
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import java.time.Instant;
+
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * One execution of a test case in the history of the registry
+ */
+public class TestHistoryEntry {
+
+    private final String runName;
+    private final Instant startTime;
+    private final long durationMillis;
+    private final TestStatus status;
+
+    /**
+     * @param runName test run folder relative to the registry root
+     * @param startTime start time of the test case, null if unknown
+     * @param durationMillis duration of the test case in milliseconds
+     * @param status test status, null if the test case had no status
+     */
+    public TestHistoryEntry(String runName, Instant startTime, long durationMillis, TestStatus status) {
+        this.runName = runName;
+        this.startTime = startTime;
+        this.durationMillis = durationMillis;
+        this.status = status;
+    }
+
+    public String getRunName() {
+        return runName;
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public TestStatus getStatus() {
+        return status;
+    }
+}
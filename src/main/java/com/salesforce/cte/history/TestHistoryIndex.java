@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.salesforce.cte.admin.JsonReporter;
+import com.salesforce.cte.admin.TestResultMerger;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+
+/**
+ * Append-only index of test case executions of all test runs in a registry.
+ *
+ * The index file in the registry root holds three kinds of records: test names, test runs
+ * and results. Every result points back to the previous result of the same test, so the
+ * history of a test is read newest first by following the chain through the memory mapped
+ * file, without opening any result file. Only the newest result of every test is kept
+ * in memory together with the test and run names. These tables are saved to a tables file
+ * next to the index when it is closed, so opening the index reads the tables file and
+ * scans only the records added after it. Without a valid tables file the index is scanned
+ * from the start.
+ *
+ * Records are appended under an exclusive file lock and the committed length in the header
+ * is updated last, so JVMs of parallel forks can add their test runs to the same index and
+ * readers never see a partial record. Records past the committed length, left behind by
+ * a writer which died, are overwritten.
+ *
+ * The index is read through a single memory mapping, which Java limits to 2GB. A test run
+ * which would grow the index past 2GB is not added and fails with an IOException, the
+ * index stays readable. Move history.idx and its tables file away to start a new index.
+ */
+public class TestHistoryIndex implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    public static final String INDEX_FILE_NAME = "history.idx";
+    public static final String TABLES_FILE_NAME = "history.tables";
+
+    private static final byte[] MAGIC = {'T', 'A', 'H', 'I', 'D', 'X', 0, 1};
+    private static final int COMMITTED_LENGTH_OFFSET = 8;
+    // random id of the index file, a tables file of another index file is ignored
+    private static final int INDEX_ID_OFFSET = 16;
+    private static final int HEADER_SIZE = 32;
+    // largest index which fits in one memory mapping
+    private static final long MAX_INDEX_LENGTH = Integer.MAX_VALUE;
+    private static final int TABLES_MAGIC = 0x54414854;
+    private static final int TABLES_VERSION = 1;
+    private static final long NO_RECORD = -1;
+
+    private static final byte NAME_RECORD = 1;
+    private static final byte RUN_RECORD = 2;
+    private static final byte RESULT_RECORD = 3;
+    // type, name id, run id, previous result, start millis, duration millis, status
+    private static final int RESULT_RECORD_SIZE = 1 + 4 + 4 + 8 + 8 + 8 + 1;
+    // status codes are stored, never reorder, only append
+    private static final TestStatus[] STATUS_CODES = {null, TestStatus.PASSED, TestStatus.FAILED, TestStatus.SKIPPED};
+
+    // file locks are held per JVM, instances in one JVM take turns before locking the file
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    private final Path registryRoot;
+    private final FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long scannedLength = HEADER_SIZE;
+    private long indexId;
+    // index length covered by the tables file, loaded or saved
+    private long savedLength = HEADER_SIZE;
+
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> testNames = new ArrayList<>();
+    private final List<String> runNames = new ArrayList<>();
+    private final Map<String, Integer> runIds = new HashMap<>();
+    private long[] newestResults = new long[16];
+
+    private TestHistoryIndex(Path registryRoot, FileChannel channel) {
+        this.registryRoot = registryRoot;
+        this.channel = channel;
+    }
+
+    /**
+     * Open the index of a registry, an empty index is created when there is none
+     *
+     * @param registryRoot registry root folder
+     * @return opened index
+     * @throws IOException when fail to open the index or it is not a history index
+     */
+    public static TestHistoryIndex open(Path registryRoot) throws IOException {
+        registryRoot.toFile().mkdirs();
+        FileChannel channel = FileChannel.open(registryRoot.resolve(INDEX_FILE_NAME),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TestHistoryIndex index = new TestHistoryIndex(registryRoot, channel);
+        try {
+            index.initialize();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        return index;
+    }
+
+    private void initialize() throws IOException {
+        JVM_LOCK.lock();
+        try (FileLock lock = channel.lock()) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(MAGIC).putLong(HEADER_SIZE).putLong(newIndexId());
+                header.position(HEADER_SIZE);
+                header.flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            channel.read(magic, 0);
+            if (!Arrays.equals(MAGIC, magic.array()))
+                throw new IOException("Not a test history index: " + registryRoot.resolve(INDEX_FILE_NAME));
+            indexId = readLong(INDEX_ID_OFFSET);
+            if (indexId == 0) {
+                // index written before index ids
+                indexId = newIndexId();
+                ByteBuffer id = ByteBuffer.allocate(Long.BYTES);
+                id.putLong(indexId).flip();
+                channel.write(id, INDEX_ID_OFFSET);
+                channel.force(false);
+            }
+        } finally {
+            JVM_LOCK.unlock();
+        }
+        loadTables();
+        refresh();
+    }
+
+    private static long newIndexId() {
+        long id = 0;
+        while (id == 0)
+            id = ThreadLocalRandom.current().nextLong();
+        return id;
+    }
+
+    /**
+     * Continue from the tables saved by an earlier instance, so only records after them are scanned.
+     * A missing, unreadable or foreign tables file is ignored
+     */
+    private void loadTables() throws IOException {
+        Path tablesFile = registryRoot.resolve(TABLES_FILE_NAME);
+        if (!Files.isRegularFile(tablesFile)) return;
+        long committed = readLong(COMMITTED_LENGTH_OFFSET);
+        List<String> names = new ArrayList<>();
+        List<String> runs = new ArrayList<>();
+        long[] newest;
+        long length;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(tablesFile)))) {
+            if (input.readInt() != TABLES_MAGIC || input.readInt() != TABLES_VERSION)
+                throw new IOException("Unknown tables format");
+            if (input.readLong() != indexId) return;
+            length = input.readLong();
+            if (length < HEADER_SIZE || length > committed) return;
+            int nameCount = input.readInt();
+            newest = new long[Math.max(16, nameCount)];
+            for (int i = 0; i < nameCount; i++) {
+                names.add(input.readUTF());
+                newest[i] = input.readLong();
+                if (newest[i] >= length) throw new IOException("Result beyond the tables length");
+            }
+            int runCount = input.readInt();
+            for (int i = 0; i < runCount; i++)
+                runs.add(input.readUTF());
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to load test history tables {0}: {1}", new Object[] {tablesFile, ex.toString()});
+            return;
+        }
+        for (String name : names) {
+            nameIds.put(name, testNames.size());
+            testNames.add(name);
+        }
+        for (String run : runs) {
+            runIds.put(run, runNames.size());
+            runNames.add(run);
+        }
+        newestResults = newest;
+        scannedLength = length;
+        savedLength = length;
+    }
+
+    /**
+     * Save names, runs and newest results, written to a temp file and renamed
+     */
+    private void saveTables() throws IOException {
+        Path tablesFile = registryRoot.resolve(TABLES_FILE_NAME);
+        Path temp = Files.createTempFile(registryRoot, TABLES_FILE_NAME, ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+                output.writeInt(TABLES_MAGIC);
+                output.writeInt(TABLES_VERSION);
+                output.writeLong(indexId);
+                output.writeLong(scannedLength);
+                output.writeInt(testNames.size());
+                for (int i = 0; i < testNames.size(); i++) {
+                    output.writeUTF(testNames.get(i));
+                    output.writeLong(newestResults[i]);
+                }
+                output.writeInt(runNames.size());
+                for (String run : runNames)
+                    output.writeUTF(run);
+                output.flush();
+                file.getChannel().force(true);
+            }
+            try {
+                Files.move(temp, tablesFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, tablesFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        savedLength = scannedLength;
+    }
+
+    /**
+     * Read records added since the last refresh, such as by other JVMs
+     * @throws IOException when fail to read the index
+     */
+    public synchronized void refresh() throws IOException {
+        long committed = readLong(COMMITTED_LENGTH_OFFSET);
+        if (committed <= scannedLength && mapped != null) return;
+        if (committed > MAX_INDEX_LENGTH)
+            throw new IOException("Test history index is larger than 2GB: " + registryRoot.resolve(INDEX_FILE_NAME));
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, committed);
+        long offset = scannedLength;
+        while (offset < committed)
+            offset = scanRecord(offset);
+        scannedLength = committed;
+    }
+
+    private long readLong(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        channel.read(buffer, position);
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    private long scanRecord(long offset) {
+        int position = (int) offset;
+        byte type = mapped.get(position);
+        switch (type) {
+            case NAME_RECORD: {
+                String name = readString(position + 1);
+                nameIds.put(name, nameIds.size());
+                testNames.add(name);
+                setNewestResult(nameIds.size() - 1, NO_RECORD);
+                return offset + 1 + Integer.BYTES + utf8Length(position + 1);
+            }
+            case RUN_RECORD: {
+                String run = readString(position + 1);
+                runIds.put(run, runNames.size());
+                runNames.add(run);
+                return offset + 1 + Integer.BYTES + utf8Length(position + 1);
+            }
+            case RESULT_RECORD:
+                setNewestResult(mapped.getInt(position + 1), offset);
+                return offset + RESULT_RECORD_SIZE;
+            default:
+                throw new IllegalStateException("Corrupted test history index at " + offset);
+        }
+    }
+
+    private String readString(int position) {
+        byte[] bytes = new byte[mapped.getInt(position)];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = mapped.get(position + Integer.BYTES + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int utf8Length(int position) {
+        return mapped.getInt(position);
+    }
+
+    private void setNewestResult(int nameId, long offset) {
+        if (nameId >= newestResults.length)
+            newestResults = Arrays.copyOf(newestResults, Math.max(nameId + 1, newestResults.length * 2));
+        newestResults[nameId] = offset;
+    }
+
+    /**
+     * @param runName test run folder relative to the registry root
+     * @return true if the test run is in the index
+     */
+    public synchronized boolean isIndexed(String runName) {
+        return runIds.containsKey(runName);
+    }
+
+    /**
+     * @return names of all tests in the index
+     */
+    public synchronized Set<String> getTestNames() {
+        return Collections.unmodifiableSet(new HashSet<>(nameIds.keySet()));
+    }
+
+    /**
+     * @return number of test runs in the index
+     */
+    public synchronized int getRunCount() {
+        return runNames.size();
+    }
+
+    /**
+     * Get the history of a test, newest first in the order test runs were indexed
+     *
+     * @param testName test name
+     * @param limit maximum number of executions to return
+     * @return executions of the test, empty if the test is not in the index
+     */
+    public synchronized List<TestHistoryEntry> getHistory(String testName, int limit) {
+        List<TestHistoryEntry> history = new ArrayList<>();
+        Integer nameId = nameIds.get(testName);
+        if (nameId == null) return history;
+        long offset = newestResults[nameId];
+        while (offset != NO_RECORD && history.size() < limit) {
+            history.add(readResult((int) offset));
+            // previous result of the same test
+            offset = mapped.getLong((int) offset + 9);
+        }
+        return history;
+    }
+
+    /**
+     * Receives results read from the index
+     */
+    @FunctionalInterface
+    public interface ResultVisitor {
+        void visit(String testName, TestHistoryEntry entry);
+    }
+
+    /**
+     * Visit results in the order they were added, starting after a position returned by an earlier call,
+     * so a consumer of the index only reads what was added since
+     *
+     * @param fromPosition position returned by the previous call, 0 to visit all results
+     * @param visitor receives the results
+     * @return position to pass to the next call
+     */
+    public synchronized long visitResults(long fromPosition, ResultVisitor visitor) {
+        long offset = Math.max(fromPosition, HEADER_SIZE);
+        while (offset < scannedLength) {
+            int position = (int) offset;
+            byte type = mapped.get(position);
+            if (type == RESULT_RECORD) {
+                visitor.visit(testNames.get(mapped.getInt(position + 1)), readResult(position));
+                offset += RESULT_RECORD_SIZE;
+            } else {
+                offset += 1 + Integer.BYTES + utf8Length(position + 1);
+            }
+        }
+        return Math.max(offset, fromPosition);
+    }
+
+    /**
+     * @return id of the index file, an index which is deleted and built again gets a new id
+     */
+    public synchronized long getIndexId() {
+        return indexId;
+    }
+
+    /**
+     * @return position after the last result read from the index
+     */
+    public synchronized long getPosition() {
+        return scannedLength;
+    }
+
+    private TestHistoryEntry readResult(int position) {
+        int runId = mapped.getInt(position + 5);
+        long startMillis = mapped.getLong(position + 17);
+        long durationMillis = mapped.getLong(position + 25);
+        byte status = mapped.get(position + 33);
+        return new TestHistoryEntry(runNames.get(runId),
+                        startMillis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(startMillis),
+                        durationMillis, status < STATUS_CODES.length ? STATUS_CODES[status] : null);
+    }
+
+    /**
+     * Add the test cases of a test run, without configuration methods, a test run which is already in the index is skipped
+     *
+     * @param runName test run folder relative to the registry root
+     * @param testResult test result of the run
+     * @return true if the test run was added
+     * @throws IOException when fail to write the index
+     */
+    public synchronized boolean add(String runName, TestAdvisorResult testResult) throws IOException {
+        JVM_LOCK.lock();
+        try (FileLock lock = channel.lock()) {
+            // another JVM may have added names, runs or this very run
+            refresh();
+            if (runIds.containsKey(runName)) return false;
+            long committed = scannedLength;
+            List<ByteBuffer> records = new ArrayList<>();
+            Map<String, Integer> newNames = new HashMap<>();
+            Map<Integer, Long> newest = new HashMap<>();
+            long offset = committed;
+
+            offset += appendString(records, RUN_RECORD, runName);
+            int runId = runNames.size();
+            for (TestCaseExecution test : testResult.getTestCaseExecutionList()) {
+                // history is kept for tests, configuration methods run around them
+                if (test.isConfiguration()) continue;
+                String testName = test.getTestName() == null ? "" : test.getTestName();
+                Integer nameId = nameIds.get(testName);
+                if (nameId == null) nameId = newNames.get(testName);
+                if (nameId == null) {
+                    nameId = nameIds.size() + newNames.size();
+                    newNames.put(testName, nameId);
+                    offset += appendString(records, NAME_RECORD, testName);
+                }
+                Long previous = newest.get(nameId);
+                if (previous == null)
+                    previous = nameId < nameIds.size() ? newestResults[nameId] : NO_RECORD;
+                ByteBuffer result = ByteBuffer.allocate(RESULT_RECORD_SIZE);
+                result.put(RESULT_RECORD).putInt(nameId).putInt(runId).putLong(previous)
+                      .putLong(test.getStartTime() == null ? Long.MIN_VALUE : test.getStartTime().toEpochMilli())
+                      .putLong(durationMillis(test)).put(statusCode(test.getTestStatus()));
+                result.flip();
+                records.add(result);
+                newest.put(nameId, offset);
+                offset += RESULT_RECORD_SIZE;
+            }
+
+            if (offset > MAX_INDEX_LENGTH)
+                throw new IOException("Test history index would grow past 2GB, move " + registryRoot.resolve(INDEX_FILE_NAME)
+                                    + " and " + TABLES_FILE_NAME + " away to start a new index");
+            long position = committed;
+            for (ByteBuffer record : records) {
+                while (record.hasRemaining())
+                    position += channel.write(record, position);
+            }
+            channel.force(false);
+            // records are visible once the committed length covers them
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            header.putLong(offset).flip();
+            channel.write(header, COMMITTED_LENGTH_OFFSET);
+            channel.force(false);
+            refresh();
+            return true;
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    private static int appendString(List<ByteBuffer> records, byte type, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES + bytes.length);
+        record.put(type).putInt(bytes.length).put(bytes);
+        record.flip();
+        records.add(record);
+        return record.remaining();
+    }
+
+    private static long durationMillis(TestCaseExecution test) {
+        if (test.getStartTime() == null || test.getEndTime() == null) return 0;
+        return Math.max(0, Duration.between(test.getStartTime(), test.getEndTime()).toMillis());
+    }
+
+    private static byte statusCode(TestStatus status) {
+        for (byte i = 1; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i] == status) return i;
+        }
+        return 0;
+    }
+
+    /**
+     * Add all test runs of the registry which are not in the index yet,
+     * such as runs saved before the index was enabled
+     *
+     * @return number of test runs added
+     * @throws IOException when fail to list the registry or write the index
+     */
+    public int indexRegistry() throws IOException {
+        int added = 0;
+        for (Path resultFile : TestResultMerger.findResultFiles(Collections.singletonList(registryRoot))) {
+            String runName = toRunName(resultFile.getParent());
+            if (isIndexed(runName)) continue;
+            try {
+                if (add(runName, JsonReporter.readTestResult(resultFile.toFile())))
+                    added++;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Fail to index {0}: {1}", new Object[] {resultFile, ex.toString()});
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @param testRunRoot test run folder in the registry
+     * @return name of the test run in the index
+     */
+    public String toRunName(Path testRunRoot) {
+        Path root = registryRoot.toAbsolutePath().normalize();
+        Path run = testRunRoot.toAbsolutePath().normalize();
+        String name = run.startsWith(root) ? root.relativize(run).toString() : run.toString();
+        return name.replace('\\', '/');
+    }
+
+    /**
+     * Close the index, tables which cover records not in the tables file yet are saved
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (scannedLength > savedLength)
+                saveTables();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Fail to save test history tables: {0}", ex.toString());
+        } finally {
+            mapped = null;
+            channel.close();
+        }
+    }
+}
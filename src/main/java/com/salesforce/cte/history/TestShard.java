@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests planned to run on one CI node
+ */
+public class TestShard {
+
+    private final int shardNumber;
+    private final List<String> testNames = new ArrayList<>();
+    private long expectedMillis = 0;
+
+    /**
+     * @param shardNumber shard number, starting from 1
+     */
+    public TestShard(int shardNumber) {
+        this.shardNumber = shardNumber;
+    }
+
+    void add(String testName, long estimateMillis) {
+        testNames.add(testName);
+        expectedMillis += estimateMillis;
+    }
+
+    public int getShardNumber() {
+        return shardNumber;
+    }
+
+    /**
+     * @return names of the tests in the shard, longest first
+     */
+    public List<String> getTestNames() {
+        return Collections.unmodifiableList(testNames);
+    }
+
+    /**
+     * @return sum of the estimated durations of the tests in the shard
+     */
+    public long getExpectedMillis() {
+        return expectedMillis;
+    }
+}
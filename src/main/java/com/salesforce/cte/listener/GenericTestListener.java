@@ -12,8 +12,10 @@ import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.salesforce.cte.admin.FlightRecorder;
 import com.salesforce.cte.admin.TestAdvisorAdministrator;
-import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.admin.TestAdvisorMetrics;
+import com.salesforce.cte.admin.TestCaseContext;
 import com.salesforce.cte.common.TestEvent;
 import com.salesforce.cte.common.TestEventType;
 import com.salesforce.cte.common.TestStatus;
@@ -28,9 +30,12 @@ public class GenericTestListener {
 
     // Singleton TestAdvisorAdministrator
 	private TestAdvisorAdministrator administrator;
+    // time spent in test case callbacks, test run callbacks are measured as save duration
+    private TestAdvisorMetrics metrics;
 
     public GenericTestListener(){
         administrator = TestAdvisorAdministrator.getInstance();
+        metrics = administrator.getMetrics();
     }
 
     /**
@@ -55,27 +60,39 @@ public class GenericTestListener {
     /**
      * Callback when a test case starts
      * @param testName test case name
+     * @return context of the new test case, pass it to other threads to report events from there
      */
-    public void onTestCaseStart(String testName){
+    public TestCaseContext onTestCaseStart(String testName){
         // Initialize TestCaseExecution object
-        administrator.createTestCaseExecution(testName);
+        long start = metrics.startCallback();
+        TestCaseContext context = administrator.createTestCaseContext(testName);
+        FlightRecorder.testCaseStarted(context);
+        metrics.endCallback(start);
+        return context;
     }
 
     /**
      * Callback when a test case ends
      */
     public void onTestCaseEnd(){
-        TestCaseExecution testCaseExecution = administrator.getTestCaseExecution();
-		testCaseExecution.saveEndTime();
+        long start = metrics.startCallback();
+        TestCaseContext context = administrator.getTestCaseContext();
+        administrator.endTestCaseExecution();
+        FlightRecorder.testCaseEnded(context);
+        metrics.endCallback(start);
     }
 
     /**
      * Callback when a test case configuration method starts, such as test setup/teardown
      * @param testName test case name
+     * @return context of the new test case
      */
-    public void onTestConfigurationStart(String testName){
-        TestCaseExecution testCaseExecution = administrator.createTestCaseExecution(testName);
-        testCaseExecution.setConfiguration(true);
+    public TestCaseContext onTestConfigurationStart(String testName){
+        long start = metrics.startCallback();
+        TestCaseContext context = administrator.createTestCaseContext(testName, true);
+        FlightRecorder.testCaseStarted(context);
+        metrics.endCallback(start);
+        return context;
     }
 
     /**
@@ -93,8 +110,9 @@ public class GenericTestListener {
      * @param level event level
      */
     public void onTestCaseEvent(String eventContent, Level level){
-        TestCaseExecution testCaseExecution = administrator.getTestCaseExecution();
-        testCaseExecution.appendEvent(new TestEvent(TestEventType.AUTOMATION, eventContent, level.toString()));
+        long start = metrics.startCallback();
+        administrator.appendTestCaseEvent(new TestEvent(TestEventType.AUTOMATION, eventContent, level.toString()));
+        metrics.endCallback(start);
     }
 
     /**
@@ -102,8 +120,9 @@ public class GenericTestListener {
      * @param ex exception
      */
     public void onTestCaseException(Throwable ex){
-        TestCaseExecution testCaseExecution = administrator.getTestCaseExecution();
-        testCaseExecution.appendEvent(new TestEvent(TestEventType.TEST_EXCEPTION, ex.toString(), Level.WARNING.toString()));
+        long start = metrics.startCallback();
+        administrator.appendTestCaseEvent(new TestEvent(TestEventType.TEST_EXCEPTION, ex.toString(), Level.WARNING.toString()));
+        metrics.endCallback(start);
     }
 
     /**
@@ -111,8 +130,9 @@ public class GenericTestListener {
      * @param status test status
      */
     public void onTestCaseStatus(TestStatus status){
-        TestCaseExecution testCaseExecution = administrator.getTestCaseExecution();
-		testCaseExecution.setTestStatus(status);
+        long start = metrics.startCallback();
+        administrator.setTestCaseStatus(status);
+        metrics.endCallback(start);
     }
 
 }
@@ -7,17 +7,22 @@
 
 package com.salesforce.cte.listener.junit;
 
+import com.salesforce.cte.admin.TestAdvisorConfiguration;
 import com.salesforce.cte.common.TestStatus;
 import com.salesforce.cte.listener.GenericTestListener;
 
 import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.TestExecutionResult.Status;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.launcher.TestExecutionListener;
 import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
 
 public class TestListenerJUnit5 implements TestExecutionListener {
     GenericTestListener genericListener = new GenericTestListener();
+    private final boolean methodNames = TestAdvisorConfiguration.getJUnit5MethodNamesEnabled();
  
     /**
      * {@inheritDoc}
@@ -49,7 +54,27 @@ public class TestListenerJUnit5 implements TestExecutionListener {
      */
     @Override
     public void executionStarted(TestIdentifier testIdentifier) {
-        genericListener.onTestCaseStart(testIdentifier.getDisplayName());
+        genericListener.onTestCaseStart(getTestName(testIdentifier, methodNames));
+    }
+
+    /**
+     * Tests are named by display name. With method names on, test methods are named class.method
+     * like in the TestNG and JUnit4 listeners, so their history can be used to shard tests.
+     * Invocations of a parameterized or repeated test share their method and are told apart
+     * by their invocation index, as class.method[index]
+     */
+    static String getTestName(TestIdentifier testIdentifier, boolean methodNames) {
+        TestSource source = testIdentifier.getSource().orElse(null);
+        if (!methodNames || !(source instanceof MethodSource))
+            return testIdentifier.getDisplayName();
+        MethodSource method = (MethodSource) source;
+        StringBuilder name = new StringBuilder(method.getClassName()).append('.').append(method.getMethodName());
+        // invocation segments of the unique id are numbered #1, #2 and so on
+        for (UniqueId.Segment segment : UniqueId.parse(testIdentifier.getUniqueId()).getSegments()) {
+            if (segment.getValue().startsWith("#"))
+                name.append('[').append(segment.getValue().substring(1)).append(']');
+        }
+        return name.toString();
     }
  
     /**
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.listener.testng;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.salesforce.cte.admin.TestAdvisorConfiguration;
+import com.salesforce.cte.history.TestDurationEstimator;
+import com.salesforce.cte.history.TestHistoryIndex;
+
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+
+/**
+ * Orders test methods longest first, so a long test does not start last and keep one
+ * thread busy while the others are idle at the end of a parallel run.
+ *
+ * The duration of a test is estimated as the average of its recent passed or failed
+ * executions in the history index of the registry, see testadvisor.history.index.
+ * Tests without history are estimated at the median of the tests with history.
+ * Methods with the same estimate keep their order, and the order is left unchanged
+ * when the registry has no history.
+ *
+ * Register it next to TestListener, such as with @Listeners or in testng.xml.
+ */
+public class DurationOrderInterceptor implements IMethodInterceptor {
+    private static final Logger LOGGER = Logger.getLogger( Logger.GLOBAL_LOGGER_NAME );
+
+    private final Path registryRoot;
+    private final int historyDepth;
+
+    public DurationOrderInterceptor() {
+        this(TestAdvisorConfiguration.getRegistryRoot(), TestAdvisorConfiguration.getHistoryDepth());
+    }
+
+    /**
+     * @param registryRoot registry root holding the history index
+     * @param historyDepth number of recent executions a duration is estimated from
+     */
+    public DurationOrderInterceptor(Path registryRoot, int historyDepth) {
+        this.registryRoot = registryRoot;
+        this.historyDepth = historyDepth;
+    }
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (methods.size() < 2 || !Files.isRegularFile(registryRoot.resolve(TestHistoryIndex.INDEX_FILE_NAME)))
+            return methods;
+
+        Map<IMethodInstance, Long> estimates = new IdentityHashMap<>();
+        long[] known = new long[methods.size()];
+        try (TestHistoryIndex index = TestHistoryIndex.open(registryRoot)) {
+            TestDurationEstimator estimator = new TestDurationEstimator(index, historyDepth);
+            for (IMethodInstance method : methods) {
+                long estimate = estimator.estimateMillis(getTestName(method.getMethod()));
+                if (estimate < 0) continue;
+                known[estimates.size()] = estimate;
+                estimates.put(method, estimate);
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Fail to read test history, test methods are not ordered: {0}", ex.toString());
+            return methods;
+        }
+        if (estimates.isEmpty()) return methods;
+
+        long fallback = TestDurationEstimator.median(known, estimates.size());
+        List<IMethodInstance> ordered = new ArrayList<>(methods);
+        // stable, methods with the same estimate keep their order
+        ordered.sort(Comparator.comparingLong((IMethodInstance method) ->
+                        estimates.getOrDefault(method, fallback) * Math.max(1, method.getMethod().getInvocationCount()))
+                        .reversed());
+        LOGGER.log(Level.INFO, "Ordered {0} test methods longest first, {1} without history",
+                    new Object[] {methods.size(), methods.size() - estimates.size()});
+        return ordered;
+    }
+
+    /**
+     * @param method test method
+     * @return test name as recorded by TestListener
+     */
+    static String getTestName(ITestNGMethod method) {
+        return method.getRealClass().getName() + "." + method.getMethodName();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder backed recorder, loaded by {@link FlightRecorder} only when jdk.jfr is present
+ */
+final class JfrRecorder implements FlightRecorder.Recorder {
+    private static final String CATEGORY = "TestAdvisor";
+    private static final String NAME_PREFIX = "com.salesforce.cte.";
+
+    @Override
+    public Object begin(String eventName) {
+        Event event;
+        switch (eventName) {
+            case FlightRecorder.TEST_CASE:
+                event = new TestCaseEvent();
+                break;
+            case FlightRecorder.SAVE:
+                event = new SaveEvent();
+                break;
+            case FlightRecorder.SCREENSHOT_MOVE:
+                event = new ScreenshotMoveEvent();
+                break;
+            case FlightRecorder.FLUSH:
+                event = new FlushEvent();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event " + eventName);
+        }
+        // no handle when nobody records the event, end is skipped
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endTestCase(Object handle, String testName, String status, String traceId, boolean configuration) {
+        TestCaseEvent event = (TestCaseEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.testName = testName;
+        event.status = status;
+        event.traceId = traceId;
+        event.configuration = configuration;
+        event.commit();
+    }
+
+    @Override
+    public void endSave(Object handle, String resultFile, int testCount) {
+        SaveEvent event = (SaveEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.resultFile = resultFile;
+        event.testCount = testCount;
+        event.commit();
+    }
+
+    @Override
+    public void endScreenshotMove(Object handle, String source, String target) {
+        ScreenshotMoveEvent event = (ScreenshotMoveEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.source = source;
+        event.target = target;
+        event.commit();
+    }
+
+    @Override
+    public void endFlush(Object handle, String kind, int count) {
+        FlushEvent event = (FlushEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.kind = kind;
+        event.count = count;
+        event.commit();
+    }
+
+    @Name(NAME_PREFIX + FlightRecorder.TEST_CASE)
+    @Label("Test Case")
+    @Category(CATEGORY)
+    @Description("Execution of a test case or test configuration method")
+    static final class TestCaseEvent extends Event {
+        @Label("Test Name")
+        String testName;
+        @Label("Status")
+        String status;
+        @Label("Trace Id")
+        String traceId;
+        @Label("Configuration")
+        boolean configuration;
+    }
+
+    @Name(NAME_PREFIX + FlightRecorder.SAVE)
+    @Label("Save Test Result")
+    @Category(CATEGORY)
+    @Description("Test result written to the TestAdvisor registry")
+    static final class SaveEvent extends Event {
+        @Label("Result File")
+        String resultFile;
+        @Label("Test Count")
+        int testCount;
+    }
+
+    @Name(NAME_PREFIX + FlightRecorder.SCREENSHOT_MOVE)
+    @Label("Move Screenshot")
+    @Category(CATEGORY)
+    @Description("Screenshot file moved into the test run folder")
+    static final class ScreenshotMoveEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Target")
+        String target;
+    }
+
+    @Name(NAME_PREFIX + FlightRecorder.FLUSH)
+    @Label("Flush")
+    @Category(CATEGORY)
+    @Description("Journal records or completed test cases written to disk")
+    static final class FlushEvent extends Event {
+        @Label("Kind")
+        String kind;
+        @Label("Count")
+        int count;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AsyncEventPipelineTest {
+
+	@Test
+	public void testBackpressurePolicyFromString() {
+		assertEquals(AsyncEventPipeline.BackpressurePolicy.DROP_OLDEST,
+				AsyncEventPipeline.BackpressurePolicy.fromString("drop-oldest", AsyncEventPipeline.BackpressurePolicy.BLOCK));
+		assertEquals(AsyncEventPipeline.BackpressurePolicy.BLOCK,
+				AsyncEventPipeline.BackpressurePolicy.fromString("unknown", AsyncEventPipeline.BackpressurePolicy.BLOCK));
+		assertEquals(AsyncEventPipeline.BackpressurePolicy.DROP_NEWEST,
+				AsyncEventPipeline.BackpressurePolicy.fromString(null, AsyncEventPipeline.BackpressurePolicy.DROP_NEWEST));
+	}
+
+	@Test
+	public void testOrderAndDrain() {
+		List<Integer> applied = new ArrayList<>();
+		try (AsyncEventPipeline pipeline = new AsyncEventPipeline(16, AsyncEventPipeline.BackpressurePolicy.BLOCK)) {
+			for (int i = 0; i < 1000; i++) {
+				int value = i;
+				pipeline.submit(() -> applied.add(value), true);
+			}
+			pipeline.drain();
+			assertEquals(1000, applied.size());
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(Integer.valueOf(i), applied.get(i));
+			}
+			assertEquals(0, pipeline.getDroppedEventCount());
+			assertEquals(0, pipeline.getQueueDepth());
+		}
+	}
+
+	@Test
+	public void testIdleConsumerParks() throws InterruptedException {
+		try (AsyncEventPipeline pipeline = new AsyncEventPipeline(16, AsyncEventPipeline.BackpressurePolicy.BLOCK)) {
+			pipeline.submit(() -> {}, false);
+			pipeline.drain();
+			// parked until the next task, not waking up on a timer
+			long deadline = System.currentTimeMillis() + 5000;
+			while (pipeline.getConsumerState() != Thread.State.WAITING && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+			assertEquals(Thread.State.WAITING, pipeline.getConsumerState());
+
+			CountDownLatch applied = new CountDownLatch(1);
+			pipeline.submit(applied::countDown, false);
+			assertTrue(applied.await(5, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void testDropNewest() {
+		List<Integer> applied = new ArrayList<>();
+		// consumer thread not started, ring buffer fills up
+		try (AsyncEventPipeline pipeline = new AsyncEventPipeline(4, AsyncEventPipeline.BackpressurePolicy.DROP_NEWEST, false)) {
+			for (int i = 0; i < 10; i++) {
+				int value = i;
+				pipeline.submit(() -> applied.add(value), true);
+			}
+			assertEquals(4, pipeline.getQueueDepth());
+			pipeline.drain();
+			assertEquals(6, pipeline.getDroppedNewestCount());
+			assertEquals(6, pipeline.getDroppedEventCount());
+			assertEquals(4, applied.size());
+			assertEquals(Integer.valueOf(0), applied.get(0));
+		}
+	}
+
+	@Test
+	public void testDropOldest() {
+		List<Integer> applied = new ArrayList<>();
+		// consumer thread not started, ring buffer fills up
+		try (AsyncEventPipeline pipeline = new AsyncEventPipeline(4, AsyncEventPipeline.BackpressurePolicy.DROP_OLDEST, false)) {
+			// tasks which must not be dropped are applied in order instead
+			pipeline.submit(() -> applied.add(-1), false);
+			for (int i = 0; i < 10; i++) {
+				int value = i;
+				pipeline.submit(() -> applied.add(value), true);
+			}
+			assertEquals(Integer.valueOf(-1), applied.get(0));
+			pipeline.drain();
+			assertEquals(6, pipeline.getDroppedOldestCount());
+			assertEquals(5, applied.size());
+			assertEquals(Integer.valueOf(6), applied.get(1));
+			assertEquals(Integer.valueOf(9), applied.get(4));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class BoundedRingBufferTest {
+
+	@Test
+	public void testCapacity() {
+		assertEquals(1, new BoundedRingBuffer<Integer>(1).capacity());
+		assertEquals(8, new BoundedRingBuffer<Integer>(5).capacity());
+		assertEquals(1024, new BoundedRingBuffer<Integer>(1024).capacity());
+	}
+
+	@Test
+	public void testOfferPoll() {
+		BoundedRingBuffer<Integer> ringBuffer = new BoundedRingBuffer<>(4);
+		assertNull(ringBuffer.poll());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ringBuffer.offer(i));
+		}
+		assertFalse(ringBuffer.offer(4));
+		assertEquals(4, ringBuffer.size());
+		assertEquals(Integer.valueOf(0), ringBuffer.poll());
+		assertTrue(ringBuffer.offer(4));
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(Integer.valueOf(i), ringBuffer.poll());
+		}
+		assertNull(ringBuffer.poll());
+		assertEquals(5, ringBuffer.getOfferedCount());
+	}
+
+	@Test
+	public void testMultipleProducers() throws InterruptedException {
+		BoundedRingBuffer<Long> ringBuffer = new BoundedRingBuffer<>(64);
+		int threadCount = 8;
+		int perThread = 10000;
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			threads.add(new Thread(() -> {
+				for (long value = 1; value <= perThread; value++) {
+					while (!ringBuffer.offer(value)) {
+						Thread.yield();
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+
+		AtomicLong sum = new AtomicLong();
+		long count = 0;
+		while (count < (long) threadCount * perThread) {
+			Long value = ringBuffer.poll();
+			if (value == null) continue;
+			sum.addAndGet(value);
+			count++;
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals((long) threadCount * perThread * (perThread + 1) / 2, sum.get());
+		assertNull(ringBuffer.poll());
+	}
+}
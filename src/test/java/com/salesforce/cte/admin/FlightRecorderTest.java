@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void testEvents() throws IOException {
+        assertTrue(FlightRecorder.isAvailable());
+        Path recordingFile = Files.createTempFile("testadvisor", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.salesforce.cte.TestCase");
+            recording.enable("com.salesforce.cte.Save");
+            recording.disable("com.salesforce.cte.Flush");
+            recording.start();
+
+            TestCaseExecution test = new TestCaseExecution();
+            test.setTestName("testLogin");
+            test.setTestStatus(TestStatus.PASSED);
+            String traceId = test.generateTraceId();
+            TestCaseContext context = new TestCaseContext(null, test);
+            FlightRecorder.testCaseStarted(context);
+            FlightRecorder.testCaseEnded(context);
+            // a test case is recorded once
+            FlightRecorder.testCaseEnded(context);
+            FlightRecorder.endSave(FlightRecorder.begin(FlightRecorder.SAVE), new File("test-result.json"), 1);
+            // not enabled in the recording
+            assertEquals(null, FlightRecorder.begin(FlightRecorder.FLUSH));
+
+            recording.stop();
+            recording.dump(recordingFile);
+
+            List<RecordedEvent> testCases = new ArrayList<>();
+            List<RecordedEvent> saves = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+                if (event.getEventType().getName().equals("com.salesforce.cte.TestCase"))
+                    testCases.add(event);
+                else if (event.getEventType().getName().equals("com.salesforce.cte.Save"))
+                    saves.add(event);
+            }
+            assertEquals(1, testCases.size());
+            assertEquals("testLogin", testCases.get(0).getString("testName"));
+            assertEquals("PASSED", testCases.get(0).getString("status"));
+            assertEquals(traceId, testCases.get(0).getString("traceId"));
+            assertEquals(1, saves.size());
+            assertEquals(Paths.get("test-result.json").toString(), saves.get(0).getString("resultFile"));
+            assertEquals(1, saves.get(0).getInt("testCount"));
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    @Test
+    public void testNotRecording() {
+        TestCaseContext context = new TestCaseContext(null, new TestCaseExecution());
+        FlightRecorder.testCaseStarted(context);
+        assertEquals(null, context.takeFlightRecording());
+        FlightRecorder.testCaseEnded(context);
+        FlightRecorder.endFlush(null, "journal", 1);
+    }
+}
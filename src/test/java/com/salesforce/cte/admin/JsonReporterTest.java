@@ -13,10 +13,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.salesforce.cte.common.TestAdvisorResult;
 import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestCaseSummary;
 import com.salesforce.cte.common.TestEvent;
 import com.salesforce.cte.common.TestEventType;
 import com.salesforce.cte.common.TestStatus;
@@ -116,4 +120,192 @@ public class JsonReporterTest {
 		assertEquals("test-result.json", outputFile.getName());
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Tests to make sure that a streamed result file matches the one written by saveToRegistry()
+	 * @throws IOException if an I/O error occurs or if the temporary-file directory doesn't exist
+	 */
+	@Test
+	public void testResultStream() throws IOException {
+		Instant now = Instant.now();
+		TestAdvisorResult testResult = new TestAdvisorResult();
+		testResult.setVersion("1.0.0-test");
+		testResult.setBuildStartTime(now);
+
+		Path streamRoot = Files.createTempDirectory("").resolve("TestRun-stream");
+		streamRoot.toFile().mkdirs();
+		JsonReporter streamReporter = new JsonReporter(streamRoot);
+		streamReporter.openResultStream();
+		assertTrue(streamReporter.isResultStreamOpen());
+
+		for (int i = 0; i < 3; i++) {
+			TestCaseExecution testCaseExecution = new TestCaseExecution();
+			testCaseExecution.setTestName("TestCase" + i);
+			testCaseExecution.setTestStatus(i == 1 ? TestStatus.FAILED : TestStatus.PASSED);
+			testCaseExecution.appendEvent(new TestEvent(TestEventType.AUTOMATION, "test content " + i, "INFO"));
+			testCaseExecution.saveEndTime();
+			streamReporter.appendToResultStream(testCaseExecution);
+			testResult.getTestCaseExecutionList().add(testCaseExecution);
+		}
+		testResult.setBuildEndTime(now.plusSeconds(5));
+		File streamFile = streamReporter.closeResultStream(testResult);
+		assertTrue(!streamReporter.isResultStreamOpen());
+
+		File outputFile = jsonReporter.saveToRegistry(testResult);
+
+		assertEquals("test-result.json", streamFile.getName());
+		assertEquals(new String(Files.readAllBytes(outputFile.toPath())), new String(Files.readAllBytes(streamFile.toPath())));
+		ObjectMapper objectMapper = new ObjectMapper();
+		assertEquals(3, objectMapper.readTree(streamFile).get("testCaseExecutionList").size());
+	}
+
+	/**
+	 * Tests to make sure that every result format is read back with the same content,
+	 * and that a streamed result file matches the one written at once
+	 * @throws IOException if an I/O error occurs or if the temporary-file directory doesn't exist
+	 */
+	@Test
+	public void testResultFormats() throws IOException {
+		Instant now = Instant.now();
+		TestAdvisorResult testResult = new TestAdvisorResult();
+		testResult.setVersion("1.0.0-test");
+		testResult.setBuildStartTime(now);
+		testResult.setBuildEndTime(now.plusSeconds(5));
+		for (int i = 0; i < 3; i++) {
+			TestCaseExecution testCaseExecution = new TestCaseExecution();
+			testCaseExecution.setTestName("TestCase" + i);
+			testCaseExecution.appendEvent(new TestEvent(TestEventType.AUTOMATION, "test content " + i, "INFO"));
+			testResult.getTestCaseExecutionList().add(testCaseExecution);
+		}
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+		String expected = objectMapper.writeValueAsString(testResult);
+
+		for (JsonReporter.ResultFormat format : JsonReporter.ResultFormat.values()) {
+			Path formatRoot = Files.createTempDirectory("").resolve("TestRun-" + format);
+			formatRoot.toFile().mkdirs();
+			File outputFile = new JsonReporter(formatRoot, format).writeTestResult(testResult);
+			assertEquals(format.getFileName(), outputFile.getName());
+			assertEquals(format.toString(), expected, objectMapper.writeValueAsString(JsonReporter.readTestResult(outputFile)));
+
+			Path streamRoot = Files.createTempDirectory("").resolve("TestRun-stream-" + format);
+			streamRoot.toFile().mkdirs();
+			JsonReporter streamReporter = new JsonReporter(streamRoot, format);
+			streamReporter.openResultStream();
+			for (TestCaseExecution testCaseExecution : testResult.getTestCaseExecutionList())
+				streamReporter.appendToResultStream(testCaseExecution);
+			File streamFile = streamReporter.closeResultStream(testResult);
+			assertEquals(format.toString(), expected, objectMapper.writeValueAsString(JsonReporter.readTestResult(streamFile)));
+			// a streamed CBOR array has indefinite length and streamed Smile has no shared names,
+			// JSON formats are byte identical
+			if (format != JsonReporter.ResultFormat.CBOR && format != JsonReporter.ResultFormat.SMILE)
+				assertArrayEquals(format.toString(), Files.readAllBytes(outputFile.toPath()), Files.readAllBytes(streamFile.toPath()));
+		}
+		assertEquals(JsonReporter.ResultFormat.SMILE, JsonReporter.ResultFormat.fromString("Smile", null));
+		assertEquals(JsonReporter.ResultFormat.JSON_PRETTY, JsonReporter.ResultFormat.fromString("json-pretty", null));
+		assertEquals(JsonReporter.ResultFormat.JSON, JsonReporter.ResultFormat.fromString("xml", JsonReporter.ResultFormat.JSON));
+	}
+
+	/**
+	 * Tests to make sure that compressed result files are named after the compression
+	 * and read back transparently, whether written at once or streamed
+	 * @throws IOException if an I/O error occurs or if the temporary-file directory doesn't exist
+	 */
+	@Test
+	public void testResultCompression() throws IOException {
+		TestAdvisorResult testResult = new TestAdvisorResult();
+		testResult.setVersion("1.0.0-test");
+		testResult.setBuildStartTime(Instant.now());
+		testResult.setBuildEndTime(Instant.now());
+		for (int i = 0; i < 100; i++) {
+			TestCaseExecution testCaseExecution = new TestCaseExecution();
+			testCaseExecution.setTestName("TestCase" + i);
+			testCaseExecution.appendEvent(new TestEvent(TestEventType.AUTOMATION, "test content", "INFO"));
+			testResult.getTestCaseExecutionList().add(testCaseExecution);
+		}
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+		String expected = objectMapper.writeValueAsString(testResult);
+		long uncompressedSize = new JsonReporter(root, JsonReporter.ResultFormat.JSON_PRETTY, JsonReporter.Compression.NONE)
+									.writeTestResult(testResult).length();
+
+		for (JsonReporter.ResultFormat format : new JsonReporter.ResultFormat[] {JsonReporter.ResultFormat.JSON_PRETTY, JsonReporter.ResultFormat.SMILE}) {
+			for (JsonReporter.Compression compression : new JsonReporter.Compression[] {JsonReporter.Compression.GZIP, JsonReporter.Compression.DEFLATE}) {
+				Path compressedRoot = Files.createTempDirectory("").resolve("TestRun-" + format + "-" + compression);
+				compressedRoot.toFile().mkdirs();
+				JsonReporter reporter = new JsonReporter(compressedRoot, format, compression);
+				File outputFile = reporter.writeTestResult(testResult);
+				assertEquals(format.getFileName() + compression.getExtension(), outputFile.getName());
+				assertTrue(outputFile.length() < uncompressedSize / 4);
+				assertEquals(expected, objectMapper.writeValueAsString(JsonReporter.readTestResult(outputFile)));
+
+				Files.delete(outputFile.toPath());
+				reporter.openResultStream();
+				for (TestCaseExecution testCaseExecution : testResult.getTestCaseExecutionList())
+					reporter.appendToResultStream(testCaseExecution);
+				File streamFile = reporter.closeResultStream(testResult);
+				assertEquals(expected, objectMapper.writeValueAsString(JsonReporter.readTestResult(streamFile)));
+			}
+		}
+		assertEquals(JsonReporter.Compression.GZIP, JsonReporter.Compression.fromString("gzip", null));
+		assertEquals(".gz", JsonReporter.Compression.GZIP.getExtension());
+		assertEquals(JsonReporter.Compression.NONE, JsonReporter.Compression.fromString("zip", JsonReporter.Compression.NONE));
+	}
+
+	/**
+	 * Tests to make sure that a streamed test case is read back from its summary
+	 * while the result file is open and after it is closed
+	 * @throws Exception if an I/O error occurs or if the temporary-file directory doesn't exist
+	 */
+	@Test
+	public void testTestCaseSummary() throws Exception {
+		TestAdvisorResult testResult = new TestAdvisorResult();
+		testResult.setBuildStartTime(Instant.now());
+		testResult.setBuildEndTime(Instant.now());
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+		for (JsonReporter.ResultFormat format : JsonReporter.ResultFormat.values()) {
+			for (JsonReporter.Compression compression : JsonReporter.Compression.values()) {
+				Path streamRoot = Files.createTempDirectory("").resolve("TestRun-summary-" + format + "-" + compression);
+				streamRoot.toFile().mkdirs();
+				JsonReporter reporter = new JsonReporter(streamRoot, format, compression);
+				reporter.openResultStream();
+				List<TestCaseExecution> tests = new ArrayList<>();
+				List<TestCaseSummary> summaries = new ArrayList<>();
+				for (int i = 0; i < 5; i++) {
+					TestCaseExecution testCaseExecution = new TestCaseExecution();
+					testCaseExecution.setTestName("TestCase" + i);
+					testCaseExecution.setTestStatus(i == 3 ? TestStatus.FAILED : TestStatus.PASSED);
+					testCaseExecution.setBrowser("chrome");
+					testCaseExecution.setBrowserVersion("100." + i);
+					testCaseExecution.generateTraceId();
+					for (int j = 0; j < 3; j++)
+						testCaseExecution.appendEvent(new TestEvent(TestEventType.AUTOMATION, "test content " + i + "." + j, "INFO"));
+					tests.add(testCaseExecution);
+					summaries.add(reporter.appendToResultStream(testCaseExecution).get());
+				}
+
+				String label = format + " " + compression;
+				TestCaseSummary summary = summaries.get(3);
+				assertEquals(label, "TestCase3", summary.getTestName());
+				assertEquals(label, TestStatus.FAILED, summary.getTestStatus());
+				assertEquals(label, tests.get(3).getEndTime(), summary.getEndTime());
+				assertEquals(label, "100.3", summary.getBrowserVersion());
+				assertEquals(label, tests.get(3).getTraceId(), summary.getTraceId());
+				assertEquals(label, tests.get(3).getThreadId(), summary.getThreadId());
+				assertTrue(label, summary.getEventList().isEmpty());
+				// read back while the result file is still open, also before an earlier test case
+				assertEquals(label, objectMapper.writeValueAsString(tests.get(3)), objectMapper.writeValueAsString(summary.load()));
+				assertEquals(label, objectMapper.writeValueAsString(tests.get(4)), objectMapper.writeValueAsString(summaries.get(4).load()));
+				assertEquals(label, objectMapper.writeValueAsString(tests.get(1)), objectMapper.writeValueAsString(summaries.get(1).load()));
+
+				reporter.closeResultStream(testResult);
+				for (int i = 0; i < 5; i++)
+					assertEquals(label, objectMapper.writeValueAsString(tests.get(i)), objectMapper.writeValueAsString(summaries.get(i).load()));
+				List<TestCaseSummary> reversed = new ArrayList<>(summaries);
+				Collections.reverse(reversed);
+				List<TestCaseExecution> loaded = reporter.loadTestCases(reversed);
+				for (int i = 0; i < 5; i++)
+					assertEquals(label, objectMapper.writeValueAsString(tests.get(4 - i)), objectMapper.writeValueAsString(loaded.get(i)));
+			}
+		}
+	}
+
+}
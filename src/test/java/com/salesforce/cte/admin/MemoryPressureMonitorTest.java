@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class MemoryPressureMonitorTest {
+
+    @Test
+    public void testThresholds() {
+        MemoryPoolMXBean oldGen = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.isUsageThresholdSupported() && pool.getUsage().getMax() > 0
+                    && pool.getType() == MemoryType.HEAP)
+                oldGen = pool;
+        }
+        long previous = oldGen == null ? 0 : oldGen.getUsageThreshold();
+
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(80, info -> {});
+        try {
+            if (oldGen != null) {
+                assertTrue(monitor.getPoolNames().contains(oldGen.getName()));
+                assertEquals(oldGen.getUsage().getMax() / 100 * 80, oldGen.getUsageThreshold());
+            }
+        } finally {
+            monitor.close();
+        }
+        assertTrue(monitor.getPoolNames().isEmpty());
+        if (oldGen != null)
+            assertEquals(previous, oldGen.getUsageThreshold());
+    }
+
+    @Test
+    public void testPressureCoalesced() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch handling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(90, info -> {
+            calls.incrementAndGet();
+            handling.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            MemoryNotificationInfo info = new MemoryNotificationInfo("Old Gen", new MemoryUsage(0, 95, 100, 100), 1);
+            monitor.onPressure(info);
+            assertTrue(handling.await(10, TimeUnit.SECONDS));
+            // arrives while the first one is handled
+            monitor.onPressure(info);
+            release.countDown();
+            for (int i = 0; i < 100 && monitor.getPressureCount() < 1; i++)
+                Thread.sleep(10);
+        } finally {
+            monitor.close();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, monitor.getPressureCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreshold() {
+        new MemoryPressureMonitor(100, info -> {});
+    }
+
+    @Test
+    public void testHandlerFailure() throws InterruptedException {
+        CountDownLatch called = new CountDownLatch(2);
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(90, info -> {
+            called.countDown();
+            throw new IllegalStateException("test");
+        });
+        try {
+            MemoryNotificationInfo info = new MemoryNotificationInfo("Old Gen", new MemoryUsage(0, 95, 100, 100), 1);
+            monitor.onPressure(info);
+            // a failed handler doesn't stop later pressure from being handled
+            for (int i = 0; i < 100 && called.getCount() == 2; i++)
+                Thread.sleep(10);
+            for (int i = 0; i < 100 && called.getCount() == 1; i++) {
+                monitor.onPressure(info);
+                Thread.sleep(10);
+            }
+            assertFalse(called.getCount() > 0);
+        } finally {
+            monitor.close();
+        }
+    }
+}
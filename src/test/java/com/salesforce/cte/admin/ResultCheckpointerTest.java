@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ResultCheckpointerTest will test checkpoints of completed test cases
+ */
+public class ResultCheckpointerTest {
+
+    private Path root;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        root = Files.createTempDirectory("").resolve("TestRun-20220101-000000");
+        root.toFile().mkdirs();
+        root.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testIncrementalCheckpoints() throws IOException {
+        Instant start = Instant.now();
+        try (ResultCheckpointer checkpointer = new ResultCheckpointer(root, 0)) {
+            checkpointer.recordTestRunStart("1.0.0-test", start);
+            checkpointer.recordTestCaseEnd(newTest(0));
+            checkpointer.recordTestCaseEnd(newTest(1));
+            assertEquals(2, checkpointer.checkpoint());
+
+            TestAdvisorResult partial = ResultCheckpointer.read(root);
+            assertEquals("1.0.0-test", partial.getVersion());
+            assertEquals(start, partial.getBuildStartTime());
+            assertEquals(2, partial.getTestCaseExecutionList().size());
+            assertEquals(TestStatus.FAILED, partial.getTestCaseExecutionList().get(1).getTestStatus());
+            assertEquals("event 1", partial.getTestCaseExecutionList().get(1).getEventList().get(0).getEventContent());
+
+            // nothing completed, no new segment
+            assertEquals(2, checkpointer.checkpoint());
+            checkpointer.recordTestCaseEnd(newTest(2));
+            assertEquals(3, checkpointer.checkpoint());
+            File[] segments = checkpointer.getCheckpointPath().toFile().listFiles((dir, name) -> name.startsWith("segment-"));
+            assertEquals(2, segments.length);
+            // run hasn't ended, checkpoint time is used as end time
+            assertFalse(ResultCheckpointer.read(root).getBuildEndTime().isBefore(start));
+        }
+    }
+
+    @Test
+    public void testWaitForScreenshots() throws IOException {
+        CompletableFuture<Void> screenshots = new CompletableFuture<>();
+        try (ResultCheckpointer checkpointer = new ResultCheckpointer(root, 0)) {
+            checkpointer.recordTestCaseEnd(newTest(0));
+            checkpointer.recordTestCaseEnd(newTest(1), screenshots);
+            checkpointer.recordTestCaseEnd(newTest(2));
+            // test 2 waits behind test 1 to keep the order
+            assertEquals(1, checkpointer.checkpoint());
+            screenshots.complete(null);
+            assertEquals(3, checkpointer.checkpoint());
+        }
+        assertEquals("Test 2", ResultCheckpointer.read(root).getTestCaseExecutionList().get(2).getTestName());
+    }
+
+    @Test
+    public void testCloseWaitsForScreenshots() throws IOException {
+        CompletableFuture<Void> screenshots = new CompletableFuture<>();
+        ResultCheckpointer checkpointer = new ResultCheckpointer(root, 0);
+        checkpointer.recordTestCaseEnd(newTest(0), screenshots);
+        new Thread(() -> screenshots.complete(null)).start();
+        checkpointer.close();
+
+        assertEquals(1, ResultCheckpointer.read(root).getTestCaseExecutionList().size());
+    }
+
+    @Test
+    public void testOrphanSegmentIgnored() throws IOException {
+        try (ResultCheckpointer checkpointer = new ResultCheckpointer(root, 0)) {
+            checkpointer.recordTestCaseEnd(newTest(0));
+            checkpointer.checkpoint();
+        }
+        // left behind by a checkpoint which never replaced the manifest
+        Files.write(root.resolve(ResultCheckpointer.CHECKPOINT_FOLDER_NAME).resolve("segment-00002.ndjson"), "{\"testName\":\"orphan\"}\n".getBytes());
+        Files.write(root.resolve(ResultCheckpointer.CHECKPOINT_FOLDER_NAME).resolve("checkpoint.json.tmp"), "{".getBytes());
+
+        TestAdvisorResult testResult = ResultCheckpointer.read(root);
+        assertEquals(1, testResult.getTestCaseExecutionList().size());
+        assertEquals("Test 0", testResult.getTestCaseExecutionList().get(0).getTestName());
+    }
+
+    @Test
+    public void testScheduledCheckpoint() throws IOException, InterruptedException {
+        try (ResultCheckpointer checkpointer = new ResultCheckpointer(root, 10)) {
+            checkpointer.recordTestCaseEnd(newTest(0));
+            Path manifest = checkpointer.getCheckpointPath().resolve(ResultCheckpointer.MANIFEST_FILE_NAME);
+            for (int i = 0; i < 500 && !manifest.toFile().exists(); i++)
+                Thread.sleep(10);
+            assertTrue(manifest.toFile().exists());
+        }
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        try (ResultCheckpointer checkpointer = new ResultCheckpointer(root, 0)) {
+            checkpointer.recordTestRunStart("1.0.0-test", Instant.now());
+            checkpointer.recordTestCaseEnd(newTest(0));
+        }
+        File resultFile = ResultCheckpointer.recover(root);
+        assertTrue(resultFile.exists());
+        TestAdvisorResult testResult = JsonReporter.readTestResult(resultFile);
+        assertEquals(1, testResult.getTestCaseExecutionList().size());
+        assertFalse(testResult.getBuildEndTime() == null);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoCheckpoint() throws IOException {
+        ResultCheckpointer.read(root);
+    }
+
+    private static TestCaseExecution newTest(int i) {
+        TestCaseExecution test = new TestCaseExecution();
+        test.setTestName("Test " + i);
+        test.appendEvent(new TestEvent(TestEventType.AUTOMATION, "event " + i, Level.INFO.toString()));
+        test.setTestStatus(i == 1 ? TestStatus.FAILED : TestStatus.PASSED);
+        test.saveEndTime();
+        return test;
+    }
+}
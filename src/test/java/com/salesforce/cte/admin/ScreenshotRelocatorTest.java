@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScreenshotRelocatorTest {
+
+    private Path screenshotPath;
+    private ScreenshotRelocator relocator;
+
+    @Before
+    public void setup() throws IOException {
+        screenshotPath = Files.createTempDirectory("").resolve("Screenshots");
+        relocator = new ScreenshotRelocator(screenshotPath, 2);
+    }
+
+    @After
+    public void teardown() {
+        relocator.close();
+    }
+
+    @Test
+    public void testRelocate() throws IOException {
+        TestCaseExecution test = new TestCaseExecution();
+        for (int i = 1; i <= 10; i++)
+            test.getEventList().add(newScreenshotEvent(i, createScreenshot(i)));
+        test.getEventList().add(new TestEvent(TestEventType.AUTOMATION, "test content", "Info"));
+
+        relocator.relocate(test).join();
+
+        assertEquals(0, relocator.getPendingCount());
+        for (int i = 1; i <= 10; i++) {
+            Path target = screenshotPath.resolve(String.format("%05d.png", i));
+            assertEquals(target.toString(), test.getEventList().get(i - 1).getScreenshotPath());
+            assertArrayEquals(new byte[] {(byte) i}, Files.readAllBytes(target));
+        }
+        assertNull(test.getEventList().get(10).getScreenshotPath());
+    }
+
+    @Test
+    public void testRelocateTwice() throws IOException {
+        TestCaseExecution test = new TestCaseExecution();
+        File screenshot = createScreenshot(1);
+        test.getEventList().add(newScreenshotEvent(1, screenshot));
+
+        relocator.relocate(test);
+        relocator.awaitAll();
+        assertTrue(relocator.relocate(test).isDone());
+
+        assertFalse(screenshot.exists());
+        assertEquals(screenshotPath.resolve("00001.png").toString(), test.getEventList().get(0).getScreenshotPath());
+    }
+
+    @Test
+    public void testMissingScreenshot() {
+        TestCaseExecution test = new TestCaseExecution();
+        File missing = Paths.get("missing-screenshot.png").toAbsolutePath().toFile();
+        test.getEventList().add(newScreenshotEvent(1, missing));
+
+        relocator.relocate(test).join();
+
+        assertEquals(missing.getAbsolutePath(), test.getEventList().get(0).getScreenshotPath());
+    }
+
+    @Test
+    public void testMove() throws IOException {
+        File screenshot = createScreenshot(7);
+        Path target = screenshotPath.resolve("00007.png");
+        Files.createDirectories(screenshotPath);
+        Files.write(target, new byte[] {0});
+
+        ScreenshotRelocator.move(screenshot.toPath(), target);
+
+        assertFalse(screenshot.exists());
+        assertArrayEquals(new byte[] {7}, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testDeduplicate() throws IOException {
+        relocator.close();
+        relocator = new ScreenshotRelocator(screenshotPath, 4, true);
+        TestCaseExecution test1 = new TestCaseExecution();
+        TestCaseExecution test2 = new TestCaseExecution();
+        for (int i = 1; i <= 20; i++)
+            (i % 2 == 0 ? test1 : test2).getEventList().add(newScreenshotEvent(i, createScreenshot(i % 3)));
+
+        relocator.relocate(test1);
+        relocator.relocate(test2);
+        relocator.awaitAll();
+
+        assertEquals(3, screenshotPath.toFile().list().length);
+        assertEquals(17, relocator.getDuplicateCount());
+        assertEquals(17, relocator.getBytesSaved());
+        for (TestCaseExecution test : new TestCaseExecution[] {test1, test2}) {
+            for (TestEvent event : test.getEventList()) {
+                Path blob = Paths.get(event.getScreenshotPath());
+                assertEquals(screenshotPath, blob.getParent());
+                assertEquals(ScreenshotRelocator.contentKey(blob) + ".png", blob.getFileName().toString());
+                assertArrayEquals(new byte[] {(byte) (event.getScreenshotRecordNumber() % 3)}, Files.readAllBytes(blob));
+            }
+        }
+    }
+
+    @Test
+    public void testContentKeyCollision() throws IOException {
+        relocator.close();
+        relocator = new ScreenshotRelocator(screenshotPath, 1, true);
+        // different content with the same CRC32 and size
+        File screenshot1 = createScreenshot("plumless");
+        File screenshot2 = createScreenshot("buckeroo");
+        File screenshot3 = createScreenshot("buckeroo");
+        assertEquals(ScreenshotRelocator.contentKey(screenshot1.toPath()), ScreenshotRelocator.contentKey(screenshot2.toPath()));
+        TestCaseExecution test = new TestCaseExecution();
+        test.getEventList().add(newScreenshotEvent(1, screenshot1));
+        test.getEventList().add(newScreenshotEvent(2, screenshot2));
+        test.getEventList().add(newScreenshotEvent(3, screenshot3));
+
+        relocator.relocate(test).join();
+
+        assertEquals(2, screenshotPath.toFile().list().length);
+        assertEquals(1, relocator.getDuplicateCount());
+        String key = ScreenshotRelocator.contentKey(Paths.get(test.getEventList().get(0).getScreenshotPath()));
+        assertEquals(key + ".png", Paths.get(test.getEventList().get(0).getScreenshotPath()).getFileName().toString());
+        assertEquals(key + "-1.png", Paths.get(test.getEventList().get(1).getScreenshotPath()).getFileName().toString());
+        assertEquals(test.getEventList().get(1).getScreenshotPath(), test.getEventList().get(2).getScreenshotPath());
+        assertArrayEquals("plumless".getBytes(), Files.readAllBytes(Paths.get(test.getEventList().get(0).getScreenshotPath())));
+        assertArrayEquals("buckeroo".getBytes(), Files.readAllBytes(Paths.get(test.getEventList().get(1).getScreenshotPath())));
+        assertFalse(screenshot3.exists());
+    }
+
+    private static TestEvent newScreenshotEvent(int recordNumber, File screenshot) {
+        return new TestEvent(TestEventType.SCREEN_SHOT, "screenshot", "Info", "click", "null", "locator", recordNumber, screenshot);
+    }
+
+    private static File createScreenshot(int content) throws IOException {
+        File screenshot = File.createTempFile("screenshot", "");
+        Files.write(screenshot.toPath(), new byte[] {(byte) content});
+        return screenshot;
+    }
+
+    private static File createScreenshot(String content) throws IOException {
+        File screenshot = File.createTempFile("screenshot", "");
+        Files.write(screenshot.toPath(), content.getBytes());
+        return screenshot;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.salesforce.cte.common.ColumnarEventList;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpillableEventListTest {
+
+    private Path testRunRoot;
+    private EventSpiller spiller;
+
+    @Before
+    public void setup() throws IOException {
+        testRunRoot = Files.createTempDirectory("");
+    }
+
+    @After
+    public void teardown() {
+        if (spiller != null)
+            spiller.close();
+    }
+
+    @Test
+    public void testSpillKeepsOrder() {
+        AtomicInteger beforeSpill = new AtomicInteger();
+        spiller = new EventSpiller(testRunRoot, 2000, 0, ArrayList::new, event -> beforeSpill.incrementAndGet());
+        SpillableEventList list = spiller.createEventList();
+        for (int i = 0; i < 100; i++)
+            list.add(newEvent(i));
+
+        assertEquals(100, list.size());
+        int i = 0;
+        for (TestEvent event : list)
+            assertEquals("event " + i++, event.getEventContent());
+        assertEquals(100, i);
+        list.awaitSpills();
+        assertTrue(list.getSpilledCount() > 0);
+        assertEquals(list.getSpilledCount(), spiller.getSpilledEventCount());
+        assertEquals(list.getSpilledCount(), beforeSpill.get());
+        assertEquals("event 0", list.get(0).getEventContent());
+        assertEquals("event 99", list.get(99).getEventContent());
+        assertTrue(spiller.getRunMemory() <= 2000);
+    }
+
+    @Test
+    public void testJsonOutput() throws IOException {
+        spiller = new EventSpiller(testRunRoot, 1000, 0, ColumnarEventList::new, event -> {});
+        TestCaseExecution spilled = new TestCaseExecution();
+        spilled.setEventList(spiller.createEventList());
+        TestCaseExecution expected = new TestCaseExecution();
+        for (int i = 0; i < 50; i++) {
+            TestEvent event = newEvent(i);
+            event.setSeleniumCmd("click");
+            event.setSeleniumLocator("id=submit");
+            spilled.appendEvent(event);
+            expected.appendEvent(event);
+        }
+
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        assertEquals(mapper.writeValueAsString(expected.getEventList()), mapper.writeValueAsString(spilled.getEventList()));
+        ((SpillableEventList) spilled.getEventList()).awaitSpills();
+        assertTrue(((SpillableEventList) spilled.getEventList()).getSpilledCount() > 0);
+    }
+
+    @Test
+    public void testRunBudget() {
+        spiller = new EventSpiller(testRunRoot, 0, 100 * 1024, ArrayList::new, event -> {});
+        List<SpillableEventList> lists = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            lists.add(spiller.createEventList());
+        String content = new String(new char[1000]).replace('\0', 'x');
+        for (int i = 0; i < 100; i++) {
+            for (SpillableEventList list : lists)
+                list.add(new TestEvent(TestEventType.AUTOMATION, content + i, "Info"));
+        }
+
+        long spilled = 0;
+        for (SpillableEventList list : lists) {
+            list.awaitSpills();
+            assertEquals(100, list.size());
+            int i = 0;
+            for (TestEvent event : list)
+                assertEquals(content + i++, event.getEventContent());
+            spilled += list.getSpilledCount();
+        }
+        assertTrue(spilled > 0);
+        assertTrue(spiller.getRunMemory() <= 200 * 1024);
+    }
+
+    @Test
+    public void testSpillOnDemand() {
+        spiller = new EventSpiller(testRunRoot, 0, 0, ArrayList::new, event -> {});
+        SpillableEventList list = spiller.createEventList();
+        for (int i = 0; i < 10; i++)
+            list.add(newEvent(i));
+        list.spill();
+        list.add(newEvent(10));
+
+        int i = 0;
+        for (TestEvent event : list)
+            assertEquals("event " + i++, event.getEventContent());
+        assertEquals(11, i);
+        list.awaitSpills();
+        assertEquals(10, list.getSpilledCount());
+    }
+
+    @Test
+    public void testRunBudgetSpillsCompleted() {
+        spiller = new EventSpiller(testRunRoot, 0, 100 * 1024, ArrayList::new, event -> {});
+        String content = new String(new char[1000]).replace('\0', 'x');
+        // completed test cases kept for the result file, each below the per test spill size
+        List<SpillableEventList> completed = new ArrayList<>();
+        for (int test = 0; test < 10; test++) {
+            SpillableEventList list = spiller.createEventList();
+            for (int i = 0; i < 20; i++)
+                list.add(new TestEvent(TestEventType.AUTOMATION, content + i, "Info"));
+            list.complete();
+            completed.add(list);
+        }
+        SpillableEventList running = spiller.createEventList();
+        running.add(newEvent(0));
+
+        long spilled = 0;
+        for (SpillableEventList list : completed) {
+            list.awaitSpills();
+            spilled += list.getSpilledCount();
+            int i = 0;
+            for (TestEvent event : list)
+                assertEquals(content + i++, event.getEventContent());
+            assertEquals(20, i);
+        }
+        assertTrue(spilled > 0);
+        assertTrue(spiller.getRunMemory() <= 100 * 1024);
+    }
+
+    @Test
+    public void testGet() {
+        spiller = new EventSpiller(testRunRoot, 0, 0, ArrayList::new, event -> {});
+        SpillableEventList list = spiller.createEventList();
+        for (int i = 0; i < 10; i++)
+            list.add(newEvent(i));
+        list.spill();
+        for (int i = 10; i < 20; i++)
+            list.add(newEvent(i));
+
+        // spilled, waiting or written, and in memory
+        for (int i = 0; i < 20; i++)
+            assertEquals("event " + i, list.get(i).getEventContent());
+        list.awaitSpills();
+        assertEquals("event 3", list.get(3).getEventContent());
+        assertEquals("event 15", list.get(15).getEventContent());
+        // events to relocate are the ones in memory
+        assertEquals(10, list.getEventsToRelocate().size());
+        assertEquals("event 10", list.getEventsToRelocate().get(0).getEventContent());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        spiller = new EventSpiller(testRunRoot, 0, 0, ArrayList::new, event -> {});
+        SpillableEventList list = spiller.createEventList();
+        list.add(newEvent(0));
+        list.get(1);
+    }
+
+    @Test
+    public void testSpillFailure() throws IOException {
+        // spill folder can't be created, events stay in memory
+        Files.createFile(testRunRoot.resolve(EventSpiller.SPILL_FOLDER_NAME));
+        spiller = new EventSpiller(testRunRoot, 1000, 0, ArrayList::new, event -> {});
+        SpillableEventList list = spiller.createEventList();
+        for (int i = 0; i < 50; i++)
+            list.add(newEvent(i));
+
+        int i = 0;
+        for (TestEvent event : list)
+            assertEquals("event " + i++, event.getEventContent());
+        assertEquals(50, i);
+        assertEquals(0, list.getSpilledCount());
+        assertEquals(0, spiller.getSpilledEventCount());
+    }
+
+    private static TestEvent newEvent(int i) {
+        return new TestEvent(TestEventType.AUTOMATION, "event " + i, "Info");
+    }
+}
@@ -7,13 +7,20 @@
 
 package com.salesforce.cte.admin;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -84,6 +91,40 @@ public class TestAdvisorAdministratorTest {
 		assertEquals(TestCaseExecution.class, taAdmin.getTestCaseExecution().getClass());
 	}
 	
+	/**
+	 * Tests to make sure that endTestCaseExecution() stops tracking the test case for current thread
+	 */
+	@Test
+	public void testEndTestCaseExecution() {
+		TestCaseExecution testCaseExecution = taAdmin.createTestCaseExecution("Test 1");
+		assertEquals(testCaseExecution, taAdmin.endTestCaseExecution());
+		assertNull(taAdmin.getTestCaseExecution());
+		assertNull(taAdmin.endTestCaseExecution());
+		assertEquals(1, taAdmin.getTestResult().getTestCaseExecutionList().size());
+	}
+
+	/**
+	 * Tests to make sure that test cases created by many threads are all merged into test result
+	 */
+	@Test
+	public void testCreateTestCaseExecutionParallel() throws InterruptedException {
+		int threadCount = 16;
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < 100; j++) {
+					taAdmin.createTestCaseExecution("Test " + j);
+					taAdmin.endTestCaseExecution();
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(threadCount * 100, taAdmin.getTestResult().getTestCaseExecutionList().size());
+	}
+
 	/**
 	 * Tests to make sure that the saveTestCaseExecution() method works as expected
 	 * on a system running Mac OS
@@ -151,6 +192,20 @@ public class TestAdvisorAdministratorTest {
 		outputFile.deleteOnExit();
 	}
 
+	@Test
+	public void testMemoryPressureAfterSave() throws IOException {
+		taAdmin.createTestCaseContext("testMemoryPressureAfterSave");
+		taAdmin.endTestCaseExecution();
+		File outputFile = taAdmin.saveTestResult();
+		byte[] saved = Files.readAllBytes(outputFile.toPath());
+
+		// the saved result file is not reopened as a result stream
+		taAdmin.relieveMemoryPressure(new MemoryNotificationInfo("Old Gen", new MemoryUsage(0, 90, 100, 100), 1));
+
+		assertArrayEquals(saved, Files.readAllBytes(outputFile.toPath()));
+		outputFile.deleteOnExit();
+	}
+
 	@Test
 	public void versionTest(){
 		TestAdvisorAdministrator admin = TestAdvisorAdministrator.getInstance();
@@ -56,4 +56,29 @@ public class TestAdvisorConfigurationTest {
 
 	}
 
+	@Test
+	public void testGetRunAndForkId(){
+		System.clearProperty("testadvisor.run.id");
+		assertEquals(null, TestAdvisorConfiguration.getRunId());
+		System.setProperty("testadvisor.run.id", " ci-42 ");
+		assertEquals("ci-42", TestAdvisorConfiguration.getRunId());
+		System.setProperty("testadvisor.run.id", "../ci-42");
+		assertEquals(null, TestAdvisorConfiguration.getRunId());
+		System.setProperty("testadvisor.run.id", "ci\\42");
+		assertEquals(null, TestAdvisorConfiguration.getRunId());
+		System.clearProperty("testadvisor.run.id");
+
+		System.clearProperty("testadvisor.fork.id");
+		System.clearProperty("surefire.forkNumber");
+		assertEquals("1", TestAdvisorConfiguration.getForkId());
+		System.setProperty("surefire.forkNumber", "3");
+		assertEquals("3", TestAdvisorConfiguration.getForkId());
+		System.setProperty("testadvisor.fork.id", "node7-3");
+		assertEquals("node7-3", TestAdvisorConfiguration.getForkId());
+		System.setProperty("testadvisor.fork.id", "node7/3");
+		assertEquals("1", TestAdvisorConfiguration.getForkId());
+		System.clearProperty("testadvisor.fork.id");
+		System.clearProperty("surefire.forkNumber");
+	}
+
 }
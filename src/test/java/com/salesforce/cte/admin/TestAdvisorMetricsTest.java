@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.salesforce.cte.common.TestAdvisorResult;
+
+import org.junit.Test;
+
+public class TestAdvisorMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 0; i < 99; i++)
+            histogram.record(100);
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(99 * 100 + 1_000_000, histogram.getTotalNanos());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        // 100 falls in the 64..127 bucket
+        assertEquals(127, histogram.getPercentileNanos(50));
+        assertEquals(127, histogram.getPercentileNanos(99));
+        assertEquals(1_000_000, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void testDisabled() {
+        TestAdvisorMetrics metrics = new TestAdvisorMetrics(false, () -> 0, () -> 0, () -> 0, () -> 0);
+        assertEquals(0, metrics.startCallback());
+        metrics.endCallback(0);
+        metrics.eventAppended();
+        metrics.recordSave(100);
+
+        assertEquals(0, metrics.getListenerCallbackCount());
+        assertEquals(0, metrics.getEventsAppended());
+        assertEquals(0, metrics.getSaveCount());
+    }
+
+    @Test
+    public void testMBean() throws JMException {
+        AtomicLong depth = new AtomicLong(7);
+        TestAdvisorMetrics metrics = new TestAdvisorMetrics(true, depth::get, () -> 9, () -> 1024, () -> 3);
+        metrics.endCallback(metrics.startCallback());
+        metrics.eventAppended();
+        metrics.eventAppended();
+        metrics.recordSave(500);
+
+        metrics.register();
+        TestAdvisorMetrics replacement = new TestAdvisorMetrics(true, () -> 0, () -> 0, () -> 0, () -> 0);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(TestAdvisorMetrics.OBJECT_NAME);
+            assertEquals(2L, server.getAttribute(name, "EventsAppended"));
+            assertEquals(1L, server.getAttribute(name, "ListenerCallbackCount"));
+            assertEquals(7L, server.getAttribute(name, "QueueDepth"));
+            depth.set(0);
+            assertEquals(0L, server.getAttribute(name, "QueueDepth"));
+            assertEquals(9L, server.getAttribute(name, "MaxQueueDepth"));
+            assertEquals(1024L, server.getAttribute(name, "BytesWritten"));
+            assertEquals(3L, server.getAttribute(name, "ScreenshotsMoved"));
+            assertEquals(500L, server.getAttribute(name, "LastSaveNanos"));
+
+            // registering again replaces the MBean
+            replacement.register();
+            assertEquals(0L, server.getAttribute(name, "EventsAppended"));
+            replacement.unregister();
+            assertTrue(!server.isRegistered(name));
+        } finally {
+            replacement.unregister();
+        }
+    }
+
+    @Test
+    public void testResultSummary() throws IOException {
+        Path testRunRoot = Files.createTempDirectory("");
+        JsonReporter reporter = new JsonReporter(testRunRoot);
+        TestAdvisorMetrics metrics = new TestAdvisorMetrics(true, () -> 0, () -> 5,
+                                                    reporter::getBytesWritten, reporter::getScreenshotsMoved);
+        metrics.eventAppended();
+        metrics.endCallback(metrics.startCallback());
+
+        TestAdvisorResult result = new TestAdvisorResult();
+        File withoutMetrics = reporter.writeTestResult(result);
+        assertNull(JsonReporter.readTestResult(withoutMetrics).getMetrics());
+        assertTrue(reporter.getBytesWritten() > 0);
+
+        result.setMetrics(metrics.toSummary());
+        TestAdvisorResult saved = JsonReporter.readTestResult(reporter.writeTestResult(result));
+        assertNotNull(saved.getMetrics());
+        assertEquals(1, saved.getMetrics().getEventsAppended());
+        assertEquals(1, saved.getMetrics().getListenerCallbackCount());
+        assertEquals(5, saved.getMetrics().getMaxQueueDepth());
+        assertTrue(saved.getMetrics().getBytesWritten() > 0);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCaseContextTest {
+
+    private TestAdvisorAdministrator taAdmin;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        taAdmin = TestAdvisorAdministrator.getInstance();
+        taAdmin.getTestResult().getTestCaseExecutionList().clear();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCurrent() {
+        TestCaseContext context = taAdmin.createTestCaseContext("Test 1");
+        assertSame(context, TestCaseContext.current());
+        assertSame(context, taAdmin.getTestCaseContext());
+        assertSame(context.getTestCaseExecution(), taAdmin.getTestCaseExecution());
+
+        taAdmin.endTestCaseExecution();
+        assertTrue(context.isEnded());
+        assertNull(TestCaseContext.current());
+        assertNull(taAdmin.getTestCaseContext());
+    }
+
+    @Test
+    public void testChildThread() throws InterruptedException {
+        TestCaseContext context = taAdmin.createTestCaseContext("Test 1");
+        Thread thread = new Thread(context.wrap(() -> { taAdmin.appendTestCaseEvent(newEvent("child")); }));
+        thread.start();
+        thread.join();
+        taAdmin.endTestCaseExecution();
+
+        assertEquals(1, context.getTestCaseExecution().getEventList().size());
+        assertEquals("child", context.getTestCaseExecution().getEventList().get(0).getEventContent());
+    }
+
+    @Test
+    public void testNotInherited() throws Exception {
+        TestCaseContext context = taAdmin.createTestCaseContext("Test 1");
+        // pool thread created lazily by the first test case
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            assertNull(pool.submit(TestCaseContext::current).get());
+            taAdmin.endTestCaseExecution();
+
+            TestCaseContext context2 = taAdmin.createTestCaseContext("Test 2");
+            assertFalse(pool.submit(() -> taAdmin.appendTestCaseEvent(newEvent("pool"))).get());
+            assertSame(context2, pool.submit(context2.wrap(TestCaseContext::current)).get());
+            taAdmin.endTestCaseExecution();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0, context.getTestCaseExecution().getEventList().size());
+    }
+
+    @Test
+    public void testWrapExecutor() {
+        TestCaseContext context = taAdmin.createTestCaseContext("Test 1");
+        CompletableFuture.runAsync(() -> taAdmin.appendTestCaseEvent(newEvent("async")), context.wrap(executor))
+                        .thenRunAsync(() -> taAdmin.setTestCaseStatus(TestStatus.FAILED), context.wrap(executor))
+                        .join();
+        taAdmin.endTestCaseExecution();
+
+        TestCaseExecution testCaseExecution = context.getTestCaseExecution();
+        assertEquals(1, testCaseExecution.getEventList().size());
+        assertEquals(TestStatus.FAILED, testCaseExecution.getTestStatus());
+    }
+
+    @Test
+    public void testBind() throws Exception {
+        TestCaseContext context1 = taAdmin.createTestCaseContext("Test 1");
+        TestCaseContext context2 = executor.submit(() -> {
+            TestCaseContext context = taAdmin.createTestCaseContext("Test 2");
+            try (TestCaseContext.Scope scope = context1.bind()) {
+                assertSame(context1, taAdmin.getTestCaseContext());
+            }
+            return taAdmin.getTestCaseContext();
+        }).get();
+        assertEquals("Test 2", context2.getTestCaseExecution().getTestName());
+        assertSame(context1, taAdmin.getTestCaseContext());
+        taAdmin.endTestCaseExecution();
+    }
+
+    @Test
+    public void testEventAfterEnd() {
+        TestCaseContext context = taAdmin.createTestCaseContext("Test 1");
+        assertTrue(context.appendEvent(newEvent("before end")));
+        taAdmin.endTestCaseExecution();
+        assertFalse(context.appendEvent(newEvent("after end")));
+        assertFalse(context.setTestStatus(TestStatus.FAILED));
+
+        assertEquals(1, context.getTestCaseExecution().getEventList().size());
+        assertEquals(TestStatus.PASSED, context.getTestCaseExecution().getTestStatus());
+    }
+
+    private static TestEvent newEvent(String content) {
+        return new TestEvent(TestEventType.AUTOMATION, content, Level.INFO.toString());
+    }
+}
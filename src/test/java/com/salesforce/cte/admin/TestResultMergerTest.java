@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestResultMergerTest will test merging result files of parallel test runs
+ */
+public class TestResultMergerTest {
+
+    private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+
+    private Path root;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        root = Files.createTempDirectory("");
+        root.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        inputs.add(writeTestRun("TestRun-20220101-000000", 0, 150, JsonReporter.ResultFormat.JSON_PRETTY, JsonReporter.Compression.NONE));
+        inputs.add(writeTestRun("TestRun-20220101-000001", 1, 3, JsonReporter.ResultFormat.SMILE, JsonReporter.Compression.GZIP));
+        inputs.add(writeTestRun("TestRun-20220101-000002", 2, 80, JsonReporter.ResultFormat.CBOR, JsonReporter.Compression.DEFLATE));
+
+        Path output = root.resolve("merged");
+        TestResultMerger merger = new TestResultMerger(output, 2);
+        File resultFile = merger.merge(inputs);
+
+        TestAdvisorResult merged = JsonReporter.readTestResult(resultFile);
+        assertEquals(233, merged.getTestCaseExecutionList().size());
+        assertEquals(233, merger.getTestCaseCount());
+        assertEquals("Run 0 Test 0", merged.getTestCaseExecutionList().get(0).getTestName());
+        assertEquals("Run 1 Test 0", merged.getTestCaseExecutionList().get(150).getTestName());
+        assertEquals("Run 2 Test 79", merged.getTestCaseExecutionList().get(232).getTestName());
+        assertEquals(START, merged.getBuildStartTime());
+        assertEquals(START.plusSeconds(3600 + 2), merged.getBuildEndTime());
+        assertEquals("1.0.0-run0", merged.getVersion());
+
+        // screenshots are renumbered in the order they are written
+        int recordNumber = 0;
+        for (TestCaseExecution test : merged.getTestCaseExecutionList()) {
+            for (TestEvent event : test.getEventList()) {
+                if (event.getScreenshotPath() == null || event.getScreenshotPath().isEmpty()) continue;
+                assertEquals(++recordNumber, event.getScreenshotRecordNumber());
+                Path screenshot = Paths.get(event.getScreenshotPath());
+                assertEquals(output.resolve("Screenshots"), screenshot.getParent());
+                assertEquals(test.getTestName(), new String(Files.readAllBytes(screenshot)));
+            }
+        }
+        assertEquals(233, recordNumber);
+        assertEquals(233, merger.getScreenshotCount());
+        // inputs are left as they were
+        assertTrue(inputs.get(0).resolveSibling("Screenshots").resolve("00001.png").toFile().exists());
+    }
+
+    @Test
+    public void testCorruptInput() throws IOException {
+        Path good = writeTestRun("TestRun-20220101-000000", 0, 2, JsonReporter.ResultFormat.JSON, JsonReporter.Compression.NONE);
+        Path corrupt = root.resolve("TestRun-20220101-000001").resolve("test-result.json");
+        corrupt.getParent().toFile().mkdirs();
+        Files.write(corrupt, "{\"testCaseExecutionList\":[{\"testName\":\"Truncated\"},{\"testNa".getBytes());
+
+        TestAdvisorResult merged = JsonReporter.readTestResult(
+                                    new TestResultMerger(root.resolve("merged"), 4).merge(Arrays.asList(corrupt, good)));
+        assertEquals(3, merged.getTestCaseExecutionList().size());
+        assertEquals("Truncated", merged.getTestCaseExecutionList().get(0).getTestName());
+        assertEquals(START, merged.getBuildStartTime());
+    }
+
+    @Test
+    public void testFindResultFiles() throws IOException {
+        Path first = writeTestRun("node1/TestRun-20220101-000000", 0, 1, JsonReporter.ResultFormat.JSON, JsonReporter.Compression.NONE);
+        Path second = writeTestRun("node2/TestRun-20220101-000000", 1, 1, JsonReporter.ResultFormat.SMILE, JsonReporter.Compression.GZIP);
+
+        assertEquals(Arrays.asList(first, second), TestResultMerger.findResultFiles(Arrays.asList(root)));
+        assertEquals(Arrays.asList(second), TestResultMerger.findResultFiles(Arrays.asList(second)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        new TestResultMerger(root, 0);
+    }
+
+    /**
+     * Write a test run with one screenshot per test case, run i starts i seconds
+     * after START and ends one hour later
+     */
+    private Path writeTestRun(String name, int run, int testCount, JsonReporter.ResultFormat format,
+                                JsonReporter.Compression compression) throws IOException {
+        Path testRun = root.resolve(name);
+        Path screenshots = testRun.resolve("Screenshots");
+        screenshots.toFile().mkdirs();
+        TestAdvisorResult testResult = new TestAdvisorResult();
+        testResult.setVersion("1.0.0-run" + run);
+        testResult.setBuildStartTime(START.plusSeconds(run));
+        testResult.setBuildEndTime(START.plusSeconds(3600 + run));
+        for (int i = 0; i < testCount; i++) {
+            TestCaseExecution test = new TestCaseExecution();
+            test.setTestName("Run " + run + " Test " + i);
+            File screenshot = screenshots.resolve(String.format("%05d.png", i + 1)).toFile();
+            Files.write(screenshot.toPath(), test.getTestName().getBytes());
+            test.appendEvent(new TestEvent(TestEventType.SCREEN_SHOT, "screenshot", Level.INFO.toString(),
+                                            "", "", "", i + 1, screenshot));
+            test.appendEvent(new TestEvent(TestEventType.AUTOMATION, "event " + i, Level.INFO.toString()));
+            testResult.getTestCaseExecutionList().add(test);
+        }
+        return new JsonReporter(testRun, format, compression).writeTestResult(testResult).toPath();
+    }
+}
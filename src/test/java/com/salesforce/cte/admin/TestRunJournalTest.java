@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Level;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestRunJournalTest will test journaling and recovery of a test run
+ */
+public class TestRunJournalTest {
+
+	private Path root;
+
+	@Before
+	public void createFolderStructure() throws IOException {
+		root = Files.createTempDirectory("").resolve("TestRun-20220101-000000");
+		root.toFile().mkdirs();
+		root.toFile().deleteOnExit();
+	}
+
+	private void journalTestRun(TestRunJournal journal) throws InterruptedException {
+		TestAdvisorResult testResult = new TestAdvisorResult();
+		testResult.setVersion("1.0.0-test");
+		testResult.setBuildStartTime(Instant.now());
+		journal.recordTestRunStart(testResult);
+
+		for (int i = 0; i < 3; i++) {
+			TestCaseExecution test = new TestCaseExecution();
+			test.setTestName("Test " + i);
+			journal.recordTestCaseStart(test);
+			test.setObserver(journal);
+			test.appendEvent(new TestEvent(TestEventType.AUTOMATION, "event " + i, Level.INFO.toString()));
+			test.setTestStatus(i == 1 ? TestStatus.FAILED : TestStatus.PASSED);
+			if (i < 2) {
+				test.saveEndTime();
+				journal.recordTestCaseEnd(test);
+			}
+		}
+		journal.flush();
+	}
+
+	@Test
+	public void testReplay() throws IOException, InterruptedException {
+		try (TestRunJournal journal = new TestRunJournal(root, TestRunJournal.FsyncPolicy.BATCH, 0)) {
+			journalTestRun(journal);
+		}
+
+		TestAdvisorResult testResult = TestRunJournal.replay(root.resolve(TestRunJournal.JOURNAL_FILE_NAME));
+		assertEquals("1.0.0-test", testResult.getVersion());
+		assertEquals(3, testResult.getTestCaseExecutionList().size());
+		assertEquals("Test 1", testResult.getTestCaseExecutionList().get(1).getTestName());
+		assertEquals(TestStatus.FAILED, testResult.getTestCaseExecutionList().get(1).getTestStatus());
+		assertEquals("event 2", testResult.getTestCaseExecutionList().get(2).getEventList().get(0).getEventContent());
+		// test run never ended, build end time is taken from last journaled change
+		assertTrue(!testResult.getBuildEndTime().isBefore(testResult.getBuildStartTime()));
+	}
+
+	@Test
+	public void testEventSnapshot() throws IOException, InterruptedException {
+		TestEvent event = new TestEvent(TestEventType.SCREEN_SHOT, "screenshot", Level.INFO.toString());
+		event.setScreenshotPath("/tmp/screenshot.png");
+		try (TestRunJournal journal = new TestRunJournal(root, TestRunJournal.FsyncPolicy.NONE, 0)) {
+			TestCaseExecution test = new TestCaseExecution();
+			test.setTestName("Test 0");
+			journal.recordTestCaseStart(test);
+			test.setObserver(journal);
+			test.appendEvent(event);
+			// moved by the screenshot relocator after the event is journaled
+			event.setScreenshotPath("Screenshots/0.png");
+		}
+
+		TestAdvisorResult testResult = TestRunJournal.replay(root.resolve(TestRunJournal.JOURNAL_FILE_NAME));
+		assertEquals("/tmp/screenshot.png",
+					testResult.getTestCaseExecutionList().get(0).getEventList().get(0).getScreenshotPath());
+	}
+
+	@Test
+	public void testRecoverTruncatedJournal() throws IOException, InterruptedException {
+		try (TestRunJournal journal = new TestRunJournal(root, TestRunJournal.FsyncPolicy.NONE, 0)) {
+			journalTestRun(journal);
+		}
+		// simulate a JVM killed in the middle of writing a record
+		Files.write(root.resolve(TestRunJournal.JOURNAL_FILE_NAME), "{\"type\":\"TEST_EV".getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.APPEND);
+
+		File outputFile = TestRunJournal.recover(root);
+		assertEquals("test-result.json", outputFile.getName());
+		assertTrue(outputFile.exists());
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+		TestAdvisorResult testResult = objectMapper.readValue(outputFile, TestAdvisorResult.class);
+		assertEquals(3, testResult.getTestCaseExecutionList().size());
+		assertEquals(TestStatus.FAILED, testResult.getTestCaseExecutionList().get(1).getTestStatus());
+		outputFile.deleteOnExit();
+	}
+
+	@Test
+	public void testReplayStopsAtRecordWithoutType() throws IOException, InterruptedException {
+		try (TestRunJournal journal = new TestRunJournal(root, TestRunJournal.FsyncPolicy.NONE, 0)) {
+			journalTestRun(journal);
+		}
+		Path journalFile = root.resolve(TestRunJournal.JOURNAL_FILE_NAME);
+		List<String> records = Files.readAllLines(journalFile, StandardCharsets.UTF_8);
+		// the start of the last test case loses its type, what follows is not replayed
+		int lastStart = records.size() - 3;
+		assertTrue(records.get(lastStart).contains("TEST_START"));
+		records.set(lastStart, records.get(lastStart).replace("\"type\":\"TEST_START\",", ""));
+		records.add(lastStart + 1, "{\"type\":\"UNKNOWN\",\"id\":2}");
+		Files.write(journalFile, records, StandardCharsets.UTF_8);
+
+		TestAdvisorResult testResult = TestRunJournal.replay(journalFile);
+		assertEquals(2, testResult.getTestCaseExecutionList().size());
+		assertEquals("Test 1", testResult.getTestCaseExecutionList().get(1).getTestName());
+	}
+
+	@Test
+	public void testIntervalPolicyWithoutFollowingRecord() throws IOException, InterruptedException {
+		try (TestRunJournal journal = new TestRunJournal(root, TestRunJournal.FsyncPolicy.INTERVAL, 50)) {
+			TestAdvisorResult testResult = new TestAdvisorResult();
+			testResult.setVersion("1.0.0-test");
+			journal.recordTestRunStart(testResult);
+			// the batch is forced by the timer, the journal keeps working afterwards
+			Thread.sleep(200);
+			journalTestRun(journal);
+		}
+		assertEquals(3, TestRunJournal.replay(root.resolve(TestRunJournal.JOURNAL_FILE_NAME)).getTestCaseExecutionList().size());
+	}
+}
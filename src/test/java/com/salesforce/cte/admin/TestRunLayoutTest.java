@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestRunLayoutTest will test test run folders of concurrent JVMs
+ */
+public class TestRunLayoutTest {
+
+    private Path root;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        root = Files.createTempDirectory("").resolve(".testadvisor");
+        root.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testClaimFolderConcurrently() throws InterruptedException, ExecutionException {
+        int count = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Path>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return TestRunLayout.claimFolder(root, "TestRun-20220101-000000");
+            }));
+        }
+        start.countDown();
+        Set<Path> folders = new HashSet<>();
+        for (Future<Path> future : futures)
+            folders.add(future.get());
+        executor.shutdown();
+
+        assertEquals(count, folders.size());
+        assertTrue(folders.contains(root.resolve("TestRun-20220101-000000")));
+        assertTrue(folders.contains(root.resolve("TestRun-20220101-000000-" + count)));
+    }
+
+    @Test
+    public void testForkManifest() throws IOException {
+        Path testRun = root.resolve("TestRun-ci-42");
+        Path first = TestRunLayout.claimForkFolder(testRun, "1");
+        Path second = TestRunLayout.claimForkFolder(testRun, "2");
+        assertTrue(first.getFileName().toString().startsWith("fork-1-"));
+        assertEquals(testRun, second.getParent());
+
+        TestRunLayout.Fork firstFork = TestRunLayout.createFork(first, "1");
+        TestRunLayout.writeFork(first, firstFork);
+        TestRunLayout.writeFork(second, TestRunLayout.createFork(second, "2"));
+        List<TestRunLayout.Fork> forks = TestRunLayout.readForks(testRun);
+        assertEquals(2, forks.size());
+        assertEquals("1", forks.get(0).getForkId());
+        assertEquals(first.getFileName().toString(), forks.get(0).getFolder());
+        assertNull(forks.get(0).getResultFile());
+
+        // entry is replaced once the result is saved
+        Instant end = Instant.parse("2022-01-01T01:00:00Z");
+        firstFork.setBuildEndTime(end);
+        firstFork.setResultFile("test-result.json");
+        TestRunLayout.writeFork(first, firstFork);
+        forks = TestRunLayout.readForks(testRun);
+        assertEquals(2, forks.size());
+        assertEquals("test-result.json", forks.get(0).getResultFile());
+        assertEquals(end, forks.get(0).getBuildEndTime());
+        assertEquals(2, testRun.resolve(TestRunLayout.FORK_MANIFEST_FOLDER_NAME).toFile().list().length);
+    }
+
+    @Test
+    public void testNoForks() throws IOException {
+        assertTrue(TestRunLayout.readForks(root).isEmpty());
+    }
+}
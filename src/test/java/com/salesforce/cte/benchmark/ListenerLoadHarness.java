@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.salesforce.cte.admin.TestAdvisorAdministrator;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+import com.salesforce.cte.listener.junit.TestListenerJUnit4;
+import com.salesforce.cte.listener.junit.TestListenerJUnit5;
+import com.salesforce.cte.listener.testng.TestListener;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import org.junit.platform.engine.discovery.ClassSelector;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.runner.Computer;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+import org.testng.TestNG;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+/**
+ * End-to-end cost of the TestAdvisor listeners on a synthetic suite.
+ *
+ * The suite has classes x methods test cases. The test classes are generated and compiled
+ * at start up, every framework gets its own distinct classes with distinct test methods,
+ * so discovery, reflection and per-class listener work scale like a real suite.
+ * Every test case does some CPU work and reports a number of events the way the
+ * Selenium event listener does, a share of the test cases fails. The suite runs through
+ * TestNG, JUnit4 and JUnit5 with the given parallelism, once without and once with
+ * the TestAdvisor listener.
+ * For each framework the report gives wall-clock time, allocated bytes and
+ * allocation rate without and with the listener, and the latency of the
+ * end-of-run save. Every run is repeated and the median is reported.
+ * Allocation is measured from heap usage and GC notifications and is approximate.
+ * The harness needs a JDK, the test classes are compiled with the system Java compiler.
+ *
+ * Usage: ListenerLoadHarness [name=value...]
+ *   classes=20 methods=50 events=20 failureRate=0.05 parallelism=4 work=200
+ *   repeats=5 frameworks=testng,junit4,junit5
+ */
+public class ListenerLoadHarness {
+
+    // suite shape
+    static int classes = 20;
+    static int methods = 50;
+    static int events = 20;
+    static double failureRate = 0.05;
+    static int work = 200;
+    static volatile boolean reportEvents = false;
+
+    private static int parallelism = 4;
+    private static int repeats = 5;
+    private static List<String> frameworks = Arrays.asList("testng", "junit4", "junit5");
+    // end-of-run save latency of the last run, set by the timed listeners
+    private static volatile long saveNanos = 0;
+    // generated test classes of each framework
+    private static Map<String, List<Class<?>>> suites;
+
+    public static void main(String[] args) throws Exception {
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            String value = pair.length > 1 ? pair[1] : "";
+            switch (pair[0]) {
+                case "classes": classes = Integer.parseInt(value); break;
+                case "methods": methods = Integer.parseInt(value); break;
+                case "events": events = Integer.parseInt(value); break;
+                case "failureRate": failureRate = Double.parseDouble(value); break;
+                case "parallelism": parallelism = Integer.parseInt(value); break;
+                case "work": work = Integer.parseInt(value); break;
+                case "repeats": repeats = Integer.parseInt(value); break;
+                case "frameworks": frameworks = Arrays.asList(value.split(",")); break;
+                default: throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(Level.WARNING);
+        suites = SuiteGenerator.generate(frameworks, classes, methods);
+
+        AllocationMeter meter = new AllocationMeter();
+        System.out.println(String.format("%d test cases (%d classes x %d methods), %d events per test, failure rate %.2f, parallelism %d",
+                                        classes * methods, classes, methods, events, failureRate, parallelism));
+        System.out.println(String.format("%-8s %-9s %10s %12s %12s %10s", "", "listener", "wall ms", "alloc MB", "alloc MB/s", "save ms"));
+        for (String framework : frameworks) {
+            // warm up both paths
+            run(framework, false, meter);
+            run(framework, true, meter);
+
+            List<Measurement> off = new ArrayList<>();
+            List<Measurement> on = new ArrayList<>();
+            for (int i = 0; i < repeats; i++) {
+                off.add(run(framework, false, meter));
+                on.add(run(framework, true, meter));
+            }
+            Measurement without = Measurement.median(off);
+            Measurement with = Measurement.median(on);
+            print(framework, "off", without);
+            print(framework, "on", with);
+            System.out.println(String.format("%-8s %-9s %+10.1f %+12.1f %+12.1f   (%+.1f%% wall clock)", framework, "added",
+                                            with.wallMillis() - without.wallMillis(), with.allocatedMegabytes() - without.allocatedMegabytes(),
+                                            with.allocationRate() - without.allocationRate(),
+                                            100.0 * (with.wallNanos - without.wallNanos) / without.wallNanos));
+        }
+    }
+
+    private static void print(String framework, String listener, Measurement measurement) {
+        System.out.println(String.format("%-8s %-9s %10.1f %12.1f %12.1f %10.1f", framework, listener, measurement.wallMillis(),
+                                        measurement.allocatedMegabytes(), measurement.allocationRate(), measurement.saveNanos / 1e6));
+    }
+
+    private static Measurement run(String framework, boolean listener, AllocationMeter meter) {
+        // every run starts from an empty test result
+        TestAdvisorAdministrator.getInstance().getTestResult().getTestCaseExecutionList().clear();
+        System.gc();
+        reportEvents = listener;
+        saveNanos = 0;
+        long allocatedBefore = meter.getAllocatedBytes();
+        long start = System.nanoTime();
+        switch (framework) {
+            case "testng": runTestNG(listener); break;
+            case "junit4": runJUnit4(listener); break;
+            case "junit5": runJUnit5(listener); break;
+            default: throw new IllegalArgumentException("Unknown framework " + framework);
+        }
+        long wallNanos = System.nanoTime() - start;
+        return new Measurement(wallNanos, meter.getAllocatedBytes() - allocatedBefore, saveNanos);
+    }
+
+    private static void runTestNG(boolean listener) {
+        XmlSuite suite = new XmlSuite();
+        suite.setName("ListenerLoadHarness");
+        suite.setParallel(XmlSuite.ParallelMode.METHODS);
+        suite.setThreadCount(parallelism);
+        XmlTest test = new XmlTest(suite);
+        test.setName("synthetic");
+        List<XmlClass> xmlClasses = new ArrayList<>();
+        for (Class<?> testClass : suites.get("testng"))
+            xmlClasses.add(new XmlClass(testClass));
+        test.setXmlClasses(xmlClasses);
+        TestNG testng = new TestNG(false);
+        testng.setUseDefaultListeners(false);
+        testng.setVerbose(0);
+        testng.setXmlSuites(Collections.singletonList(suite));
+        if (listener)
+            testng.addListener(new TimedTestNGListener());
+        testng.run();
+    }
+
+    private static void runJUnit4(boolean listener) {
+        JUnitCore core = new JUnitCore();
+        if (listener)
+            core.addListener(new TimedJUnit4Listener());
+        // classes one after another, the methods of a class on the pool
+        Computer computer = new Computer() {
+            @Override
+            protected Runner getRunner(RunnerBuilder builder, Class<?> testClass) throws Throwable {
+                Runner runner = super.getRunner(builder, testClass);
+                if (runner instanceof ParentRunner)
+                    ((ParentRunner<?>) runner).setScheduler(new PoolScheduler(parallelism));
+                return runner;
+            }
+        };
+        core.run(Request.classes(computer, suites.get("junit4").toArray(new Class<?>[0])));
+    }
+
+    private static void runJUnit5(boolean listener) {
+        List<ClassSelector> selectors = new ArrayList<>();
+        for (Class<?> testClass : suites.get("junit5"))
+            selectors.add(selectClass(testClass));
+        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectors)
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism", String.valueOf(parallelism))
+                .build();
+        // the listener is registered through META-INF/services, which would record the run without
+        // the listener and record the run with the listener twice
+        Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
+                .enableTestExecutionListenerAutoRegistration(false)
+                .build());
+        if (listener)
+            launcher.execute(request, new TimedJUnit5Listener());
+        else
+            launcher.execute(request);
+    }
+
+    /**
+     * Body of every synthetic test case, called by the generated test methods
+     */
+    public static void runTestCase(int index) {
+        for (int i = 0; i < events; i++) {
+            doWork(index + i);
+            if (reportEvents)
+                TestAdvisorAdministrator.getInstance().appendTestCaseEvent(new TestEvent(TestEventType.AUTOMATION,
+                                                        "step " + i, Level.INFO.toString(), "click", "By.id: element" + i,
+                                                        "By.id: element" + i, 0, null));
+        }
+        // spread failures evenly over the suite
+        if ((int) ((index + 1) * failureRate) != (int) (index * failureRate))
+            throw new AssertionError("synthetic failure of test " + index);
+    }
+
+    private static long sink;
+
+    private static void doWork(int seed) {
+        long value = seed;
+        for (int i = 0; i < work; i++)
+            value = value * 6364136223846793005L + 1442695040888963407L;
+        sink += value;
+    }
+
+    /**
+     * Writes and compiles the synthetic test classes, test method m of class c runs
+     * test case c * methods + m
+     */
+    static final class SuiteGenerator {
+        private static final String PACKAGE_NAME = "com.salesforce.cte.benchmark.generated";
+
+        private SuiteGenerator() {}
+
+        static Map<String, List<Class<?>>> generate(List<String> frameworks, int classCount, int methodCount) throws IOException, ClassNotFoundException {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null)
+                throw new IllegalStateException("No Java compiler, run the harness on a JDK");
+            Path root = Files.createTempDirectory("ListenerLoadHarness");
+            Path sourceFolder = root.resolve(PACKAGE_NAME.replace('.', File.separatorChar));
+            Files.createDirectories(sourceFolder);
+
+            List<File> sources = new ArrayList<>();
+            Map<String, List<String>> classNames = new LinkedHashMap<>();
+            for (String framework : frameworks) {
+                List<String> names = new ArrayList<>();
+                for (int c = 0; c < classCount; c++) {
+                    String className = String.format("%sClass%03d", prefix(framework), c);
+                    Path source = sourceFolder.resolve(className + ".java");
+                    Files.write(source, source(framework, className, c, methodCount).getBytes(StandardCharsets.UTF_8));
+                    sources.add(source.toFile());
+                    names.add(PACKAGE_NAME + "." + className);
+                }
+                classNames.put(framework, names);
+            }
+
+            try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+                List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", root.toString(), "-nowarn");
+                if (!compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromFiles(sources)).call())
+                    throw new IllegalStateException("Fail to compile synthetic test classes in " + root);
+            }
+
+            ClassLoader loader = new URLClassLoader(new URL[] {root.toUri().toURL()}, ListenerLoadHarness.class.getClassLoader());
+            Map<String, List<Class<?>>> suites = new HashMap<>();
+            for (Map.Entry<String, List<String>> entry : classNames.entrySet()) {
+                List<Class<?>> testClasses = new ArrayList<>();
+                for (String className : entry.getValue())
+                    testClasses.add(Class.forName(className, true, loader));
+                suites.put(entry.getKey(), testClasses);
+            }
+            return suites;
+        }
+
+        private static String prefix(String framework) {
+            switch (framework) {
+                case "testng": return "TestNG";
+                case "junit4": return "JUnit4";
+                case "junit5": return "JUnit5";
+                default: throw new IllegalArgumentException("Unknown framework " + framework);
+            }
+        }
+
+        private static String source(String framework, String className, int classIndex, int methodCount) {
+            String annotation;
+            switch (framework) {
+                case "testng": annotation = "@org.testng.annotations.Test"; break;
+                case "junit4": annotation = "@org.junit.Test"; break;
+                default: annotation = "@org.junit.jupiter.api.Test";
+            }
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(PACKAGE_NAME).append(";\n\n");
+            source.append("public class ").append(className).append(" {\n");
+            for (int m = 0; m < methodCount; m++) {
+                source.append("    ").append(annotation).append('\n');
+                source.append(String.format("    public void method%03d() {%n", m));
+                source.append(String.format("        %s.runTestCase(%d);%n", ListenerLoadHarness.class.getName(), classIndex * methodCount + m));
+                source.append("    }\n");
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+    }
+
+    /**
+     * Runs the children of a JUnit4 runner on a fixed thread pool
+     */
+    private static final class PoolScheduler implements RunnerScheduler {
+        private final ExecutorService executor;
+
+        PoolScheduler(int threadCount) {
+            executor = Executors.newFixedThreadPool(threadCount);
+        }
+
+        @Override
+        public void schedule(Runnable childStatement) {
+            executor.execute(childStatement);
+        }
+
+        @Override
+        public void finished() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class TimedTestNGListener extends TestListener {
+        @Override
+        public void onExecutionFinish() {
+            long start = System.nanoTime();
+            super.onExecutionFinish();
+            saveNanos = System.nanoTime() - start;
+        }
+    }
+
+    public static class TimedJUnit4Listener extends TestListenerJUnit4 {
+        @Override
+        public synchronized void testRunFinished(Result result) throws Exception {
+            long start = System.nanoTime();
+            super.testRunFinished(result);
+            saveNanos = System.nanoTime() - start;
+        }
+    }
+
+    public static class TimedJUnit5Listener extends TestListenerJUnit5 {
+        @Override
+        public void testPlanExecutionFinished(TestPlan testPlan) {
+            long start = System.nanoTime();
+            super.testPlanExecutionFinished(testPlan);
+            saveNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Bytes allocated on the heap: bytes reclaimed by every GC plus the change of heap usage
+     */
+    private static final class AllocationMeter implements NotificationListener {
+        private final Set<String> heapPools = new HashSet<>();
+        private final AtomicLong reclaimed = new AtomicLong();
+
+        AllocationMeter() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP)
+                    heapPools.add(pool.getName());
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+        }
+
+        long getAllocatedBytes() {
+            return reclaimed.get() + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            reclaimed.addAndGet(heapUsed(info.getGcInfo().getMemoryUsageBeforeGc()) - heapUsed(info.getGcInfo().getMemoryUsageAfterGc()));
+        }
+
+        private long heapUsed(Map<String, MemoryUsage> usage) {
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> entry : usage.entrySet()) {
+                if (heapPools.contains(entry.getKey()))
+                    used += entry.getValue().getUsed();
+            }
+            return used;
+        }
+    }
+
+    private static final class Measurement {
+        final long wallNanos;
+        final long allocatedBytes;
+        final long saveNanos;
+
+        Measurement(long wallNanos, long allocatedBytes, long saveNanos) {
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.saveNanos = saveNanos;
+        }
+
+        double wallMillis() {
+            return wallNanos / 1e6;
+        }
+
+        double allocatedMegabytes() {
+            return allocatedBytes / (1024.0 * 1024.0);
+        }
+
+        double allocationRate() {
+            return allocatedMegabytes() / (wallNanos / 1e9);
+        }
+
+        /**
+         * Median of every value on its own
+         */
+        static Measurement median(List<Measurement> measurements) {
+            int middle = measurements.size() / 2;
+            return new Measurement(measurements.stream().mapToLong(m -> m.wallNanos).sorted().toArray()[middle],
+                                    measurements.stream().mapToLong(m -> m.allocatedBytes).sorted().toArray()[middle],
+                                    measurements.stream().mapToLong(m -> m.saveNanos).sorted().toArray()[middle]);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.benchmark;
+
+import java.util.logging.Level;
+
+import com.salesforce.cte.common.ColumnarEventList;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestEvent;
+import com.salesforce.cte.common.TestEventType;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Retained heap of the test result model measured with JOL.
+ * This is a footprint tool, not a timing benchmark, timings are measured
+ * by the JMH benchmarks in src/jmh/java.
+ * 
+ * A test case execution is filled with Selenium events the way the listeners create them:
+ * a level from {@link Level#toString()}, commands and locators built per event,
+ * and a unique event content. The per event cost is the retained size of the
+ * test case divided by the number of events, after the empty test case is subtracted.
+ * It is measured for both the default event list and the columnar event list.
+ * 
+ * Usage: ModelFootprintBenchmark [events per test case]
+ */
+public class ModelFootprintBenchmark {
+    private static final String[] COMMANDS = {"findElement", "click", "sendKeys", "getText", "isDisplayed"};
+
+    public static void main(String[] args) {
+        int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        TestEvent event = new TestEvent(TestEventType.AUTOMATION, "event", Level.INFO.toString());
+        System.out.println(String.format("single event, retained bytes:           %8d", GraphLayout.parseInstance(event).totalSize()));
+        for (boolean uniqueContent : new boolean[] {true, false}) {
+            String content = uniqueContent ? "unique" : "shared";
+            measure("event objects, " + content + " event content", new TestCaseExecution(), new TestCaseExecution(),
+                    eventCount, uniqueContent);
+
+            TestCaseExecution emptyColumnar = new TestCaseExecution();
+            emptyColumnar.setEventList(new ColumnarEventList());
+            TestCaseExecution columnar = new TestCaseExecution();
+            columnar.setEventList(new ColumnarEventList());
+            measure("columnar events, " + content + " event content", emptyColumnar, columnar, eventCount, uniqueContent);
+        }
+    }
+
+    private static void measure(String name, TestCaseExecution empty, TestCaseExecution test, int eventCount, boolean uniqueContent) {
+        empty.setTestName("com.salesforce.cte.benchmark.SyntheticTest.test");
+        long emptySize = GraphLayout.parseInstance(empty).totalSize();
+
+        test.setTestName("com.salesforce.cte.benchmark.SyntheticTest.test");
+        for (int i = 0; i < eventCount; i++) {
+            // new strings per event, like values coming from WebDriver callbacks
+            String command = new String(COMMANDS[i % COMMANDS.length]);
+            String locator = "By.xpath: //div[@id='item-" + i % 20 + "']";
+            test.appendEvent(new TestEvent(TestEventType.AUTOMATION, uniqueContent ? "event " + i : "event", Level.INFO.toString(),
+                                        command, "null", locator, 0, null));
+        }
+        GraphLayout layout = GraphLayout.parseInstance(test);
+        long testSize = layout.totalSize();
+
+        System.out.println(name + ":");
+        System.out.println(String.format("  empty test case execution, bytes:     %8d", emptySize));
+        System.out.println(String.format("  test case with %d events, bytes:    %8d", eventCount, testSize));
+        System.out.println(String.format("  per event in a test case, bytes:      %8.1f", (double) (testSize - emptySize) / eventCount));
+        System.out.println(String.format("  retained objects:                     %8d", layout.totalCount()));
+    }
+}
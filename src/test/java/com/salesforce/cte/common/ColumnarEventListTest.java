@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.common;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import org.junit.Test;
+
+public class ColumnarEventListTest {
+
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                                            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+    @Test
+    public void testSameJsonAsEventObjects() throws Exception {
+        TestCaseExecution columnar = new TestCaseExecution();
+        columnar.setEventList(new ColumnarEventList());
+        TestCaseExecution objects = new TestCaseExecution();
+        objects.setStartTime(columnar.getStartTime());
+        objects.setEndTime(columnar.getEndTime());
+
+        for (int i = 0; i < 100; i++) {
+            TestEvent event = new TestEvent(TestEventType.values()[i % TestEventType.values().length], "content " + i,
+                                    i % 3 == 0 ? Level.WARNING.toString() : Level.INFO.toString(),
+                                    "click", "param " + i, "//div[" + i % 5 + "]", i, new File("screenshot" + i));
+            columnar.appendEvent(event);
+            objects.appendEvent(event);
+        }
+        columnar.appendEvent(new TestEvent());
+        objects.appendEvent(new TestEvent());
+
+        assertEquals(101, columnar.getEventList().size());
+        assertEquals(objectMapper.writeValueAsString(objects), objectMapper.writeValueAsString(columnar));
+        // 2 levels, 1 command and 5 locators
+        assertEquals(8, ((ColumnarEventList) columnar.getEventList()).getDictionarySize());
+    }
+
+    @Test
+    public void testEventView() {
+        ColumnarEventList eventList = new ColumnarEventList();
+        TestEvent event = new TestEvent(TestEventType.SCREEN_SHOT, "content", "INFO", "click", "", "//a", 1, new File("a.png"));
+        eventList.add(event);
+
+        TestEvent view = eventList.get(0);
+        assertEquals(TestEventType.SCREEN_SHOT, view.getEventType());
+        assertEquals(event.getEventTime(), view.getEventTime());
+        assertEquals("//a", view.getSeleniumLocator());
+
+        view.setScreenshotPath("Screenshots/00001.png");
+        view.setEventLevel("WARNING");
+        view.setEventTime(Instant.EPOCH);
+        assertEquals("Screenshots/00001.png", eventList.get(0).getScreenshotPath());
+        assertEquals("WARNING", eventList.get(0).getEventLevel());
+        assertEquals(Instant.EPOCH, eventList.get(0).getEventTime());
+
+        TestEvent previous = eventList.set(0, new TestEvent(TestEventType.URL, "url", "FINE"));
+        assertEquals("Screenshots/00001.png", previous.getScreenshotPath());
+        assertEquals(TestEventType.URL, eventList.get(0).getEventType());
+        assertNull(eventList.get(0).getSeleniumCmd());
+
+        eventList.clear();
+        assertTrue(eventList.isEmpty());
+        assertEquals(0, eventList.getDictionarySize());
+    }
+
+    @Test
+    public void testIndexedAccess() {
+        ColumnarEventList eventList = new ColumnarEventList();
+        eventList.add(new TestEvent(TestEventType.SCREEN_SHOT, "content", "INFO", "click", "", "//a", 3, new File("a.png")));
+
+        assertEquals(TestEventType.SCREEN_SHOT, eventList.getEventType(0));
+        assertEquals(3, eventList.getScreenshotRecordNumber(0));
+        eventList.setScreenshotPath(0, "Screenshots/00003.png");
+        assertEquals("Screenshots/00003.png", eventList.getScreenshotPath(0));
+        assertEquals("Screenshots/00003.png", eventList.get(0).getScreenshotPath());
+        assertEquals(eventList.get(0).getEventTime(), eventList.getEventTime(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStaleView() {
+        ColumnarEventList eventList = new ColumnarEventList();
+        eventList.add(new TestEvent(TestEventType.URL, "first", "INFO"));
+        TestEvent view = eventList.get(0);
+        eventList.clear();
+        eventList.add(new TestEvent(TestEventType.URL, "second", "INFO"));
+
+        view.getEventContent();
+    }
+
+    @Test
+    public void testInsertAndRemove() {
+        ColumnarEventList eventList = new ColumnarEventList();
+        for (int i = 0; i < 5; i++)
+            eventList.add(new TestEvent(TestEventType.URL, "event " + i, "INFO"));
+
+        eventList.add(0, new TestEvent(TestEventType.AUTOMATION, "first", "WARNING"));
+        eventList.add(3, new TestEvent(TestEventType.AUTOMATION, "middle", "WARNING"));
+        eventList.add(eventList.size(), new TestEvent(TestEventType.AUTOMATION, "last", "WARNING"));
+        List<String> contents = new ArrayList<>();
+        for (TestEvent event : eventList)
+            contents.add(event.getEventContent());
+        assertEquals(Arrays.asList("first", "event 0", "event 1", "middle", "event 2", "event 3", "event 4", "last"), contents);
+
+        TestEvent removed = eventList.remove(3);
+        assertEquals("middle", removed.getEventContent());
+        assertEquals("WARNING", removed.getEventLevel());
+        assertEquals("event 2", eventList.get(3).getEventContent());
+
+        Iterator<TestEvent> iterator = eventList.iterator();
+        while (iterator.hasNext()) {
+            if (TestEventType.AUTOMATION == iterator.next().getEventType())
+                iterator.remove();
+        }
+        assertEquals(5, eventList.size());
+        for (int i = 0; i < 5; i++)
+            assertEquals("event " + i, eventList.get(i).getEventContent());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testViewAfterRemove() {
+        ColumnarEventList eventList = new ColumnarEventList();
+        eventList.add(new TestEvent(TestEventType.URL, "first", "INFO"));
+        eventList.add(new TestEvent(TestEventType.URL, "second", "INFO"));
+        TestEvent view = eventList.get(1);
+        eventList.remove(0);
+
+        // the view would read the event after it
+        view.getEventContent();
+    }
+
+    @Test
+    public void testConcurrentViewUpdates() throws Exception {
+        ColumnarEventList eventList = new ColumnarEventList();
+        for (int i = 0; i < 1000; i++)
+            eventList.add(new TestEvent(TestEventType.SCREEN_SHOT, "event " + i, "INFO"));
+        List<TestEvent> views = new ArrayList<>(eventList);
+
+        // screenshot relocation updates views while the test thread appends
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < views.size(); i += 4) {
+                        views.get(i).setScreenshotPath("Screenshots/" + i + ".png");
+                        views.get(i).setEventLevel("LEVEL " + i % 50);
+                    }
+                }));
+            }
+            for (int i = 0; i < 10000; i++)
+                eventList.add(new TestEvent(TestEventType.URL, "appended " + i, "LEVEL " + i % 70));
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(11000, eventList.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Screenshots/" + i + ".png", eventList.getScreenshotPath(i));
+            assertEquals("LEVEL " + i % 50, eventList.get(i).getEventLevel());
+        }
+        for (int i = 0; i < 10000; i++)
+            assertEquals("LEVEL " + i % 70, eventList.get(1000 + i).getEventLevel());
+        // INFO and LEVEL 0 to 69
+        assertEquals(71, eventList.getDictionarySize());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() {
+        new ColumnarEventList().get(0);
+    }
+}
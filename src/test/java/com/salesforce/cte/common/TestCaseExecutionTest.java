@@ -7,10 +7,15 @@
 
 package com.salesforce.cte.common;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.logging.Level;
@@ -102,4 +107,23 @@ public class TestCaseExecutionTest {
 		assertNotEquals(traceId, traceId2);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testJsonOutput() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+											.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+		testCaseExecution.setTestName("t");
+		testCaseExecution.setStartTime(Instant.parse("2022-01-01T00:00:00.123456789Z"));
+		testCaseExecution.setEndTime(Instant.parse("2022-01-01T00:00:05Z"));
+		String json = objectMapper.writeValueAsString(testCaseExecution);
+		assertEquals("{\"testName\":\"t\",\"eventList\":[],\"testStatus\":\"PASSED\",\"startTime\":\"2022-01-01T00:00:00.123456789Z\","
+					+ "\"endTime\":\"2022-01-01T00:00:05Z\",\"browser\":\"\",\"browserVersion\":\"\",\"screenResolution\":\"\","
+					+ "\"threadId\":" + testCaseExecution.getThreadId() + ",\"traceId\":\"\",\"screenShotFileList\":[],\"configuration\":false}", json);
+
+		testCaseExecution.getScreenShotFileList().add(new File("screenshot.png"));
+		TestCaseExecution copy = objectMapper.readValue(objectMapper.writeValueAsString(testCaseExecution), TestCaseExecution.class);
+		assertEquals(1, copy.getScreenShotFileList().size());
+		assertEquals(testCaseExecution.getStartTime(), copy.getStartTime());
+		assertEquals(testCaseExecution.getEndTime(), copy.getEndTime());
+	}
+
+}
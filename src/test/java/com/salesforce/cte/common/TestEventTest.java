@@ -14,6 +14,10 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.logging.Level;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
 import org.junit.Test;
 
 /**
@@ -56,4 +60,27 @@ public class TestEventTest {
 		assertEquals(5, argsEvent.getScreenshotRecordNumber());
 		assertTrue(argsEvent.getScreenshotPath().contains("./test"));
 	}
+
+	/**
+	 * Tests to make sure that repeated values share one instance and the JSON output keeps its layout
+	 */
+	@Test
+	public void testEventCompactModel() throws Exception {
+		TestEvent event = new TestEvent(TestEventType.AUTOMATION, "c", new String("INFO"), new String("click"), "p", new String("loc"), 3, null);
+		assertSame(Level.INFO.getName(), event.getEventLevel());
+		assertSame(argsEvent.getSeleniumLocator(), new TestEvent(TestEventType.URL, "", "INFO", "", "", new String("//locator"), 0, null).getSeleniumLocator());
+
+		event.setEventTime(Instant.parse("2022-01-01T00:00:01.123456789Z"));
+		assertEquals(Instant.parse("2022-01-01T00:00:01.123456789Z"), event.getEventTime());
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+											.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+		assertEquals("{\"eventType\":\"AUTOMATION\",\"eventLevel\":\"INFO\",\"eventContent\":\"c\","
+					+ "\"eventTime\":\"2022-01-01T00:00:01.123456789Z\",\"seleniumCmd\":\"click\",\"seleniumCmdParam\":\"p\","
+					+ "\"seleniumLocator\":\"loc\",\"screenshotRecordNumber\":3,\"screenshotPath\":\"\"}",
+					objectMapper.writeValueAsString(event));
+
+		TestEvent emptyEvent = new TestEvent();
+		assertNull(emptyEvent.getEventTime());
+		assertNull(objectMapper.readValue(objectMapper.writeValueAsString(emptyEvent), TestEvent.class).getEventTime());
+	}
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salesforce.cte.admin.JsonReporter;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * FlakyTestAnalyzerTest will test flakiness scores computed from the history index
+ */
+public class FlakyTestAnalyzerTest {
+
+    private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+
+    private Path registry;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        registry = Files.createTempDirectory("").resolve(".testadvisor");
+        registry.toFile().mkdirs();
+        registry.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testScore() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 10; run++)
+                index.add("TestRun-" + run, newResult(run));
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, 10);
+            assertEquals(30, analyzer.update());
+
+            // testLogin alternates
+            FlakyTest login = analyzer.getFlakiness("testLogin");
+            assertEquals(1.0, login.getScore(), 0.0001);
+            assertEquals(9, login.getFlips());
+            assertEquals(10, login.getExecutions());
+            assertEquals(5, login.getFailures());
+            assertEquals(TestStatus.FAILED, login.getLastStatus());
+            // testCheckout fails once in run 5
+            FlakyTest checkout = analyzer.getFlakiness("testCheckout");
+            assertEquals(2.0 / 9, checkout.getScore(), 0.0001);
+            assertEquals(TestStatus.PASSED, checkout.getLastStatus());
+            assertEquals(0.0, analyzer.getFlakiness("testLogout").getScore(), 0.0);
+            assertNull(analyzer.getFlakiness("testSearch"));
+
+            assertTrue(analyzer.isFlaky("testLogin", 0.5));
+            assertFalse(analyzer.isFlaky("testCheckout", 0.5));
+            assertFalse(analyzer.isFlaky("testUnknown", 0.5));
+
+            List<FlakyTest> ranking = analyzer.getRanking(10, 2);
+            assertEquals(2, ranking.size());
+            assertEquals("testLogin", ranking.get(0).getTestName());
+            assertEquals("testCheckout", ranking.get(1).getTestName());
+            assertEquals(1, analyzer.getRanking(1, 2).size());
+            assertTrue(analyzer.getRanking(10, 11).isEmpty());
+        }
+    }
+
+    @Test
+    public void testWindow() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 10; run++)
+                index.add("TestRun-" + run, newResult(run));
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, 4);
+            analyzer.update();
+
+            // failure of run 5 is out of the last 4 runs
+            FlakyTest checkout = analyzer.getFlakiness("testCheckout");
+            assertEquals(0, checkout.getFlips());
+            assertEquals(4, checkout.getExecutions());
+            assertEquals(3, analyzer.getFlakiness("testLogin").getFlips());
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        Path stateFile = registry.resolve(FlakyTestAnalyzer.STATE_FILE_NAME);
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 5; run++)
+                index.add("TestRun-" + run, newResult(run));
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, FlakyTestAnalyzer.MAX_WINDOW);
+            assertEquals(15, analyzer.update());
+            assertEquals(0, analyzer.update());
+            analyzer.save(stateFile);
+        }
+
+        // a new run lands in the index, written by another process
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 5; run < 10; run++)
+                index.add("TestRun-" + run, newResult(run));
+        }
+
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, FlakyTestAnalyzer.MAX_WINDOW);
+            assertTrue(analyzer.load(stateFile));
+            assertEquals(15, analyzer.update());
+            assertEquals(10, analyzer.getFlakiness("testLogin").getExecutions());
+            assertEquals(9, analyzer.getFlakiness("testLogin").getFlips());
+            assertEquals(2, analyzer.getFlakiness("testCheckout").getFlips());
+        }
+    }
+
+    @Test
+    public void testRebuiltIndex() throws IOException {
+        Path stateFile = registry.resolve(FlakyTestAnalyzer.STATE_FILE_NAME);
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 10; run++)
+                index.add("TestRun-" + run, newResult(run));
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, FlakyTestAnalyzer.MAX_WINDOW);
+            analyzer.update();
+            analyzer.save(stateFile);
+        }
+        Files.delete(registry.resolve(TestHistoryIndex.INDEX_FILE_NAME));
+
+        // built again from other runs to the same length, the saved position points into other results
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 10; run < 20; run++)
+                index.add("TestRun-" + run, newResult(run == 15 ? 5 : 0));
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, FlakyTestAnalyzer.MAX_WINDOW);
+            assertFalse(analyzer.load(stateFile));
+            assertEquals(30, analyzer.update());
+            assertEquals(10, analyzer.getFlakiness("testLogin").getExecutions());
+            assertEquals(2, analyzer.getFlakiness("testLogin").getFlips());
+        }
+    }
+
+    @Test
+    public void testCorruptState() throws IOException {
+        Path stateFile = registry.resolve(FlakyTestAnalyzer.STATE_FILE_NAME);
+        Files.write(stateFile, "not a state".getBytes());
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            FlakyTestAnalyzer analyzer = new FlakyTestAnalyzer(index, FlakyTestAnalyzer.MAX_WINDOW);
+            assertFalse(analyzer.load(stateFile));
+            assertFalse(analyzer.load(registry.resolve("missing.state")));
+            assertEquals(0, analyzer.getTestCount());
+        }
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        for (int run = 0; run < 4; run++) {
+            registry.resolve("TestRun-2022010" + run + "-000000").toFile().mkdirs();
+            new JsonReporter(registry.resolve("TestRun-2022010" + run + "-000000"))
+                .writeTestResult(newResult(run));
+        }
+        FlakyTestAnalyzer.main(new String[] {registry.toString()});
+
+        JsonNode report = new ObjectMapper().readTree(registry.resolve(FlakyTestAnalyzer.REPORT_FILE_NAME).toFile());
+        assertEquals(1, report.size());
+        assertEquals("testLogin", report.get(0).get("testName").asText());
+        assertEquals(3, report.get(0).get("flips").asInt());
+        assertTrue(Files.exists(registry.resolve(FlakyTestAnalyzer.STATE_FILE_NAME)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            new FlakyTestAnalyzer(index, FlakyTestAnalyzer.MAX_WINDOW + 1);
+        }
+    }
+
+    /**
+     * testLogin fails in odd runs, testLogout always passes,
+     * testCheckout fails in run 5 only, testSearch is always skipped
+     */
+    private static TestAdvisorResult newResult(int run) {
+        TestAdvisorResult testResult = new TestAdvisorResult();
+        Instant start = START.plusSeconds(run * 3600L);
+        testResult.setBuildStartTime(start);
+        testResult.getTestCaseExecutionList().add(newTest("testLogin", start,
+                                                    run % 2 == 0 ? TestStatus.PASSED : TestStatus.FAILED));
+        testResult.getTestCaseExecutionList().add(newTest("testLogout", start, TestStatus.PASSED));
+        testResult.getTestCaseExecutionList().add(newTest("testCheckout", start,
+                                                    run == 5 ? TestStatus.FAILED : TestStatus.PASSED));
+        testResult.getTestCaseExecutionList().add(newTest("testSearch", start, TestStatus.SKIPPED));
+        return testResult;
+    }
+
+    private static TestCaseExecution newTest(String name, Instant start, TestStatus status) {
+        TestCaseExecution test = new TestCaseExecution();
+        test.setTestName(name);
+        test.setStartTime(start);
+        test.setEndTime(start.plusMillis(100));
+        test.setTestStatus(status);
+        return test;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testng.xml.SuiteXmlParser;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+
+/**
+ * ShardPlannerTest will test splitting tests into shards by their history
+ */
+public class ShardPlannerTest {
+
+    private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+    private static final String TEST_CLASS_A = "com.test.A";
+    private static final String TEST_CLASS_B = "com.test.B";
+
+    private Path registry;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        registry = Files.createTempDirectory("").resolve(".testadvisor");
+        registry.toFile().mkdirs();
+        registry.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testPlan() {
+        Map<String, Long> estimates = new LinkedHashMap<>();
+        estimates.put("com.test.A.testA", 10L);
+        estimates.put("com.test.A.testB", 70L);
+        estimates.put("com.test.B.testC", 40L);
+        estimates.put("com.test.B.testD", 30L);
+        estimates.put("com.test.C.testE", 50L);
+
+        List<TestShard> shards = new ShardPlanner(2).plan(estimates);
+        assertEquals(2, shards.size());
+        assertEquals(1, shards.get(0).getShardNumber());
+        assertEquals(Arrays.asList("com.test.A.testB", "com.test.B.testD"), shards.get(0).getTestNames());
+        assertEquals(100, shards.get(0).getExpectedMillis());
+        assertEquals(Arrays.asList("com.test.C.testE", "com.test.B.testC", "com.test.A.testA"), shards.get(1).getTestNames());
+        assertEquals(100, shards.get(1).getExpectedMillis());
+
+        // more shards than tests
+        shards = new ShardPlanner(8).plan(estimates);
+        assertEquals(8, shards.size());
+        assertEquals(0, shards.get(7).getTestNames().size());
+    }
+
+    @Test
+    public void testLargeSuite() throws IOException {
+        // 50k tests of 100 classes, durations from 10ms to a minute, mostly short
+        int testCount = 50_000;
+        Random random = new Random(42);
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            long[] durations = new long[testCount];
+            for (int i = 0; i < testCount; i++)
+                durations[i] = 10 + (long) (Math.pow(random.nextDouble(), 3) * 60_000);
+            for (int run = 0; run < 2; run++) {
+                TestAdvisorResult testResult = new TestAdvisorResult();
+                for (int i = 0; i < testCount; i++)
+                    testResult.getTestCaseExecutionList().add(newTest("com.test.Class" + i % 100 + ".test" + i, durations[i]));
+                index.add("TestRun-" + run, testResult);
+            }
+
+            // planning time is measured by ShardPlannerBenchmark
+            TestDurationEstimator estimator = new TestDurationEstimator(index, 5);
+            List<TestShard> shards = new ShardPlanner(16).plan(estimator, index.getTestNames());
+
+            Set<String> planned = new HashSet<>();
+            long total = 0;
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (TestShard shard : shards) {
+                planned.addAll(shard.getTestNames());
+                total += shard.getExpectedMillis();
+                min = Math.min(min, shard.getExpectedMillis());
+                max = Math.max(max, shard.getExpectedMillis());
+            }
+            assertEquals(testCount, planned.size());
+            assertEquals(Arrays.stream(durations).sum(), total);
+            // longest shard exceeds the shortest by at most the longest test
+            assertTrue(max - min <= Arrays.stream(durations).max().getAsLong());
+            assertTrue(max < total / 16 * 1.01);
+        }
+    }
+
+    @Test
+    public void testUnknownDuration() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            TestAdvisorResult testResult = new TestAdvisorResult();
+            testResult.getTestCaseExecutionList().add(newTest("com.test.A.testA", 100));
+            testResult.getTestCaseExecutionList().add(newTest("com.test.A.testB", 200));
+            testResult.getTestCaseExecutionList().add(newTest("com.test.A.testC", 300));
+            TestCaseExecution skipped = newTest("com.test.A.testSkipped", 0);
+            skipped.setTestStatus(TestStatus.SKIPPED);
+            testResult.getTestCaseExecutionList().add(skipped);
+            index.add("TestRun-0", testResult);
+
+            Map<String, Long> estimates = new TestDurationEstimator(index, 5)
+                        .estimateMillis(Arrays.asList("com.test.A.testC", "com.test.A.testNew", "com.test.A.testSkipped"));
+            assertEquals(300, (long) estimates.get("com.test.A.testC"));
+            // median of tests with history
+            assertEquals(300, (long) estimates.get("com.test.A.testNew"));
+            assertEquals(300, (long) estimates.get("com.test.A.testSkipped"));
+            assertEquals(-1, new TestDurationEstimator(index, 5).estimateMillis("com.test.A.testNew"));
+
+            estimates = new TestDurationEstimator(index, 5).estimateMillis(Arrays.asList("com.test.B.testNew"));
+            assertEquals(0, (long) estimates.get("com.test.B.testNew"));
+        }
+    }
+
+    @Test
+    public void testWriteShards() throws IOException {
+        Map<String, Long> estimates = new HashMap<>();
+        estimates.put(TEST_CLASS_B + ".testPlan", 10L);
+        estimates.put(TEST_CLASS_A + ".testMain", 20L);
+        estimates.put(TEST_CLASS_A + ".testPlan", 30L);
+        TestShard shard = new ShardPlanner(1).plan(estimates).get(0);
+
+        Path suiteFile = registry.resolve("shard-1.xml");
+        ShardPlanner.writeTestNGSuite(shard, suiteFile);
+        XmlSuite suite;
+        try (InputStream input = Files.newInputStream(suiteFile)) {
+            // test classes are not loaded
+            suite = new SuiteXmlParser().parse(suiteFile.toString(), input, false);
+        }
+        assertEquals("Shard-1", suite.getName());
+        List<XmlClass> classes = suite.getTests().get(0).getXmlClasses();
+        assertEquals(2, classes.size());
+        assertEquals(TEST_CLASS_A, classes.get(0).getName());
+        assertEquals("testMain", classes.get(0).getIncludedMethods().get(0).getName());
+        assertEquals("testPlan", classes.get(0).getIncludedMethods().get(1).getName());
+        assertEquals(TEST_CLASS_B, classes.get(1).getName());
+
+        Path argumentFile = registry.resolve("shard-1.args");
+        ShardPlanner.writeJUnitSelectors(shard, argumentFile);
+        assertEquals(Arrays.asList("--select-method=" + TEST_CLASS_A + "#testMain", "--select-method=" + TEST_CLASS_A + "#testPlan",
+                                    "--select-method=" + TEST_CLASS_B + "#testPlan"),
+                    Files.readAllLines(argumentFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInvocations() throws IOException {
+        Map<String, Long> estimates = new HashMap<>();
+        estimates.put(TEST_CLASS_A + ".testPlan[1]", 30L);
+        estimates.put(TEST_CLASS_A + ".testPlan[2]", 30L);
+        estimates.put(TEST_CLASS_A + ".testMain", 40L);
+        estimates.put(TEST_CLASS_B + ".testPlan", 20L);
+
+        // the invocations of a method are planned together
+        List<TestShard> shards = new ShardPlanner(2).plan(estimates);
+        assertEquals(Arrays.asList(TEST_CLASS_A + ".testPlan"), shards.get(0).getTestNames());
+        assertEquals(60, shards.get(0).getExpectedMillis());
+        assertEquals(Arrays.asList(TEST_CLASS_A + ".testMain", TEST_CLASS_B + ".testPlan"), shards.get(1).getTestNames());
+
+        Path argumentFile = registry.resolve("shard-1.args");
+        ShardPlanner.writeJUnitSelectors(shards.get(0), argumentFile);
+        assertEquals(Arrays.asList("--select-method=" + TEST_CLASS_A + "#testPlan"),
+                    Files.readAllLines(argumentFile, StandardCharsets.UTF_8));
+        assertEquals(TEST_CLASS_A + ".testPlan", ShardPlanner.getMethodName(TEST_CLASS_A + ".testPlan[2][1]"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnmappedTest() throws IOException {
+        Map<String, Long> estimates = new HashMap<>();
+        estimates.put(TEST_CLASS_A + ".testPlan", 30L);
+        estimates.put("testPlan()", 30L);
+        TestShard shard = new ShardPlanner(1).plan(estimates).get(0);
+
+        ShardPlanner.writeJUnitSelectors(shard, registry.resolve("shard-1.args"));
+    }
+
+    @Test
+    public void testMainUnmappedTest() throws IOException {
+        Path testList = registry.resolve("tests.txt");
+        Files.write(testList, Arrays.asList("com.test.A.test1", "test2"));
+        Path output = registry.resolve("shards");
+        try {
+            ShardPlanner.main(new String[] {registry.toString(), "2", output.toString(), testList.toString()});
+            fail("test2 can not be mapped to a class and method");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("test2"));
+        }
+        assertFalse(Files.exists(output.resolve("shard-1.xml")));
+    }
+
+    @Test
+    public void testMain() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            TestAdvisorResult testResult = new TestAdvisorResult();
+            for (int i = 0; i < 10; i++)
+                testResult.getTestCaseExecutionList().add(newTest("com.test.A.test" + i, 100 * i));
+            index.add("TestRun-0", testResult);
+        }
+        Path testList = registry.resolve("tests.txt");
+        Files.write(testList, Arrays.asList("com.test.A.test9", "", "com.test.A.test1", "com.test.A.testNew"));
+        Path output = registry.resolve("shards");
+        ShardPlanner.main(new String[] {registry.toString(), "3", output.toString(), testList.toString()});
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(Files.exists(output.resolve("shard-" + i + ".xml")));
+            assertEquals(1, Files.readAllLines(output.resolve("shard-" + i + ".args")).size());
+        }
+        assertEquals(Arrays.asList("--select-method=com.test.A#test9"), Files.readAllLines(output.resolve("shard-1.args")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidShardCount() {
+        new ShardPlanner(0);
+    }
+
+    private static TestCaseExecution newTest(String name, long durationMillis) {
+        TestCaseExecution test = new TestCaseExecution();
+        test.setTestName(name);
+        test.setStartTime(START);
+        test.setEndTime(START.plusMillis(durationMillis));
+        test.setTestStatus(TestStatus.PASSED);
+        return test;
+    }
+}
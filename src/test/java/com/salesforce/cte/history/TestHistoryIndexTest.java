@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import com.salesforce.cte.admin.JsonReporter;
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestHistoryIndexTest will test the history index of a registry
+ */
+public class TestHistoryIndexTest {
+
+    private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+
+    private Path registry;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        registry = Files.createTempDirectory("").resolve(".testadvisor");
+        registry.toFile().mkdirs();
+        registry.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testHistory() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 5; run++)
+                assertTrue(index.add("TestRun-" + run, newResult(run)));
+
+            List<TestHistoryEntry> history = index.getHistory("testLogin", 3);
+            assertEquals(3, history.size());
+            assertEquals("TestRun-4", history.get(0).getRunName());
+            assertEquals("TestRun-2", history.get(2).getRunName());
+            assertEquals(START.plusSeconds(4 * 3600), history.get(0).getStartTime());
+            assertEquals(1400, history.get(0).getDurationMillis());
+            assertEquals(TestStatus.PASSED, history.get(0).getStatus());
+            assertEquals(TestStatus.FAILED, history.get(1).getStatus());
+
+            // testSearch only ran in odd runs
+            history = index.getHistory("testSearch", 10);
+            assertEquals(2, history.size());
+            assertEquals("TestRun-3", history.get(0).getRunName());
+            assertEquals(TestStatus.SKIPPED, history.get(1).getStatus());
+
+            assertTrue(index.getHistory("testUnknown", 10).isEmpty());
+            assertEquals(3, index.getTestNames().size());
+            assertEquals(5, index.getRunCount());
+            // a run is indexed once
+            assertFalse(index.add("TestRun-4", newResult(4)));
+        }
+
+        // rebuilt from the file
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertEquals(5, index.getHistory("testLogin", 100).size());
+            assertEquals("TestRun-4", index.getHistory("testLogin", 1).get(0).getRunName());
+            assertTrue(index.isIndexed("TestRun-0"));
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws IOException {
+        // two JVMs of parallel forks share the index
+        try (TestHistoryIndex first = TestHistoryIndex.open(registry);
+             TestHistoryIndex second = TestHistoryIndex.open(registry)) {
+            first.add("TestRun-0/fork-1-100", newResult(0));
+            second.add("TestRun-0/fork-2-200", newResult(1));
+            first.add("TestRun-1/fork-1-300", newResult(2));
+
+            first.refresh();
+            second.refresh();
+            for (TestHistoryIndex index : new TestHistoryIndex[] {first, second}) {
+                List<TestHistoryEntry> history = index.getHistory("testLogin", 10);
+                assertEquals(3, history.size());
+                assertEquals("TestRun-1/fork-1-300", history.get(0).getRunName());
+                assertEquals("TestRun-0/fork-2-200", history.get(1).getRunName());
+                assertEquals("TestRun-0/fork-1-100", history.get(2).getRunName());
+                assertEquals(3, index.getTestNames().size());
+            }
+        }
+    }
+
+    @Test
+    public void testUncommittedTail() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            index.add("TestRun-0", newResult(0));
+        }
+        // left behind by a writer which died before committing
+        Files.write(registry.resolve(TestHistoryIndex.INDEX_FILE_NAME), new byte[] {3, 0, 0, 7}, StandardOpenOption.APPEND);
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertEquals(1, index.getHistory("testLogin", 10).size());
+            index.add("TestRun-1", newResult(1));
+        }
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertEquals(2, index.getHistory("testLogin", 10).size());
+        }
+    }
+
+    @Test
+    public void testIndexRegistry() throws IOException {
+        for (int run = 0; run < 3; run++) {
+            registry.resolve("TestRun-2022010" + run + "-000000").toFile().mkdirs();
+            new JsonReporter(registry.resolve("TestRun-2022010" + run + "-000000")).writeTestResult(newResult(run));
+        }
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertEquals(3, index.indexRegistry());
+            assertEquals(0, index.indexRegistry());
+            assertEquals("TestRun-20220102-000000", index.getHistory("testLogin", 1).get(0).getRunName());
+            assertEquals(index.toRunName(registry.resolve("TestRun-20220100-000000")), "TestRun-20220100-000000");
+        }
+    }
+
+    @Test
+    public void testConfigurationSkipped() throws IOException {
+        TestAdvisorResult testResult = newResult(0);
+        TestCaseExecution configuration = newTest("beforeMethod", START, 10, TestStatus.PASSED);
+        configuration.setConfiguration(true);
+        testResult.getTestCaseExecutionList().add(configuration);
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            index.add("TestRun-0", testResult);
+            assertEquals(2, index.getTestNames().size());
+            assertTrue(index.getHistory("beforeMethod", 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void testTablesSaved() throws IOException {
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 3; run++)
+                index.add("TestRun-" + run, newResult(run));
+        }
+        assertTrue(Files.isRegularFile(registry.resolve(TestHistoryIndex.TABLES_FILE_NAME)));
+        // records covered by the tables file are not scanned again, a broken first record goes unnoticed
+        try (FileChannel channel = FileChannel.open(registry.resolve(TestHistoryIndex.INDEX_FILE_NAME), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {9}), 32);
+        }
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertTrue(index.isIndexed("TestRun-0"));
+            index.add("TestRun-3", newResult(3));
+        }
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertEquals(4, index.getRunCount());
+            assertEquals(4, index.getHistory("testLogin", 10).size());
+            assertEquals("TestRun-3", index.getHistory("testSearch", 1).get(0).getRunName());
+        }
+    }
+
+    @Test
+    public void testForeignTablesIgnored() throws IOException {
+        Path otherRegistry = Files.createTempDirectory("").resolve(".testadvisor");
+        try (TestHistoryIndex index = TestHistoryIndex.open(otherRegistry)) {
+            index.add("TestRun-other", newResult(0));
+        }
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            index.add("TestRun-0", newResult(0));
+            index.add("TestRun-1", newResult(1));
+        }
+        Files.copy(otherRegistry.resolve(TestHistoryIndex.TABLES_FILE_NAME), registry.resolve(TestHistoryIndex.TABLES_FILE_NAME),
+                    StandardCopyOption.REPLACE_EXISTING);
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            assertFalse(index.isIndexed("TestRun-other"));
+            assertEquals(2, index.getHistory("testLogin", 10).size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnIndex() throws IOException {
+        Files.write(registry.resolve(TestHistoryIndex.INDEX_FILE_NAME), "not an index at all, not at all".getBytes());
+        TestHistoryIndex.open(registry).close();
+    }
+
+    /**
+     * Run i starts i hours after START, testLogin takes 1000 + 100 * i ms and fails in odd runs,
+     * testSearch is skipped and only runs in odd runs
+     */
+    private static TestAdvisorResult newResult(int run) {
+        TestAdvisorResult testResult = new TestAdvisorResult();
+        Instant start = START.plusSeconds(run * 3600L);
+        testResult.setBuildStartTime(start);
+        testResult.getTestCaseExecutionList().add(newTest("testLogin", start, 1000 + 100 * run,
+                                                    run % 2 == 0 ? TestStatus.PASSED : TestStatus.FAILED));
+        testResult.getTestCaseExecutionList().add(newTest("testLogout", start, 10, TestStatus.PASSED));
+        if (run % 2 == 1)
+            testResult.getTestCaseExecutionList().add(newTest("testSearch", start, 20, TestStatus.SKIPPED));
+        return testResult;
+    }
+
+    private static TestCaseExecution newTest(String name, Instant start, long durationMillis, TestStatus status) {
+        TestCaseExecution test = new TestCaseExecution();
+        test.setTestName(name);
+        test.setStartTime(start);
+        test.setEndTime(start.plusMillis(durationMillis));
+        test.setTestStatus(status);
+        return test;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.listener.junit;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+
+/**
+ * TestListenerJUnit5Test will test the test names recorded by the JUnit5 listener
+ */
+public class TestListenerJUnit5Test {
+
+    @Test
+    public void testDisplayName() {
+        TestIdentifier test = newIdentifier(method("testLogin()"), "testLogin()", MethodSource.from("com.test.LoginTest", "testLogin"));
+        assertEquals("testLogin()", TestListenerJUnit5.getTestName(test, false));
+    }
+
+    @Test
+    public void testMethodName() {
+        TestIdentifier test = newIdentifier(method("testLogin()"), "testLogin()", MethodSource.from("com.test.LoginTest", "testLogin"));
+        assertEquals("com.test.LoginTest.testLogin", TestListenerJUnit5.getTestName(test, true));
+        // only test methods have a class and method name
+        TestIdentifier testClass = newIdentifier(UniqueId.forEngine("junit-jupiter").append("class", "com.test.LoginTest"),
+                                                "LoginTest", ClassSource.from("com.test.LoginTest"));
+        assertEquals("LoginTest", TestListenerJUnit5.getTestName(testClass, true));
+        assertEquals("dynamic test", TestListenerJUnit5.getTestName(newIdentifier(method("dynamic"), "dynamic test", null), true));
+    }
+
+    @Test
+    public void testInvocationName() {
+        UniqueId template = UniqueId.forEngine("junit-jupiter").append("class", "com.test.LoginTest")
+                                    .append("test-template", "testLogin(java.lang.String)");
+        MethodSource source = MethodSource.from("com.test.LoginTest", "testLogin", "java.lang.String");
+        TestIdentifier first = newIdentifier(template.append("test-template-invocation", "#1"), "[1] admin", source);
+        TestIdentifier second = newIdentifier(template.append("test-template-invocation", "#2"), "[2] guest", source);
+        assertEquals("com.test.LoginTest.testLogin[1]", TestListenerJUnit5.getTestName(first, true));
+        assertEquals("com.test.LoginTest.testLogin[2]", TestListenerJUnit5.getTestName(second, true));
+        assertEquals("[2] guest", TestListenerJUnit5.getTestName(second, false));
+    }
+
+    private static UniqueId method(String methodName) {
+        return UniqueId.forEngine("junit-jupiter").append("class", "com.test.LoginTest").append("method", methodName);
+    }
+
+    private static TestIdentifier newIdentifier(UniqueId id, String displayName, TestSource source) {
+        return TestIdentifier.from(new AbstractTestDescriptor(id, displayName, source) {
+            @Override
+            public Type getType() {
+                return Type.TEST;
+            }
+        });
+    }
+}
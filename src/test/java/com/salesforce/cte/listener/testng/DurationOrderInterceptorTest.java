@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2022, salesforce.com, inc.
+ * All rights reserved.
+ * SPDX-License-Identifier: BSD-3-Clause
+ * For full license text, see the LICENSE file in the repo root or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.cte.listener.testng;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.salesforce.cte.common.TestAdvisorResult;
+import com.salesforce.cte.common.TestCaseExecution;
+import com.salesforce.cte.common.TestStatus;
+import com.salesforce.cte.history.TestHistoryIndex;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testng.TestNG;
+import org.testng.xml.XmlSuite;
+
+/**
+ * DurationOrderInterceptorTest will test ordering of TestNG methods by their history
+ */
+public class DurationOrderInterceptorTest {
+
+    private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+    private static final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Skewed suite, one long test which runs last in the default order
+     */
+    public static class SkewedSuite {
+        @org.testng.annotations.Test public void testA() throws InterruptedException { run("testA", 100); }
+        @org.testng.annotations.Test public void testB() throws InterruptedException { run("testB", 100); }
+        @org.testng.annotations.Test public void testC() throws InterruptedException { run("testC", 100); }
+        @org.testng.annotations.Test public void testD() throws InterruptedException { run("testD", 100); }
+        @org.testng.annotations.Test public void testE() throws InterruptedException { run("testE", 100); }
+        @org.testng.annotations.Test public void testF() throws InterruptedException { run("testF", 100); }
+        @org.testng.annotations.Test public void testG() throws InterruptedException { run("testG", 100); }
+        @org.testng.annotations.Test public void testH() throws InterruptedException { run("testH", 100); }
+        @org.testng.annotations.Test public void testI() throws InterruptedException { run("testI", 100); }
+        @org.testng.annotations.Test public void testJ() throws InterruptedException { run("testJ", 100); }
+        @org.testng.annotations.Test public void testK() throws InterruptedException { run("testK", 100); }
+        @org.testng.annotations.Test public void testNew() throws InterruptedException { run("testNew", 100); }
+        @org.testng.annotations.Test public void testZLong() throws InterruptedException { run("testZLong", 600); }
+
+        private static void run(String name, long millis) throws InterruptedException {
+            started.add(name);
+            Thread.sleep(millis);
+        }
+    }
+
+    private Path registry;
+
+    @Before
+    public void createFolderStructure() throws IOException {
+        registry = Files.createTempDirectory("").resolve(".testadvisor");
+        registry.toFile().mkdirs();
+        registry.toFile().deleteOnExit();
+        started.clear();
+    }
+
+    @Test
+    public void testOrder() throws IOException {
+        writeHistory();
+        runSuite(new DurationOrderInterceptor(registry, 5), 1);
+
+        assertEquals(13, started.size());
+        assertEquals("testZLong", started.get(0));
+        assertEquals("testA", started.get(1));
+        // testNew has no history, estimated at the median
+        assertTrue(started.indexOf("testNew") > started.indexOf("testD"));
+        assertTrue(started.indexOf("testNew") < started.indexOf("testF"));
+        assertEquals("testK", started.get(12));
+    }
+
+    @Test
+    public void testNoHistory() {
+        DurationOrderInterceptor interceptor = new DurationOrderInterceptor(registry, 5);
+        runSuite(interceptor, 1);
+        List<String> unordered = new ArrayList<>(started);
+        started.clear();
+        runSuite(null, 1);
+
+        assertEquals(started, unordered);
+        assertEquals(13, unordered.size());
+    }
+
+    @Test
+    public void testWallClock() throws IOException {
+        writeHistory();
+        // warm up TestNG
+        runSuite(null, 4);
+        long unordered = runSuite(null, 4);
+        long ordered = runSuite(new DurationOrderInterceptor(registry, 5), 4);
+
+        // default order: the long test starts after most of the 12 short tests on 4 threads, 800ms or more
+        // longest first: the short tests run on 3 threads next to the long test, 600ms
+        assertTrue("ordered " + ordered + "ms, unordered " + unordered + "ms", ordered + 150 < unordered);
+    }
+
+    private static long runSuite(DurationOrderInterceptor interceptor, int threadCount) {
+        TestNG testng = new TestNG(false);
+        testng.setTestClasses(new Class<?>[] {SkewedSuite.class});
+        testng.setParallel(XmlSuite.ParallelMode.METHODS);
+        testng.setThreadCount(threadCount);
+        testng.setVerbose(0);
+        if (interceptor != null)
+            testng.addListener(interceptor);
+        long start = System.nanoTime();
+        testng.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * testZLong took 600ms, testA to testK took 110ms to 10ms, testNew never ran
+     */
+    private void writeHistory() throws IOException {
+        String className = SkewedSuite.class.getName();
+        try (TestHistoryIndex index = TestHistoryIndex.open(registry)) {
+            for (int run = 0; run < 3; run++) {
+                TestAdvisorResult testResult = new TestAdvisorResult();
+                testResult.setBuildStartTime(START.plusSeconds(run * 3600L));
+                testResult.getTestCaseExecutionList().add(newTest(className + ".testZLong", 600));
+                for (char name = 'A'; name <= 'K'; name++)
+                    testResult.getTestCaseExecutionList().add(newTest(className + ".test" + name, 10 * ('L' - name)));
+                index.add("TestRun-" + run, testResult);
+            }
+        }
+    }
+
+    private static TestCaseExecution newTest(String name, long durationMillis) {
+        TestCaseExecution test = new TestCaseExecution();
+        test.setTestName(name);
+        test.setStartTime(START);
+        test.setEndTime(START.plusMillis(durationMillis));
+        test.setTestStatus(TestStatus.PASSED);
+        return test;
+    }
+}